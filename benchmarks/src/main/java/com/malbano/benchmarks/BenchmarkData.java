@@ -0,0 +1,27 @@
+package com.malbano.benchmarks;
+
+import com.malbano.products.dto.CreateProductRequest;
+import com.malbano.products.dto.ProductCreatedEvent;
+
+import java.math.BigDecimal;
+
+final class BenchmarkData {
+
+    static final String TOPIC = "product-created-events-topic";
+    static final String PRODUCT_ID = "3f1e0c7a-9b2d-4c1e-8f6a-2d5b7c9e1a44";
+
+    private BenchmarkData() {
+    }
+
+    static CreateProductRequest createProductRequest() {
+        CreateProductRequest request = new CreateProductRequest();
+        request.setTitle("Notebook Gamer");
+        request.setPrice(new BigDecimal("2500.00"));
+        request.setQuantity(10);
+        return request;
+    }
+
+    static ProductCreatedEvent productCreatedEvent() {
+        return new ProductCreatedEvent(PRODUCT_ID, "Notebook Gamer", new BigDecimal("2500.00"), 10);
+    }
+}
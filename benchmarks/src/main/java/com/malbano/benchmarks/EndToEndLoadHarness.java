@@ -0,0 +1,407 @@
+package com.malbano.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.malbano.emailnotification.EmailNotificationMicroserviceApplication;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.exceptions.BatchProcessingException;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import com.malbano.products.ProductsMicroserviceApplication;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.CompositeProducerListener;
+import org.springframework.kafka.support.LoggingProducerListener;
+import org.springframework.kafka.support.ProducerListener;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Boots the products and email services in-process against an embedded 3-node KRaft broker, with the settings of
+ * their {@code application.properties}, and drives {@code POST /products/sync} and {@code POST /products/async} with an
+ * open-loop generator at a constant arrival rate. Every step of {@code rates} runs for {@code secondsPerStep}; the
+ * rate of an endpoint goes up until a step is not sustainable (more than 1% of the requests failed, a product was not
+ * notified within 30 s after the step, or the end-to-end p99 went above {@code sloMillis}). Each endpoint is warmed
+ * up for 10 s at the first rate before its steps.
+ * <p>
+ * Latencies are measured from the time each request was scheduled, not from when it was sent, so a stalled client or
+ * server shows up in the percentiles instead of lowering the load (coordinated omission). For each request it records
+ * the HTTP response, the broker ack (a {@code ProducerListener} on the products templates) and the end-to-end delivery
+ * (the email service's mail backend, replaced by one that takes {@code mailMillis}). The results are printed and written
+ * as JSON to {@code report}, to compare runs.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.malbano.benchmarks.EndToEndLoadHarness [secondsPerStep] [rates]
+ * [listenerMode] [mailMillis] [sloMillis] [report] [projectDir]}
+ */
+public class EndToEndLoadHarness {
+
+    private static final String[] ENDPOINTS = {"/products/sync", "/products/async"};
+    private static final double MAX_ERROR_RATIO = 0.01;
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+    private static final int WARM_UP_SECONDS = 10;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public static void main(String[] args) throws Exception {
+        int secondsPerStep = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        int[] rates = Arrays.stream((args.length > 1 ? args[1] : "250,500,1000,2000,4000").split(","))
+                .mapToInt(rate -> Integer.parseInt(rate.trim()))
+                .toArray();
+        String listenerMode = args.length > 2 ? args[2] : KafkaConsumerConfiguration.RECORD_LISTENER_MODE;
+        long mailMillis = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        long sloMillis = args.length > 4 ? Long.parseLong(args[4]) : 1000;
+        Path report = Path.of(args.length > 5 ? args[5] : "target/load-test-report.json");
+        Path projectDir = Path.of(args.length > 6 ? args[6] : "..").toAbsolutePath().normalize();
+
+        RecordingMailBackend.mailMillis = mailMillis;
+        Path dataDir = Files.createTempDirectory("load-harness");
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(3, 3);
+        broker.afterPropertiesSet();
+        String bootstrapServers = broker.getBrokersAsString();
+        ConfigurableApplicationContext products = null;
+        ConfigurableApplicationContext email = null;
+        try {
+            // products first: it creates product-created-events-topic, which the email listener subscribes to
+            products = new SpringApplicationBuilder(ProductsMicroserviceApplication.class, AckRecorder.class).run(
+                    configLocation(projectDir, "products-microservice"),
+                    "--server.port=0",
+                    "--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                    "--spring.kafka.producer.bootstrap-servers=" + bootstrapServers,
+                    "--app.products.read-model.directory=" + dataDir.resolve("read-model"),
+                    "--app.products.async.durable-log.directory=" + dataDir.resolve("wal"),
+                    "--logging.level.root=WARN");
+            email = new SpringApplicationBuilder(EmailNotificationMicroserviceApplication.class,
+                    RecordingMailBackend.class).run(
+                    configLocation(projectDir, "email-notification-microservice"),
+                    "--spring.main.web-application-type=none",
+                    "--spring.main.allow-bean-definition-overriding=true",
+                    "--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                    "--spring.kafka.consumer.bootstrap-servers=" + bootstrapServers,
+                    "--app.kafka.consumer.listener-mode=" + listenerMode,
+                    "--app.kafka.consumer.dedup.snapshot-path=" + dataDir.resolve("dedup-index.snapshot"),
+                    "--app.kafka.consumer.dlt-replay.checkpoint-path=" + dataDir.resolve("dlt-replay.checkpoint"),
+                    "--logging.level.root=WARN");
+            awaitAssignment(email);
+
+            URI baseUri = URI.create("http://localhost:" + products.getEnvironment().getProperty("local.server.port"));
+            HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            System.out.printf("%d s per step, listener mode %s, mail %d ms, slo p99 %d ms%n",
+                    secondsPerStep, listenerMode, mailMillis, sloMillis);
+            System.out.printf("%-16s %7s %9s %7s %9s %9s %9s %9s %9s %9s %5s%n", "endpoint", "rate", "done/s",
+                    "errors", "resp p99", "ack p50", "ack p99", "e2e p50", "e2e p99", "e2e max", "ok");
+            Map<String, EndpointReport> endpoints = new LinkedHashMap<>();
+            int stepId = 0;
+            for (String endpoint : ENDPOINTS) {
+                // JIT, connections and producer batches warm up at the first rate; not reported
+                new LoadStep(++stepId, rates[0], WARM_UP_SECONDS).run(http, baseUri.resolve(endpoint), sloMillis);
+                List<StepReport> steps = new ArrayList<>();
+                Integer maxSustainable = null;
+                for (int rate : rates) {
+                    LoadStep step = new LoadStep(++stepId, rate, secondsPerStep);
+                    StepReport result = step.run(http, baseUri.resolve(endpoint), sloMillis);
+                    steps.add(result);
+                    print(endpoint, result);
+                    if (!result.sustainable()) {
+                        break;
+                    }
+                    maxSustainable = rate;
+                }
+                endpoints.put(endpoint, new EndpointReport(maxSustainable, steps));
+            }
+
+            Report result = new Report(Instant.now().toString(), System.getProperty("java.version"),
+                    Runtime.getRuntime().availableProcessors(), 3,
+                    new ReportConfig(secondsPerStep, rates, listenerMode, mailMillis, sloMillis), endpoints);
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), result);
+            System.out.println("report written to " + report.toAbsolutePath());
+        } finally {
+            if (email != null) {
+                email.close();
+            }
+            if (products != null) {
+                products.close();
+            }
+            broker.destroy();
+        }
+        System.exit(0);
+    }
+
+    private static String configLocation(Path projectDir, String module) {
+        return "--spring.config.location=file:"
+                + projectDir.resolve(module).resolve("src/main/resources/application.properties");
+    }
+
+    /**
+     * The listener starts from the latest offset, so load only starts once every partition is assigned.
+     */
+    private static void awaitAssignment(ConfigurableApplicationContext email) throws InterruptedException {
+        for (MessageListenerContainer container :
+                email.getBean(KafkaListenerEndpointRegistry.class).getAllListenerContainers()) {
+            while (container.getAssignedPartitions() == null || container.getAssignedPartitions().isEmpty()) {
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static void print(String endpoint, StepReport step) {
+        System.out.printf("%-16s %7d %9.0f %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %5s%n", endpoint, step.rate(),
+                step.completedPerSecond(), step.errors(), step.responseMillis().get("p99"),
+                step.ackMillis().get("p50"), step.ackMillis().get("p99"),
+                step.endToEndMillis().get("p50"), step.endToEndMillis().get("p99"),
+                step.endToEndMillis().get("max"), step.sustainable() ? "yes" : "no");
+    }
+
+    /**
+     * One constant-rate step. Request {@code i} is due at {@code start + i * interval} and carries
+     * {@code load:<step>:<i>} as the product title, which is how the ack and the delivery find their request.
+     */
+    static final class LoadStep {
+
+        static volatile LoadStep current;
+
+        final int id;
+        final int rate;
+        final int requests;
+        final long intervalNanos;
+        final AtomicLongArray responded;
+        final AtomicLongArray acked;
+        final AtomicLongArray delivered;
+        final AtomicInteger responses = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger deliveries = new AtomicInteger();
+        volatile long startNanos;
+
+        LoadStep(int id, int rate, int seconds) {
+            this.id = id;
+            this.rate = rate;
+            this.requests = rate * seconds;
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            this.responded = new AtomicLongArray(requests);
+            this.acked = new AtomicLongArray(requests);
+            this.delivered = new AtomicLongArray(requests);
+        }
+
+        StepReport run(HttpClient http, URI uri, long sloMillis) throws InterruptedException {
+            current = this;
+            startNanos = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                long due = startNanos + i * intervalNanos;
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                int request = i;
+                HttpRequest httpRequest = HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"load:" + id + ":" + i
+                                + "\",\"price\":2500.00,\"quantity\":10}"))
+                        .build();
+                http.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, exception) -> {
+                            if (exception != null || response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            } else {
+                                responded.set(request, System.nanoTime());
+                            }
+                            responses.incrementAndGet();
+                        });
+            }
+
+            long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+            while ((responses.get() < requests || deliveries.get() < requests - errors.get())
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            current = null;
+            return report(sloMillis);
+        }
+
+        void recordAck(int request) {
+            if (request < requests) {
+                acked.compareAndSet(request, 0, System.nanoTime());
+            }
+        }
+
+        void recordDelivery(int request) {
+            if (request < requests && delivered.compareAndSet(request, 0, System.nanoTime())) {
+                deliveries.incrementAndGet();
+            }
+        }
+
+        private StepReport report(long sloMillis) {
+            Histogram response = new Histogram(3);
+            Histogram ack = new Histogram(3);
+            Histogram endToEnd = new Histogram(3);
+            long lastDelivery = startNanos;
+            for (int i = 0; i < requests; i++) {
+                long due = startNanos + i * intervalNanos;
+                record(response, responded.get(i), due);
+                record(ack, acked.get(i), due);
+                record(endToEnd, delivered.get(i), due);
+                lastDelivery = Math.max(lastDelivery, delivered.get(i));
+            }
+            int delivered = deliveries.get();
+            double completedPerSecond = delivered == 0 ? 0 : delivered / ((lastDelivery - startNanos) / 1e9);
+            boolean sustainable = errors.get() <= requests * MAX_ERROR_RATIO
+                    && delivered >= requests - errors.get()
+                    && endToEnd.getValueAtPercentile(99) <= TimeUnit.MILLISECONDS.toMicros(sloMillis);
+            return new StepReport(rate, requests, errors.get(), delivered, completedPerSecond, sustainable,
+                    percentiles(response), percentiles(ack), percentiles(endToEnd));
+        }
+
+        private static void record(Histogram histogram, long at, long due) {
+            if (at != 0) {
+                histogram.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(at - due)));
+            }
+        }
+
+        private static Map<String, Double> percentiles(Histogram histogram) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (double percentile : PERCENTILES) {
+                values.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile)
+                        : String.valueOf(percentile)), histogram.getValueAtPercentile(percentile) / 1000.0);
+            }
+            values.put("max", histogram.getMaxValue() / 1000.0);
+            return values;
+        }
+
+        /**
+         * Runs {@code action} with the request index of a {@code load:<step>:<i>} title of the current step.
+         */
+        static void onTitle(String title, ObjIntConsumer<LoadStep> action) {
+            LoadStep step = current;
+            if (step == null || title == null || !title.startsWith("load:")) {
+                return;
+            }
+            int separator = title.lastIndexOf(':');
+            if (Integer.parseInt(title, 5, separator, 10) == step.id) {
+                action.accept(step, Integer.parseInt(title, separator + 1, title.length(), 10));
+            }
+        }
+    }
+
+    /**
+     * Adds a listener to the products {@link KafkaTemplate}s that records when the broker acknowledged each product.
+     */
+    @Configuration
+    static class AckRecorder {
+
+        @Bean
+        static BeanPostProcessor ackRecordingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                @SuppressWarnings({"rawtypes", "unchecked"})
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof KafkaTemplate template) {
+                        ProducerListener ackListener = new ProducerListener<Object, Object>() {
+                            @Override
+                            public void onSuccess(ProducerRecord<Object, Object> record, RecordMetadata metadata) {
+                                if (record.value() instanceof com.malbano.products.dto.ProductCreatedEvent event) {
+                                    LoadStep.onTitle(event.getTitle(), LoadStep::recordAck);
+                                }
+                            }
+                        };
+                        template.setProducerListener(new CompositeProducerListener(
+                                new LoggingProducerListener<>(), ackListener));
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    /**
+     * Replaces the mocked mail sender: every notification takes {@code mailMillis} and records its delivery.
+     */
+    @Configuration
+    static class RecordingMailBackend {
+
+        static volatile long mailMillis;
+
+        @Bean
+        ProductNotificationService productNotificationServiceImpl() {
+            return new ProductNotificationService() {
+                @Override
+                public void processProductCreated(ProductCreatedEvent event) {
+                    send();
+                    delivered(event);
+                }
+
+                @Override
+                public void processProductCreatedBatch(List<ProductCreatedEvent> events) {
+                    for (int i = 0; i < events.size(); i++) {
+                        try {
+                            processProductCreated(events.get(i));
+                        } catch (RuntimeException e) {
+                            throw new BatchProcessingException(i, e);
+                        }
+                    }
+                }
+
+                @Override
+                public void processProductCreatedDigest(String group, List<ProductCreatedEvent> events) {
+                    send();
+                    events.forEach(this::delivered);
+                }
+
+                private void send() {
+                    if (mailMillis > 0) {
+                        try {
+                            Thread.sleep(mailMillis);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+
+                private void delivered(ProductCreatedEvent event) {
+                    LoadStep.onTitle(event.getTitle(), LoadStep::recordDelivery);
+                }
+            };
+        }
+    }
+
+    record Report(String timestamp, String javaVersion, int availableProcessors, int brokers, ReportConfig config,
+                  Map<String, EndpointReport> endpoints) {
+    }
+
+    record ReportConfig(int secondsPerStep, int[] rates, String listenerMode, long mailMillis, long sloMillis) {
+    }
+
+    record EndpointReport(Integer maxSustainableRate, List<StepReport> steps) {
+    }
+
+    record StepReport(int rate, int requests, int errors, int delivered, double completedPerSecond,
+                      boolean sustainable, Map<String, Double> responseMillis, Map<String, Double> ackMillis,
+                      Map<String, Double> endToEndMillis) {
+    }
+}
@@ -0,0 +1,58 @@
+package com.malbano.benchmarks;
+
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.logging.HotPathLog;
+import com.malbano.products.util.LogSuccessfulSendUtil;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.SendResult;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of logging a successful send, encoded by logback into a discarding appender (see logback.xml): the summary
+ * counters plus the per-send INFO line for every send ({@code sampleRate=1}, the previous behaviour) or for 1 in 100.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogSuccessfulSendBenchmark {
+
+    @Param({"1", "100"})
+    private int sampleRate;
+
+    private LogSuccessfulSendUtil logUtil;
+    private SendResult<String, ProductCreatedEvent> result;
+
+    @Setup
+    public void setup() {
+        logUtil = new LogSuccessfulSendUtil(new HotPathLog(sampleRate, Duration.ZERO));
+        ProductCreatedEvent event = BenchmarkData.productCreatedEvent();
+        ProducerRecord<String, ProductCreatedEvent> record =
+                new ProducerRecord<>(BenchmarkData.TOPIC, event.getProductId(), event);
+        RecordMetadata metadata = new RecordMetadata(new TopicPartition(BenchmarkData.TOPIC, 1),
+                4242L, 0, System.currentTimeMillis(), 36, 80);
+        result = new SendResult<>(record, metadata);
+    }
+
+    @Benchmark
+    public void logSuccessfulSend() {
+        logUtil.logSuccessfulSend(result, false);
+    }
+}
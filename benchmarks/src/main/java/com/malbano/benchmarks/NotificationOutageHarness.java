@@ -0,0 +1,202 @@
+package com.malbano.benchmarks;
+
+import com.malbano.emailnotification.EmailNotificationMicroserviceApplication;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.exceptions.BatchProcessingException;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Boots the email service against an embedded single-node KRaft broker with a mail backend that fails every call
+ * for the first {@code outageSeconds}, publishes the products up front and waits until each one was either
+ * notified or dead-lettered. Prints how many records were written to the retry topics and the DLT, with and without
+ * the {@code NotificationCircuitBreaker}.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.malbano.benchmarks.NotificationOutageHarness [products] [outageSeconds]
+ * [listenerMode]}
+ */
+public class NotificationOutageHarness {
+
+    private static final String DLT = BenchmarkData.TOPIC + ".DLT";
+    private static final int PARTITIONS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int outageSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        String listenerMode = args.length > 2 ? args[2] : KafkaConsumerConfiguration.RECORD_LISTENER_MODE;
+
+        System.out.printf("%-16s %10s %12s %10s %10s %10s%n",
+                "circuit breaker", "notified", "retry writes", "dlt writes", "rejected", "drain s");
+        for (boolean circuitBreaker : new boolean[]{false, true}) {
+            EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, BenchmarkData.TOPIC, DLT);
+            broker.afterPropertiesSet();
+            try {
+                run(broker.getBrokersAsString(), listenerMode, circuitBreaker, products, outageSeconds);
+            } finally {
+                broker.destroy();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(String bootstrapServers, String listenerMode, boolean circuitBreaker, int products,
+                            int outageSeconds) throws Exception {
+        FlakyMailBackend.notified.set(0);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(
+                EmailNotificationMicroserviceApplication.class, FlakyMailBackend.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.allow-bean-definition-overriding=true",
+                        "spring.kafka.bootstrap-servers=" + bootstrapServers,
+                        "spring.kafka.consumer.bootstrap-servers=" + bootstrapServers,
+                        "spring.kafka.consumer.group-id=product-created-events",
+                        "spring.kafka.consumer.properties.spring.json.trusted.packages=*",
+                        "app.kafka.consumer.listener-mode=" + listenerMode,
+                        "app.kafka.consumer.autoscaling.enabled=false",
+                        "app.kafka.consumer.dedup.enabled=false",
+                        "app.kafka.consumer.circuit-breaker.enabled=" + circuitBreaker,
+                        "app.kafka.consumer.circuit-breaker.open-duration=5s",
+                        "app.logging.hot-path.summary-interval=0s",
+                        "logging.level.root=OFF")
+                .run();
+        try {
+            // consumers start from the latest offset, so publish only once every partition is assigned
+            for (MessageListenerContainer container :
+                    context.getBean(KafkaListenerEndpointRegistry.class).getAllListenerContainers()) {
+                while (container.getAssignedPartitions() == null || container.getAssignedPartitions().isEmpty()) {
+                    Thread.sleep(100);
+                }
+            }
+            long start = System.currentTimeMillis();
+            FlakyMailBackend.downUntil = start + TimeUnit.SECONDS.toMillis(outageSeconds);
+            publish(bootstrapServers, products);
+            try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+                long dltWrites;
+                do {
+                    Thread.sleep(200);
+                    dltWrites = endOffsets(admin, List.of(DLT));
+                } while (FlakyMailBackend.notified.get() + dltWrites < products);
+
+                List<String> retryTopics = admin.listTopics().names().get().stream()
+                        .filter(name -> name.startsWith(BenchmarkData.TOPIC + "-retry"))
+                        .collect(Collectors.toList());
+                double rejected = context.getBean(MeterRegistry.class)
+                        .get("product.notification.circuit.rejected").counter().count();
+                System.out.printf("%-16s %10d %12d %10d %10.0f %10.1f%n",
+                        circuitBreaker ? "enabled" : "disabled", FlakyMailBackend.notified.get(),
+                        endOffsets(admin, retryTopics), dltWrites, rejected,
+                        (System.currentTimeMillis() - start) / 1000.0);
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void publish(String bootstrapServers, int products) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        DefaultKafkaProducerFactory<String, ProductCreatedEvent> producerFactory =
+                new DefaultKafkaProducerFactory<>(config);
+        KafkaTemplate<String, ProductCreatedEvent> template = new KafkaTemplate<>(producerFactory);
+        for (int i = 0; i < products; i++) {
+            String productId = UUID.randomUUID().toString();
+            template.send(BenchmarkData.TOPIC, productId,
+                    new ProductCreatedEvent(productId, "Notebook Gamer " + i, new BigDecimal("2500.00"), 10));
+        }
+        template.flush();
+        producerFactory.destroy();
+    }
+
+    private static long endOffsets(Admin admin, List<String> topics) throws Exception {
+        if (topics.isEmpty()) {
+            return 0;
+        }
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        for (TopicDescription topic : admin.describeTopics(topics).allTopicNames().get().values()) {
+            topic.partitions().forEach(partition ->
+                    request.put(new TopicPartition(topic.name(), partition.partition()), OffsetSpec.latest()));
+        }
+        return admin.listOffsets(request).all().get().values().stream()
+                .mapToLong(info -> info.offset())
+                .sum();
+    }
+
+    /**
+     * Replaces the mocked mail sender: every call fails fast until {@code downUntil}, then takes 5 ms.
+     */
+    @Configuration
+    static class FlakyMailBackend {
+
+        static volatile long downUntil;
+        static final AtomicLong notified = new AtomicLong();
+
+        @Bean
+        ProductNotificationService productNotificationServiceImpl() {
+            return new ProductNotificationService() {
+                @Override
+                public void processProductCreated(ProductCreatedEvent event) {
+                    if (System.currentTimeMillis() < downUntil) {
+                        throw new IllegalStateException("Mail backend unavailable");
+                    }
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException(e);
+                    }
+                    notified.incrementAndGet();
+                }
+
+                @Override
+                public void processProductCreatedDigest(String group, List<ProductCreatedEvent> events) {
+                    if (System.currentTimeMillis() < downUntil) {
+                        throw new IllegalStateException("Mail backend unavailable");
+                    }
+                    notified.addAndGet(events.size());
+                }
+
+                @Override
+                public void processProductCreatedBatch(List<ProductCreatedEvent> events) {
+                    for (int i = 0; i < events.size(); i++) {
+                        try {
+                            processProductCreated(events.get(i));
+                        } catch (RuntimeException e) {
+                            throw new BatchProcessingException(i, e);
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.malbano.benchmarks;
+
+import com.malbano.emailnotification.EmailNotificationMicroserviceApplication;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.exceptions.BatchProcessingException;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots the email service in-process against an embedded 3-node KRaft broker and checks whether the high priority
+ * lane keeps its latency while the low lane holds a backlog. Each run publishes {@code backlog} low-priority products
+ * at once, then high-priority products at {@code highRate} per second for {@code seconds}, open loop, and waits until
+ * everything was notified. The mail backend takes {@code mailMillis} per notification. The first run has the
+ * {@code PriorityLaneScheduler} disabled and the second one enabled; autoscaling is off in both, so they only differ
+ * in the scheduler. A run with a tenth of the backlog warms up the service before the first one.
+ * <p>
+ * Latency runs from the time a product was due to be published until its notification was sent, and throughput counts
+ * the notifications of each lane while the high-priority products were being published.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.malbano.benchmarks.PriorityLaneHarness [backlog] [highRate]
+ * [seconds] [mailMillis] [projectDir]}
+ */
+public class PriorityLaneHarness {
+
+    private static final int PARTITIONS = 3;
+    private static final long DRAIN_TIMEOUT_SECONDS = 300;
+
+    public static void main(String[] args) throws Exception {
+        int backlog = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int highRate = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        long mailMillis = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        Path projectDir = Path.of(args.length > 4 ? args[4] : "..").toAbsolutePath().normalize();
+
+        RecordingMailBackend.mailMillis = mailMillis;
+        Path dataDir = Files.createTempDirectory("priority-lane-harness");
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(3, PARTITIONS);
+        broker.afterPropertiesSet();
+        String bootstrapServers = broker.getBrokersAsString();
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers));
+             KafkaProducer<String, String> producer = new KafkaProducer<>(Map.of(
+                     ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                     ProducerConfig.LINGER_MS_CONFIG, 5,
+                     ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                     ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class))) {
+            admin.createTopics(List.of(
+                    new NewTopic(KafkaConsumerConfiguration.HIGH_PRIORITY_PRODUCT_CREATED_TOPIC, PARTITIONS, (short) 3),
+                    new NewTopic(KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC, PARTITIONS, (short) 3),
+                    new NewTopic(KafkaConsumerConfiguration.LOW_PRIORITY_PRODUCT_CREATED_TOPIC, PARTITIONS, (short) 3)))
+                    .all().get();
+
+            System.out.printf("low backlog %d, high %d/s for %d s, mail %d ms%n", backlog, highRate, seconds,
+                    mailMillis);
+            System.out.printf("%-10s %-5s %8s %10s %9s %9s %9s%n", "scheduler", "lane", "events", "sent/s",
+                    "p50 ms", "p99 ms", "max ms");
+            for (boolean scheduler : new boolean[]{false, true}) {
+                ConfigurableApplicationContext email = new SpringApplicationBuilder(
+                        EmailNotificationMicroserviceApplication.class, RecordingMailBackend.class).run(
+                        "--spring.config.location=file:" + projectDir.resolve(
+                                "email-notification-microservice/src/main/resources/application.properties"),
+                        "--spring.main.web-application-type=none",
+                        "--spring.main.allow-bean-definition-overriding=true",
+                        "--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                        "--spring.kafka.consumer.bootstrap-servers=" + bootstrapServers,
+                        "--app.kafka.consumer.priority-lanes.scheduler.enabled=" + scheduler,
+                        "--app.kafka.consumer.autoscaling.enabled=false",
+                        "--app.kafka.consumer.dedup.enabled=false",
+                        "--app.kafka.consumer.dlt-replay.checkpoint-path=" + dataDir.resolve("dlt-replay.checkpoint"),
+                        "--logging.level.root=WARN");
+                try {
+                    awaitAssignment(email);
+                    if (!scheduler) {
+                        // JIT and connections warm up with a tenth of the load; not reported
+                        Run warmUp = new Run();
+                        RecordingMailBackend.current = warmUp;
+                        warmUp.execute(producer, backlog / 10, highRate, Math.max(1, seconds / 4));
+                    }
+                    Run run = new Run();
+                    RecordingMailBackend.current = run;
+                    run.execute(producer, backlog, highRate, seconds);
+                    run.print(scheduler ? "on" : "off");
+                } finally {
+                    email.close();
+                }
+            }
+        } finally {
+            broker.destroy();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * The listener starts from the latest offset of a new group, so nothing is published before the partitions are
+     * assigned.
+     */
+    private static void awaitAssignment(ConfigurableApplicationContext email) throws InterruptedException {
+        MessageListenerContainer container = email.getBean(KafkaListenerEndpointRegistry.class)
+                .getListenerContainer(KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID);
+        while (container.getAssignedPartitions() == null
+                || container.getAssignedPartitions().size() < PARTITIONS * 3) {
+            Thread.sleep(100);
+        }
+    }
+
+    /**
+     * One run. The title of every product is {@code <lane>:<due nanoTime>}, which is how the mail backend finds its
+     * lane and latency.
+     */
+    static final class Run {
+
+        private final Histogram high = new Histogram(TimeUnit.MINUTES.toNanos(10), 3);
+        private final Histogram low = new Histogram(TimeUnit.MINUTES.toNanos(10), 3);
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong highInWindow = new AtomicLong();
+        private final AtomicLong lowInWindow = new AtomicLong();
+        private volatile long windowStart = Long.MAX_VALUE;
+        private volatile long windowEnd = Long.MAX_VALUE;
+        private long windowNanos;
+
+        void execute(KafkaProducer<String, String> producer, int backlog, int highRate, int seconds)
+                throws InterruptedException {
+            for (int i = 0; i < backlog; i++) {
+                send(producer, KafkaConsumerConfiguration.LOW_PRIORITY_PRODUCT_CREATED_TOPIC, "low", System.nanoTime());
+            }
+            producer.flush();
+
+            int highEvents = highRate * seconds;
+            long interval = TimeUnit.SECONDS.toNanos(1) / highRate;
+            long start = System.nanoTime();
+            windowStart = start;
+            for (int i = 0; i < highEvents; i++) {
+                long due = start + i * interval;
+                LockSupport.parkNanos(due - System.nanoTime());
+                send(producer, KafkaConsumerConfiguration.HIGH_PRIORITY_PRODUCT_CREATED_TOPIC, "high", due);
+            }
+            producer.flush();
+            windowEnd = System.nanoTime();
+            windowNanos = windowEnd - start;
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+            while (delivered.get() < backlog + highEvents && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+            if (delivered.get() < backlog + highEvents) {
+                throw new IllegalStateException("only " + delivered.get() + " of " + (backlog + highEvents)
+                        + " products were notified");
+            }
+        }
+
+        private static void send(KafkaProducer<String, String> producer, String topic, String lane, long due) {
+            String productId = UUID.randomUUID().toString();
+            producer.send(new ProducerRecord<>(topic, productId, "{\"productId\":\"" + productId + "\",\"title\":\""
+                    + lane + ":" + due + "\",\"price\":2500.00,\"quantity\":10}"));
+        }
+
+        synchronized void delivered(String title) {
+            long now = System.nanoTime();
+            int separator = title.indexOf(':');
+            boolean isHigh = title.startsWith("high");
+            (isHigh ? high : low).recordValue(Math.max(0, now - Long.parseLong(title.substring(separator + 1))));
+            if (now >= windowStart && now <= windowEnd) {
+                (isHigh ? highInWindow : lowInWindow).incrementAndGet();
+            }
+            delivered.incrementAndGet();
+        }
+
+        synchronized void print(String scheduler) {
+            print(scheduler, "high", high, highInWindow.get());
+            print(scheduler, "low", low, lowInWindow.get());
+        }
+
+        private void print(String scheduler, String lane, Histogram histogram, long inWindow) {
+            System.out.printf("%-10s %-5s %8d %10.0f %9.1f %9.1f %9.1f%n", scheduler, lane,
+                    histogram.getTotalCount(), inWindow / (windowNanos / 1e9),
+                    histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+                    histogram.getMaxValue() / 1e6);
+        }
+    }
+
+    /**
+     * Replaces the mocked mail sender: every notification takes {@code mailMillis} and is reported to the current run.
+     */
+    @Configuration
+    static class RecordingMailBackend {
+
+        static volatile long mailMillis;
+        static volatile Run current;
+
+        @Bean
+        ProductNotificationService productNotificationServiceImpl() {
+            return new ProductNotificationService() {
+                @Override
+                public void processProductCreated(ProductCreatedEvent event) {
+                    if (mailMillis > 0) {
+                        try {
+                            Thread.sleep(mailMillis);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    Run run = current;
+                    if (run != null) {
+                        run.delivered(event.getTitle());
+                    }
+                }
+
+                @Override
+                public void processProductCreatedBatch(List<ProductCreatedEvent> events) {
+                    for (int i = 0; i < events.size(); i++) {
+                        try {
+                            processProductCreated(events.get(i));
+                        } catch (RuntimeException e) {
+                            throw new BatchProcessingException(i, e);
+                        }
+                    }
+                }
+
+                @Override
+                public void processProductCreatedDigest(String group, List<ProductCreatedEvent> events) {
+                    events.forEach(this::processProductCreated);
+                }
+            };
+        }
+    }
+}
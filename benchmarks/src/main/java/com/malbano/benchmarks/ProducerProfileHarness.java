@@ -0,0 +1,100 @@
+package com.malbano.benchmarks;
+
+import com.malbano.products.config.ProducerProfile;
+import com.malbano.products.dto.ProductCreatedEvent;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the same load through every {@link ProducerProfile} against an embedded single-node KRaft broker and prints
+ * records/s and ack latency percentiles. At most {@code inFlight} sends are unacknowledged at once, mirroring the
+ * async endpoint's admission limit, so latency includes time spent queued in the producer.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.malbano.benchmarks.ProducerProfileHarness [records] [inFlight]}
+ */
+public class ProducerProfileHarness {
+
+    private static final int PARTITIONS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int inFlight = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, BenchmarkData.TOPIC);
+        broker.afterPropertiesSet();
+        try {
+            System.out.printf("%-16s %12s %10s %10s %10s %10s%n",
+                    "profile", "records/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (ProducerProfile profile : ProducerProfile.values()) {
+                run(broker.getBrokersAsString(), profile, records / 10, inFlight);
+                Result result = run(broker.getBrokersAsString(), profile, records, inFlight);
+                Histogram latency = result.latencyMicros();
+                System.out.printf("%-16s %12.0f %10.2f %10.2f %10.2f %10.2f%n",
+                        profile.profileName(), result.recordsPerSecond(),
+                        latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                        latency.getValueAtPercentile(99.9) / 1000.0, latency.getMaxValue() / 1000.0);
+            }
+        } finally {
+            broker.destroy();
+        }
+    }
+
+    private static Result run(String bootstrapServers, ProducerProfile profile, int records, int inFlight)
+            throws InterruptedException {
+        DefaultKafkaProducerFactory<String, ProductCreatedEvent> producerFactory =
+                new DefaultKafkaProducerFactory<>(producerConfig(bootstrapServers, profile));
+        KafkaTemplate<String, ProductCreatedEvent> template = new KafkaTemplate<>(producerFactory);
+
+        String[] keys = new String[1024];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = UUID.randomUUID().toString();
+        }
+        ProductCreatedEvent event = BenchmarkData.productCreatedEvent();
+        Histogram latencyMicros = new ConcurrentHistogram(3);
+        Semaphore permits = new Semaphore(inFlight);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            permits.acquire();
+            long sentAt = System.nanoTime();
+            template.send(BenchmarkData.TOPIC, keys[i & (keys.length - 1)], event)
+                    .whenComplete((result, exception) -> {
+                        latencyMicros.recordValue((System.nanoTime() - sentAt) / 1000);
+                        permits.release();
+                    });
+        }
+        permits.acquire(inFlight);
+        long elapsed = System.nanoTime() - start;
+
+        producerFactory.destroy();
+        return new Result(records / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)), latencyMicros);
+    }
+
+    private static Map<String, Object> producerConfig(String bootstrapServers, ProducerProfile profile) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        config.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.putAll(profile.producerConfig(new StandardEnvironment()));
+        return config;
+    }
+
+    private record Result(double recordsPerSecond, Histogram latencyMicros) {
+    }
+}
@@ -0,0 +1,51 @@
+package com.malbano.benchmarks;
+
+import com.malbano.products.dto.CreateProductRequest;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.util.CreateProductEventUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductEventCreationBenchmark {
+
+    private CreateProductRequest request;
+    private String productId;
+
+    @Setup
+    public void setup() {
+        request = BenchmarkData.createProductRequest();
+        productId = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public ProductCreatedEvent createProductEvent() {
+        return CreateProductEventUtil.createProductEvent(productId, request);
+    }
+
+    @Benchmark
+    public ProductCreatedEvent createProductEventWithNewId() {
+        return CreateProductEventUtil.createProductEvent(UUID.randomUUID().toString(), request);
+    }
+}
@@ -0,0 +1,89 @@
+package com.malbano.benchmarks;
+
+import com.malbano.emailnotification.serialization.ProductCreatedEventBinaryDeserializer;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.serialization.ProductCreatedEventBinarySerializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializer/deserializer pairs as configured in {@code KafkaConfig.producerConfigs} and
+ * {@code KafkaConsumerConfiguration.consumerFactory}, for both the JSON and the binary codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductEventSerializationBenchmark {
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private Serializer<ProductCreatedEvent> serializer;
+    private Deserializer<Object> deserializer;
+    private ProductCreatedEvent event;
+    private byte[] payload;
+    private Headers payloadHeaders;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        serializer = "binary".equals(codec) ? new ProductCreatedEventBinarySerializer() : new JsonSerializer<>();
+        serializer.configure(new HashMap<>(), false);
+
+        Map<String, Object> consumerConfig = new HashMap<>();
+        consumerConfig.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS,
+                "binary".equals(codec) ? ProductCreatedEventBinaryDeserializer.class : JsonDeserializer.class);
+        consumerConfig.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+        consumerConfig.put("spring.json.use.type.headers", false);
+        consumerConfig.put("spring.json.value.default.type", "com.malbano.emailnotification.dto.ProductCreatedEvent");
+        consumerConfig.put(ConsumerConfig.GROUP_ID_CONFIG, "benchmark");
+        deserializer = new ErrorHandlingDeserializer<>();
+        deserializer.configure(consumerConfig, false);
+
+        event = BenchmarkData.productCreatedEvent();
+        payloadHeaders = new RecordHeaders();
+        payload = serializer.serialize(BenchmarkData.TOPIC, payloadHeaders, event);
+        System.out.printf("%n%s payload: %d bytes%n", codec, payload.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(BenchmarkData.TOPIC, new RecordHeaders(), event);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return deserializer.deserialize(BenchmarkData.TOPIC, payloadHeaders, payload);
+    }
+}
@@ -0,0 +1,49 @@
+package com.malbano.benchmarks;
+
+import com.malbano.products.id.ProductIdGenerator;
+import com.malbano.products.id.impl.RandomUuidProductIdGenerator;
+import com.malbano.products.id.impl.UuidV7ProductIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One generator shared by all benchmark threads, as in the services. Use {@code -t} to change the thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class ProductIdGeneratorBenchmark {
+
+    @Param({"random-uuid", "uuid-v7"})
+    private String generator;
+
+    private ProductIdGenerator productIdGenerator;
+
+    @Setup
+    public void setup() {
+        productIdGenerator = "uuid-v7".equals(generator)
+                ? new UuidV7ProductIdGenerator()
+                : new RandomUuidProductIdGenerator();
+    }
+
+    @Benchmark
+    public String nextId() {
+        return productIdGenerator.nextId();
+    }
+}
@@ -0,0 +1,130 @@
+package com.malbano.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.malbano.products.config.KafkaConfig;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.readmodel.MappedProductStore;
+import com.malbano.products.readmodel.ProductReadModel;
+import com.malbano.products.readmodel.ProductReadModelChangelog;
+import com.malbano.products.readmodel.ProductSnapshotFile;
+import com.malbano.products.serialization.ProductCreatedEventBinarySerializer;
+import com.malbano.products.serialization.ProductCreatedEventRecordFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Fills the product topic of an embedded single-node KRaft broker and measures how long a {@link ProductReadModel}
+ * takes from {@code start()} until its lag reaches zero, for each way it can bootstrap: replaying the topic, restoring
+ * a {@link ProductSnapshotFile}, restoring the {@link ProductReadModelChangelog} and reopening cleanly closed files.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.malbano.benchmarks.ReadModelBootstrapHarness [products]}
+ */
+public class ReadModelBootstrapHarness {
+
+    private static final int PARTITIONS = 3;
+    private static final String SNAPSHOT_FILE = "products.snapshot";
+
+    public static void main(String[] args) throws Exception {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS,
+                KafkaConfig.PRODUCT_CREATED_EVENTS_TOPIC, KafkaConfig.PRODUCT_READ_MODEL_CHANGELOG_TOPIC);
+        broker.afterPropertiesSet();
+        Path directory = Files.createTempDirectory("read-model-bootstrap");
+        try {
+            String bootstrapServers = broker.getBrokersAsString();
+            fill(bootstrapServers, products);
+
+            ProductReadModelChangelog changelog = new ProductReadModelChangelog(bootstrapServers);
+            System.out.printf("%-14s %10s %12s%n", "bootstrap", "products", "catch-up ms");
+            try {
+                print("topic replay", run(bootstrapServers, directory, Optional.of(changelog)));
+            } finally {
+                changelog.close();
+            }
+
+            try (MappedProductStore store = openStore(directory)) {
+                new ProductSnapshotFile(directory.resolve(SNAPSHOT_FILE)).write(store);
+            }
+            deleteStoreFiles(directory);
+            print("snapshot", run(bootstrapServers, directory, Optional.empty()));
+            print("local files", run(bootstrapServers, directory, Optional.empty()));
+
+            deleteStoreFiles(directory);
+            Files.delete(directory.resolve(SNAPSHOT_FILE));
+            ProductReadModelChangelog restoringChangelog = new ProductReadModelChangelog(bootstrapServers);
+            try {
+                print("changelog", run(bootstrapServers, directory, Optional.of(restoringChangelog)));
+            } finally {
+                restoringChangelog.close();
+            }
+        } finally {
+            broker.destroy();
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void fill(String bootstrapServers, int products) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ProductCreatedEventBinarySerializer.class);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, 262144);
+        try (KafkaProducer<String, ProductCreatedEvent> producer = new KafkaProducer<>(config)) {
+            for (int i = 0; i < products; i++) {
+                String productId = UUID.randomUUID().toString();
+                ProductCreatedEvent event = new ProductCreatedEvent(productId, "Notebook Gamer " + i,
+                        new BigDecimal("2500.00"), 10);
+                producer.send(new ProducerRecord<>(KafkaConfig.PRODUCT_CREATED_EVENTS_TOPIC, productId, event));
+            }
+        }
+    }
+
+    private static long[] run(String bootstrapServers, Path directory, Optional<ProductReadModelChangelog> changelog)
+            throws IOException, InterruptedException {
+        ProductReadModel readModel = new ProductReadModel(new ProductCreatedEventRecordFormat(new ObjectMapper()),
+                new SimpleMeterRegistry(), changelog, bootstrapServers, directory, 1_000_000, 256, Duration.ofDays(1));
+        long start = System.nanoTime();
+        readModel.start();
+        try {
+            while (readModel.lag() != 0) {
+                Thread.sleep(1);
+            }
+            return new long[]{readModel.size(), (System.nanoTime() - start) / 1_000_000};
+        } finally {
+            readModel.stop();
+        }
+    }
+
+    private static MappedProductStore openStore(Path directory) throws IOException {
+        return new MappedProductStore(directory, 1_000_000, 256 * 1024 * 1024);
+    }
+
+    private static void deleteStoreFiles(Path directory) throws IOException {
+        Files.delete(directory.resolve("products.idx"));
+        Files.delete(directory.resolve("products.dat"));
+    }
+
+    private static void print(String bootstrap, long[] result) {
+        System.out.printf("%-14s %10d %12d%n", bootstrap, result[0], result[1]);
+    }
+}
@@ -0,0 +1,287 @@
+package com.malbano.benchmarks;
+
+import com.malbano.emailnotification.EmailNotificationMicroserviceApplication;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.exceptions.BatchProcessingException;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the two retry modes of the record listener: {@code topics} (a retry topic and a listener container per
+ * backoff step) and {@code delay-wheel} (one delay topic and the {@code DelayedRetryScheduler}). Each mode boots the
+ * email service in-process against its own embedded 3-node KRaft broker and publishes {@code products} products at
+ * once. The mail backend fails {@code failPercent}% of them twice before they succeed, and {@code deadPercent}% on
+ * every attempt so they end in the DLT. The run ends when every product was notified or dead-lettered.
+ * <p>
+ * Writes are the records appended to each kind of topic (leader writes; every one is copied to 3 replicas in both
+ * modes), and amplification is all writes over the products published. Consumer threads are the live listener
+ * container threads plus the delay scheduler thread. Lateness is how much later than its backoff a retry was
+ * attempted.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.malbano.benchmarks.RetryModeHarness [products] [failPercent]
+ * [deadPercent] [mailMillis] [projectDir]}
+ */
+public class RetryModeHarness {
+
+    private static final int PARTITIONS = 3;
+    private static final long DRAIN_TIMEOUT_SECONDS = 300;
+    private static final Pattern CONSUMER_THREAD = Pattern.compile(".*-C-\\d+|product-delay-retry");
+    private static final List<String> LANES = List.of(KafkaConsumerConfiguration.HIGH_PRIORITY_PRODUCT_CREATED_TOPIC,
+            KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC, KafkaConsumerConfiguration.LOW_PRIORITY_PRODUCT_CREATED_TOPIC);
+
+    public static void main(String[] args) throws Exception {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int failPercent = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int deadPercent = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        long mailMillis = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        Path projectDir = Path.of(args.length > 4 ? args[4] : "..").toAbsolutePath().normalize();
+
+        FlakyMailBackend.mailMillis = mailMillis;
+        System.out.printf("%d products, %d%% fail twice, %d%% always fail, mail %d ms%n", products, failPercent,
+                deadPercent, mailMillis);
+        System.out.printf("%-12s %8s %11s %13s %10s %10s %9s %10s %9s %9s %8s%n", "mode", "topics", "partitions",
+                "retry writes", "dlt writes", "amplif.", "threads", "notified", "late p50", "late p99", "drain s");
+        for (String mode : new String[]{KafkaConsumerConfiguration.TOPICS_RETRY_MODE,
+                KafkaConsumerConfiguration.DELAY_WHEEL_RETRY_MODE}) {
+            EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(3, PARTITIONS);
+            broker.afterPropertiesSet();
+            try {
+                run(broker.getBrokersAsString(), mode, products, failPercent, deadPercent, projectDir);
+            } finally {
+                broker.destroy();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(String bootstrapServers, String mode, int products, int failPercent, int deadPercent,
+                            Path projectDir) throws Exception {
+        Path dataDir = Files.createTempDirectory("retry-mode-harness");
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+            List<NewTopic> lanes = new ArrayList<>();
+            LANES.forEach(lane -> lanes.add(new NewTopic(lane, PARTITIONS, (short) 3)));
+            admin.createTopics(lanes).all().get();
+            // the metadata of the new lanes may not have reached every broker yet, so they are added explicitly
+            Set<String> before = new HashSet<>(admin.listTopics().names().get());
+            before.addAll(LANES);
+
+            FlakyMailBackend.reset();
+            ConfigurableApplicationContext email = new SpringApplicationBuilder(
+                    EmailNotificationMicroserviceApplication.class, FlakyMailBackend.class).run(
+                    "--spring.config.location=file:" + projectDir.resolve(
+                            "email-notification-microservice/src/main/resources/application.properties"),
+                    "--spring.main.web-application-type=none",
+                    "--spring.main.allow-bean-definition-overriding=true",
+                    "--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                    "--spring.kafka.consumer.bootstrap-servers=" + bootstrapServers,
+                    "--app.kafka.consumer.retry-mode=" + mode,
+                    "--app.kafka.consumer.autoscaling.enabled=false",
+                    "--app.kafka.consumer.dedup.enabled=false",
+                    "--app.kafka.consumer.circuit-breaker.enabled=false",
+                    "--app.kafka.consumer.priority-lanes.scheduler.enabled=false",
+                    "--app.kafka.consumer.dlt-replay.checkpoint-path=" + dataDir.resolve("dlt-replay.checkpoint"),
+                    "--app.logging.hot-path.summary-interval=0s",
+                    "--logging.level.root=OFF");
+            try {
+                awaitAssignment(email);
+                long start = System.currentTimeMillis();
+                publish(bootstrapServers, products, failPercent, deadPercent);
+
+                List<String> dlts = LANES.stream().map(lane -> lane + ".DLT").toList();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS);
+                long dltWrites;
+                int threads = 0;
+                do {
+                    Thread.sleep(200);
+                    threads = Math.max(threads, consumerThreads());
+                    dltWrites = endOffsets(admin, existing(admin, dlts));
+                } while (FlakyMailBackend.notified.get() + dltWrites < products && System.nanoTime() < deadline);
+                double drainSeconds = (System.currentTimeMillis() - start) / 1000.0;
+                if (FlakyMailBackend.notified.get() + dltWrites < products) {
+                    throw new IllegalStateException("only " + (FlakyMailBackend.notified.get() + dltWrites) + " of "
+                            + products + " products were notified or dead-lettered");
+                }
+
+                List<String> created = admin.listTopics().names().get().stream()
+                        .filter(name -> !before.contains(name))
+                        .sorted()
+                        .collect(Collectors.toList());
+                List<String> retryTopics = created.stream()
+                        .filter(name -> !name.endsWith(".DLT"))
+                        .collect(Collectors.toList());
+                int partitions = admin.describeTopics(created).allTopicNames().get().values().stream()
+                        .mapToInt(topic -> topic.partitions().size())
+                        .sum();
+                long retryWrites = endOffsets(admin, retryTopics);
+                Histogram lateness = FlakyMailBackend.lateness;
+                System.out.printf("%-12s %8d %11d %13d %10d %10.2f %9d %10d %9d %9d %8.1f%n", mode,
+                        created.size(), partitions, retryWrites, dltWrites,
+                        (products + retryWrites + dltWrites) / (double) products, threads,
+                        FlakyMailBackend.notified.get(), lateness.getValueAtPercentile(50),
+                        lateness.getValueAtPercentile(99), drainSeconds);
+            } finally {
+                email.close();
+            }
+        }
+    }
+
+    /**
+     * Consumers of the product lanes start from the latest offset, so nothing is published before they are assigned.
+     * Every container is waited for, so the thread count includes the retry and DLT containers.
+     */
+    private static void awaitAssignment(ConfigurableApplicationContext email) throws InterruptedException {
+        for (MessageListenerContainer container :
+                email.getBean(KafkaListenerEndpointRegistry.class).getAllListenerContainers()) {
+            while (container.getAssignedPartitions() == null || container.getAssignedPartitions().isEmpty()) {
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static int consumerThreads() {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> CONSUMER_THREAD.matcher(thread.getName()).matches())
+                .count();
+    }
+
+    /**
+     * The title of every product is {@code <failures>:<index>}: how many attempts the mail backend fails.
+     */
+    private static void publish(String bootstrapServers, int products, int failPercent, int deadPercent) {
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.LINGER_MS_CONFIG, 5,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class))) {
+            for (int i = 0; i < products; i++) {
+                int bucket = i % 100;
+                int failures = bucket < deadPercent ? Integer.MAX_VALUE : bucket < deadPercent + failPercent ? 2 : 0;
+                String productId = "product-" + i;
+                producer.send(new ProducerRecord<>(KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC, productId,
+                        "{\"productId\":\"" + productId + "\",\"title\":\"" + failures + ":" + i
+                                + "\",\"price\":2500.00,\"quantity\":10}"));
+            }
+        }
+    }
+
+    private static List<String> existing(Admin admin, List<String> topics) throws Exception {
+        Set<String> names = admin.listTopics().names().get();
+        return topics.stream().filter(names::contains).toList();
+    }
+
+    private static long endOffsets(Admin admin, List<String> topics) throws Exception {
+        if (topics.isEmpty()) {
+            return 0;
+        }
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        for (TopicDescription topic : admin.describeTopics(topics).allTopicNames().get().values()) {
+            topic.partitions().forEach(partition ->
+                    request.put(new TopicPartition(topic.name(), partition.partition()), OffsetSpec.latest()));
+        }
+        return admin.listOffsets(request).all().get().values().stream()
+                .mapToLong(info -> info.offset())
+                .sum();
+    }
+
+    /**
+     * Replaces the mocked mail sender: fails the number of attempts in the product title, records how late each
+     * retry came after its 1 s, 2 s, 4 s, 8 s backoff, and takes {@code mailMillis} per notification sent.
+     */
+    @Configuration
+    static class FlakyMailBackend {
+
+        static volatile long mailMillis;
+        static final AtomicLong notified = new AtomicLong();
+        static final Map<String, long[]> attempts = new ConcurrentHashMap<>();
+        static volatile Histogram lateness = new Histogram(TimeUnit.MINUTES.toMillis(10), 3);
+
+        static void reset() {
+            notified.set(0);
+            attempts.clear();
+            lateness = new Histogram(TimeUnit.MINUTES.toMillis(10), 3);
+        }
+
+        @Bean
+        ProductNotificationService productNotificationServiceImpl() {
+            return new ProductNotificationService() {
+                @Override
+                public void processProductCreated(ProductCreatedEvent event) {
+                    long now = System.currentTimeMillis();
+                    // attempts so far and the time of the last one
+                    long[] state = attempts.computeIfAbsent(event.getProductId(), id -> new long[2]);
+                    int failures = Integer.parseInt(event.getTitle().substring(0, event.getTitle().indexOf(':')));
+                    synchronized (state) {
+                        if (state[0] > 0) {
+                            long backoff = 1000L << (state[0] - 1);
+                            synchronized (FlakyMailBackend.class) {
+                                lateness.recordValue(Math.max(0, now - state[1] - backoff));
+                            }
+                        }
+                        state[0]++;
+                        state[1] = now;
+                        if (state[0] <= failures) {
+                            throw new IllegalStateException("Mail backend rejected attempt " + state[0]);
+                        }
+                    }
+                    if (mailMillis > 0) {
+                        try {
+                            Thread.sleep(mailMillis);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    notified.incrementAndGet();
+                }
+
+                @Override
+                public void processProductCreatedBatch(List<ProductCreatedEvent> events) {
+                    for (int i = 0; i < events.size(); i++) {
+                        try {
+                            processProductCreated(events.get(i));
+                        } catch (RuntimeException e) {
+                            throw new BatchProcessingException(i, e);
+                        }
+                    }
+                }
+
+                @Override
+                public void processProductCreatedDigest(String group, List<ProductCreatedEvent> events) {
+                    events.forEach(this::processProductCreated);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.malbano.benchmarks;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.malbano.emailnotification.smtp.SmtpConnection;
+import com.malbano.emailnotification.smtp.SmtpConnectionPool;
+import com.malbano.emailnotification.smtp.SmtpMessage;
+import com.malbano.emailnotification.smtp.SmtpSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.net.ExtendedSocketOptions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the same messages to an in-process GreenMail server with a new SMTP session per message, with the
+ * {@link SmtpConnectionPool} (without and with pipelining) and with the pool sending batches, and prints messages per
+ * second for each. Traffic goes through a local proxy that delays every server reply by {@code rttMillis}, to stand
+ * in for a mail server on another host, and that adds {@code PIPELINING} to the {@code EHLO} reply (GreenMail reads
+ * pipelined commands fine but does not advertise the extension).
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.malbano.benchmarks.SmtpThroughputHarness [messages] [rttMillis]
+ * [senders]}
+ */
+public class SmtpThroughputHarness {
+
+    private static final int BATCH_SIZE = 50;
+    private static final String USER = "notifications";
+    private static final String PASSWORD = "secret";
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        long rttMillis = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int senders = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        GreenMail greenMail = new GreenMail(new ServerSetup(0, "127.0.0.1", ServerSetup.PROTOCOL_SMTP).dynamicPort());
+        greenMail.start();
+        greenMail.setUser(USER + "@localhost", USER, PASSWORD);
+        try (LatencyProxy proxy = new LatencyProxy(greenMail.getSmtp().getPort(), rttMillis)) {
+            System.out.printf("%d messages, rtt %d ms, %d senders%n", messages, rttMillis, senders);
+            System.out.printf("%-24s %10s %10s %10s%n", "mode", "msg/s", "sessions", "delivered");
+            for (Mode mode : Mode.values()) {
+                greenMail.purgeEmailFromAllMailboxes();
+                Result result = run(mode, proxy.port(), messages, senders);
+                System.out.printf("%-24s %10.0f %10d %10d%n", mode.label, result.messagesPerSecond,
+                        result.sessions, greenMail.getReceivedMessages().length);
+            }
+        } finally {
+            greenMail.stop();
+        }
+    }
+
+    private enum Mode {
+        SESSION_PER_MESSAGE("session per message", false, 1),
+        POOLED("pooled", false, 1),
+        POOLED_PIPELINED("pooled, pipelining", true, 1),
+        POOLED_BATCH("pooled batch, pipelining", true, BATCH_SIZE);
+
+        final String label;
+        final boolean pipelining;
+        final int batchSize;
+
+        Mode(String label, boolean pipelining, int batchSize) {
+            this.label = label;
+            this.pipelining = pipelining;
+            this.batchSize = batchSize;
+        }
+    }
+
+    private record Result(double messagesPerSecond, long sessions) {
+    }
+
+    private static Result run(Mode mode, int port, int messages, int senders) throws Exception {
+        SmtpSettings settings = new SmtpSettings("127.0.0.1", port, USER, PASSWORD, false, mode.pipelining,
+                Duration.ofSeconds(5), Duration.ofSeconds(30));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        SmtpConnectionPool pool = new SmtpConnectionPool(settings, senders, senders, Duration.ofSeconds(30),
+                Duration.ofMinutes(5), Duration.ofSeconds(30), registry);
+        pool.start();
+        try (ExecutorService executor = Executors.newFixedThreadPool(senders)) {
+            long start = System.nanoTime();
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int sender = 0; sender < senders; sender++) {
+                int first = sender * messages / senders;
+                int last = (sender + 1) * messages / senders;
+                results.add(executor.submit(() -> {
+                    int sessions = 0;
+                    for (int i = first; i < last; i += mode.batchSize) {
+                        List<SmtpMessage> batch = new ArrayList<>(mode.batchSize);
+                        for (int j = i; j < Math.min(last, i + mode.batchSize); j++) {
+                            batch.add(message(j));
+                        }
+                        if (mode == Mode.SESSION_PER_MESSAGE) {
+                            try (SmtpConnection connection = SmtpConnection.open(settings)) {
+                                connection.send(batch);
+                            }
+                            sessions++;
+                        } else {
+                            pool.send(batch);
+                        }
+                    }
+                    return sessions;
+                }));
+            }
+            long sessions = 0;
+            for (Future<Integer> result : results) {
+                sessions += result.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (mode != Mode.SESSION_PER_MESSAGE) {
+                sessions = (long) registry.get("product.notification.smtp.connects").counter().count();
+            }
+            return new Result(messages / seconds, sessions);
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static SmtpMessage message(int i) {
+        String content = "From: <" + USER + "@localhost>\r\n"
+                + "To: <products@localhost>\r\n"
+                + "Subject: Novo produto: Produto " + i + "\r\n"
+                + "Message-ID: <product-" + i + ".product-created@localhost>\r\n"
+                + "\r\n"
+                + "Novo produto cadastrado: Produto " + i + "\r\n"
+                + "Quantidade: " + i + "\r\n";
+        return new SmtpMessage(USER + "@localhost", List.of("products@localhost"), content);
+    }
+
+    /**
+     * Forwards every client connection to GreenMail, holding the server's bytes back for {@code rttMillis} each.
+     */
+    private static final class LatencyProxy implements AutoCloseable {
+
+        private static final byte[] EHLO_GREETING_PREFIX = "250-".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] PIPELINING = "250-PIPELINING\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        private final ServerSocket serverSocket;
+        private final int targetPort;
+        private final long delayNanos;
+        private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+
+        LatencyProxy(int targetPort, long rttMillis) throws IOException {
+            this.serverSocket = new ServerSocket(0, 200, InetAddress.getLoopbackAddress());
+            this.targetPort = targetPort;
+            this.delayNanos = Duration.ofMillis(rttMillis).toNanos();
+            threads.submit(this::accept);
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    Socket server = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                    client.setTcpNoDelay(true);
+                    server.setTcpNoDelay(true);
+                    threads.submit(() -> pump(client.getInputStream(), server.getOutputStream(), server));
+                    BlockingQueue<Delayed> delayed = new LinkedBlockingQueue<>();
+                    threads.submit(() -> readDelayed(server, delayed));
+                    threads.submit(() -> writeDelayed(delayed, client.getOutputStream(), client));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private Void pump(InputStream in, OutputStream out, Socket target) throws IOException {
+            try (target) {
+                in.transferTo(out);
+            }
+            return null;
+        }
+
+        private Void readDelayed(Socket server, BlockingQueue<Delayed> delayed) throws IOException {
+            InputStream in = server.getInputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            try {
+                // GreenMail writes each reply separately without TCP_NODELAY: with delayed ACKs, Nagle's algorithm
+                // would hold every reply after the first of a pipelined group for ~40 ms
+                while (quickAck(server) && (read = in.read(buffer)) >= 0) {
+                    byte[] chunk = injectPipelining(Arrays.copyOf(buffer, read));
+                    delayed.add(new Delayed(System.nanoTime() + delayNanos, chunk));
+                }
+            } finally {
+                delayed.add(new Delayed(0, null));
+            }
+            return null;
+        }
+
+        private static boolean quickAck(Socket socket) throws IOException {
+            if (socket.supportedOptions().contains(ExtendedSocketOptions.TCP_QUICKACK)) {
+                socket.setOption(ExtendedSocketOptions.TCP_QUICKACK, true);
+            }
+            return true;
+        }
+
+        /**
+         * Adds {@code PIPELINING} after the first line of a multi-line {@code 250} reply, which only {@code EHLO}
+         * sends here.
+         */
+        private static byte[] injectPipelining(byte[] chunk) {
+            if (chunk.length < 4 || !Arrays.equals(chunk, 0, 4, EHLO_GREETING_PREFIX, 0, 4)) {
+                return chunk;
+            }
+            int lineEnd = 0;
+            while (lineEnd < chunk.length && chunk[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            byte[] injected = new byte[chunk.length + PIPELINING.length];
+            System.arraycopy(chunk, 0, injected, 0, lineEnd + 1);
+            System.arraycopy(PIPELINING, 0, injected, lineEnd + 1, PIPELINING.length);
+            System.arraycopy(chunk, lineEnd + 1, injected, lineEnd + 1 + PIPELINING.length, chunk.length - lineEnd - 1);
+            return injected;
+        }
+
+        private Void writeDelayed(BlockingQueue<Delayed> delayed, OutputStream out, Socket client) throws Exception {
+            try (client) {
+                while (true) {
+                    Delayed entry = delayed.take();
+                    if (entry.chunk() == null) {
+                        return null;
+                    }
+                    long wait;
+                    while ((wait = entry.dueNanos() - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    out.write(entry.chunk());
+                    out.flush();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            threads.shutdownNow();
+        }
+
+        private record Delayed(long dueNanos, byte[] chunk) {
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.malbano.benchmarks;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Starts the packaged services as separate JVMs against an embedded 3-node KRaft broker and measures, for every
+ * variant of the launch, the time from spawning the process until Spring reports it started and until it handled its
+ * first record: the first product acknowledged by Kafka through {@code POST /products/sync} for the products service,
+ * and the first committed offset of a record published while it was down for the email service.
+ * <p>
+ * The variants use the artifacts of {@code ./mvnw -Pfast-startup package} in both services: the fat jar, the jar
+ * extracted by {@code -Djarmode=tools}, the extracted jar with {@code -Dspring.aot.enabled=true}, and the latter with
+ * the AppCDS archive recorded at build time. Prints the median of {@code runs} starts, after one discarded warm-up
+ * start per variant.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.malbano.benchmarks.StartupHarness [runs] [projectDir]}
+ */
+public class StartupHarness {
+
+    private static final int PARTITIONS = 3;
+    private static final String CONSUMER_GROUP = "product-created-events";
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Path projectDir = Path.of(args.length > 1 ? args[1] : "..").toAbsolutePath().normalize();
+
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(3, PARTITIONS);
+        broker.afterPropertiesSet();
+        String bootstrapServers = broker.getBrokersAsString();
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+            admin.createTopics(List.of(
+                    new NewTopic(BenchmarkData.TOPIC, PARTITIONS, (short) 3).configs(Map.of("min.insync.replicas", "2")),
+                    new NewTopic(BenchmarkData.TOPIC + ".DLT", PARTITIONS, (short) 3))).all().get();
+
+            Service products = new Service("products-microservice", projectDir.resolve("products-microservice"),
+                    "ProductsMicroservice-0.0.1-SNAPSHOT.jar", 8081,
+                    List.of("--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                            "--spring.kafka.producer.bootstrap-servers=" + bootstrapServers));
+            Service email = new Service("email-notification-microservice",
+                    projectDir.resolve("email-notification-microservice"), "emailnotification-0.0.1-SNAPSHOT.jar", 8082,
+                    List.of("--spring.kafka.bootstrap-servers=" + bootstrapServers,
+                            "--spring.kafka.consumer.bootstrap-servers=" + bootstrapServers,
+                            "--app.kafka.consumer.dedup.enabled=false"));
+
+            // the listener starts from the latest offset without a committed one, so commit the current end first
+            commitEndOffsets(admin);
+
+            System.out.printf("%d runs per variant (median), broker %s%n", runs, bootstrapServers);
+            System.out.printf("%-32s %-20s %12s %16s%n", "service", "variant", "started ms", "first record ms");
+            for (Service service : List.of(products, email)) {
+                for (Variant variant : Variant.values()) {
+                    List<Long> started = new ArrayList<>();
+                    List<Long> firstRecord = new ArrayList<>();
+                    for (int run = 0; run <= runs; run++) {
+                        long[] result = service == email
+                                ? startEmail(service, variant, admin, bootstrapServers)
+                                : startProducts(service, variant);
+                        if (run > 0) {
+                            started.add(result[0]);
+                            firstRecord.add(result[1]);
+                        }
+                    }
+                    System.out.printf("%-32s %-20s %12d %16d%n", service.name, variant.label,
+                            median(started), median(firstRecord));
+                }
+            }
+        } finally {
+            broker.destroy();
+        }
+        System.exit(0);
+    }
+
+    private enum Variant {
+        JAR("jar"),
+        EXTRACTED("extracted"),
+        AOT("extracted + AOT"),
+        AOT_CDS("extracted + AOT + CDS");
+
+        final String label;
+
+        Variant(String label) {
+            this.label = label;
+        }
+    }
+
+    private record Service(String name, Path moduleDir, String jarName, int port, List<String> arguments) {
+
+        List<String> command(Variant variant) {
+            Path fastStartup = moduleDir.resolve("target").resolve("fast-startup");
+            List<String> command = new ArrayList<>(List.of(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+            if (variant == Variant.AOT || variant == Variant.AOT_CDS) {
+                command.add("-Dspring.aot.enabled=true");
+            }
+            if (variant == Variant.AOT_CDS) {
+                command.add("-XX:SharedArchiveFile=" + fastStartup.resolve("application.jsa"));
+            }
+            command.add("-jar");
+            command.add((variant == Variant.JAR ? moduleDir.resolve("target") : fastStartup)
+                    .resolve(jarName).toString());
+            command.add("--server.port=" + port);
+            command.addAll(arguments);
+            return command;
+        }
+    }
+
+    private static long[] startProducts(Service service, Variant variant) throws Exception {
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + service.port + "/products/sync"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"title\":\"Notebook Gamer\",\"price\":2500.00,\"quantity\":10}"))
+                .build();
+        return measure(service, variant, () -> {
+            try {
+                return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 201;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+    }
+
+    private static long[] startEmail(Service service, Variant variant, Admin admin, String bootstrapServers)
+            throws Exception {
+        long committedBefore = committed(admin);
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class))) {
+            producer.send(new ProducerRecord<>(BenchmarkData.TOPIC, BenchmarkData.PRODUCT_ID,
+                    "{\"productId\":\"" + BenchmarkData.PRODUCT_ID
+                            + "\",\"title\":\"Notebook Gamer\",\"price\":2500.00,\"quantity\":10}")).get();
+        }
+        return measure(service, variant, () -> committed(admin) > committedBefore);
+    }
+
+    private interface Probe {
+        boolean done() throws Exception;
+    }
+
+    /**
+     * Returns the milliseconds from spawning the process until its "Started" log line and until {@code firstRecord}
+     * holds, then stops the process.
+     */
+    private static long[] measure(Service service, Variant variant, Probe firstRecord) throws Exception {
+        Path workDir = Files.createTempDirectory("startup-harness");
+        long spawned = System.nanoTime();
+        Process process = new ProcessBuilder(service.command(variant))
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .start();
+        try {
+            CompletableFuture<Long> started = new CompletableFuture<>();
+            Thread.ofVirtual().start(() -> drain(process, started, spawned));
+            long deadline = spawned + TIMEOUT.toNanos();
+            while (!firstRecord.done()) {
+                if (System.nanoTime() > deadline || !process.isAlive()) {
+                    throw new IllegalStateException(service.name + " (" + variant.label + ") did not handle a record");
+                }
+                Thread.sleep(5);
+            }
+            long firstRecordMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - spawned);
+            return new long[]{started.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS), firstRecordMillis};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            deleteRecursively(workDir);
+        }
+    }
+
+    /**
+     * Completes {@code started} at Spring's "Started ... in ..." line and keeps reading the output until the process
+     * exits, so it never blocks on a full pipe.
+     */
+    private static void drain(Process process, CompletableFuture<Long> started, long spawned) {
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (!started.isDone() && line.contains("Started ") && line.contains(" in ")) {
+                    started.complete(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - spawned));
+                }
+            }
+        } catch (IOException e) {
+            started.completeExceptionally(e);
+        } finally {
+            started.completeExceptionally(new IllegalStateException("process exited before starting"));
+        }
+    }
+
+    private static void commitEndOffsets(Admin admin) throws Exception {
+        Map<TopicPartition, OffsetSpec> latest = partitions().stream()
+                .collect(Collectors.toMap(partition -> partition, partition -> OffsetSpec.latest()));
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                admin.listOffsets(latest).all().get()
+                        .forEach((partition, info) -> offsets.put(partition, new OffsetAndMetadata(info.offset())));
+                break;
+            } catch (ExecutionException e) {
+                // the brokers learn about the new topic a moment after it is created
+                if (attempt == 50) {
+                    throw e;
+                }
+                Thread.sleep(200);
+            }
+        }
+        admin.alterConsumerGroupOffsets(CONSUMER_GROUP, offsets).all().get();
+    }
+
+    private static long committed(Admin admin) throws Exception {
+        return admin.listConsumerGroupOffsets(CONSUMER_GROUP).partitionsToOffsetAndMetadata().get().entrySet().stream()
+                .filter(entry -> entry.getKey().topic().equals(BenchmarkData.TOPIC) && entry.getValue() != null)
+                .mapToLong(entry -> entry.getValue().offset())
+                .sum();
+    }
+
+    private static List<TopicPartition> partitions() {
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            partitions.add(new TopicPartition(BenchmarkData.TOPIC, partition));
+        }
+        return partitions;
+    }
+
+    private static long median(List<Long> values) {
+        long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+        return sorted[sorted.length / 2];
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.malbano.benchmarks.logging;
+
+import ch.qos.logback.core.OutputStreamAppender;
+
+import java.io.OutputStream;
+
+/**
+ * Appender that runs the full layout/encoder path but discards the bytes, so benchmarks measure logging cost
+ * without terminal or disk I/O.
+ */
+public class NullOutputStreamAppender<E> extends OutputStreamAppender<E> {
+
+    @Override
+    public void start() {
+        setOutputStream(OutputStream.nullOutputStream());
+        super.start();
+    }
+}
@@ -0,0 +1,273 @@
+package com.malbano.emailnotification.circuitbreaker;
+
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.KafkaBackoffException;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker around the notification call. While the mail backend keeps failing, sending every record through
+ * the retry topics only multiplies broker writes, so instead:
+ * <ul>
+ *     <li>CLOSED: calls go through; once at least {@code minimum-calls} of the last {@code window-size} calls were
+ *     made and {@code failure-rate-threshold} percent of them failed, the breaker opens;</li>
+ *     <li>OPEN: every product-created listener container (main and retry topics, not the DLT) is paused and calls
+ *     are rejected, so records wait in place in their partitions (delayed retries wait in the timing wheel of the
+ *     {@code DelayedRetryScheduler}); after {@code open-duration} it goes half-open;</li>
+ *     <li>HALF_OPEN: the containers are resumed and {@code half-open-probes} calls are let through; if all succeed
+ *     the breaker closes, if one fails it opens again.</li>
+ * </ul>
+ * Handlers turn a rejected call into a {@link KafkaBackoffException}, which makes the error handler seek back to the
+ * record instead of counting it as a failed attempt.
+ */
+@Component
+public class NotificationCircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final Logger log = LoggerFactory.getLogger(NotificationCircuitBreaker.class);
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final boolean enabled;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final Duration openDuration;
+    private final int halfOpenProbes;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "notification-circuit-breaker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // outcomes of the last calls while closed, true for a failure
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCalls;
+    private int windowFailures;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int probesPermitted;
+    private int probesSucceeded;
+
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+    private final Counter rejected;
+    private final Timer paused;
+    private final LongTaskTimer pausedActive;
+    private LongTaskTimer.Sample pauseSample;
+    private long pausedAt;
+
+    public NotificationCircuitBreaker(KafkaListenerEndpointRegistry listenerRegistry,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.kafka.consumer.circuit-breaker.enabled:true}") boolean enabled,
+                                      @Value("${app.kafka.consumer.circuit-breaker.window-size:20}") int windowSize,
+                                      @Value("${app.kafka.consumer.circuit-breaker.minimum-calls:10}") int minimumCalls,
+                                      @Value("${app.kafka.consumer.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                                      @Value("${app.kafka.consumer.circuit-breaker.open-duration:30s}") Duration openDuration,
+                                      @Value("${app.kafka.consumer.circuit-breaker.half-open-probes:3}") int halfOpenProbes) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenProbes < 1) {
+            throw new IllegalArgumentException("Circuit breaker needs 1 <= minimum-calls <= window-size "
+                    + "and at least one half-open probe");
+        }
+        this.listenerRegistry = listenerRegistry;
+        this.enabled = enabled;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenProbes = halfOpenProbes;
+
+        Gauge.builder("product.notification.circuit.state", this, breaker -> breaker.state.ordinal())
+                .description("Notification circuit breaker state (0 closed, 1 half-open, 2 open)")
+                .register(meterRegistry);
+        for (State target : State.values()) {
+            transitions.put(target, Counter.builder("product.notification.circuit.transitions")
+                    .description("Notification circuit breaker state changes")
+                    .tag("state", target.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        this.rejected = Counter.builder("product.notification.circuit.rejected")
+                .description("Notification calls rejected while the circuit breaker was open")
+                .register(meterRegistry);
+        this.paused = Timer.builder("product.notification.circuit.pause")
+                .description("Time the listener containers stayed paused by the circuit breaker")
+                .register(meterRegistry);
+        this.pausedActive = LongTaskTimer.builder("product.notification.circuit.pause.active")
+                .description("Pause of the listener containers by the circuit breaker still in progress")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @return false if the call must not be made now; the caller then leaves the record where it is
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (!enabled || state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && probesPermitted < halfOpenProbes) {
+            probesPermitted++;
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            recordOutcome(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (!enabled) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            transition(State.OPEN);
+        } else if (state == State.CLOSED) {
+            recordOutcome(true);
+            if (windowCalls >= minimumCalls && windowFailures * 100L >= (long) failureRateThreshold * windowCalls) {
+                transition(State.OPEN);
+            }
+        }
+        // failures of calls that started before the breaker opened are ignored
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Exception for a rejected call on the given partition, due when the breaker goes half-open.
+     */
+    public synchronized KafkaBackoffException rejection(String topic, int partition) {
+        long dueTimestamp = state == State.OPEN ? openedAt + openDuration.toMillis() : System.currentTimeMillis();
+        return new KafkaBackoffException("Notification circuit breaker is " + state,
+                new TopicPartition(topic, partition), KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID,
+                dueTimestamp);
+    }
+
+    /**
+     * @return how long a caller that was rejected should wait before asking again
+     */
+    public synchronized long retryDelayMillis() {
+        if (state != State.OPEN) {
+            return 100;
+        }
+        return Math.max(100, openedAt + openDuration.toMillis() - System.currentTimeMillis());
+    }
+
+    private void recordOutcome(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transition(State target) {
+        State previous = state;
+        state = target;
+        transitions.get(target).increment();
+        windowIndex = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+        probesPermitted = 0;
+        probesSucceeded = 0;
+
+        if (target == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+            log.warn("Notification circuit breaker opened ({} -> OPEN), pausing listener containers for {}",
+                    previous, openDuration);
+            pauseContainers();
+            scheduler.schedule(this::halfOpen, openDuration.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            log.info("Notification circuit breaker {} -> {}", previous, target);
+        }
+    }
+
+    private synchronized void halfOpen() {
+        if (state != State.OPEN) {
+            return;
+        }
+        transition(State.HALF_OPEN);
+        resumeContainers();
+    }
+
+    private void pauseContainers() {
+        for (MessageListenerContainer container : listenerRegistry.getAllListenerContainers()) {
+            if (!isDltContainer(container)) {
+                container.pause();
+            }
+        }
+        if (pauseSample == null) {
+            pauseSample = pausedActive.start();
+            pausedAt = System.nanoTime();
+        }
+    }
+
+    private void resumeContainers() {
+        for (MessageListenerContainer container : listenerRegistry.getAllListenerContainers()) {
+            if (!isDltContainer(container)) {
+                container.resume();
+            }
+        }
+        if (pauseSample != null) {
+            pauseSample.stop();
+            pauseSample = null;
+            paused.record(System.nanoTime() - pausedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // the DLT handler does not call the mail backend, so dead letters keep flowing while the breaker is open
+    private static boolean isDltContainer(MessageListenerContainer container) {
+        String[] topics = container.getContainerProperties().getTopics();
+        if (topics == null) {
+            return false;
+        }
+        for (String topic : topics) {
+            if (topic.endsWith(".DLT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
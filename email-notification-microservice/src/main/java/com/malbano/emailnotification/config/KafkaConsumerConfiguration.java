@@ -1,76 +1,247 @@
 package com.malbano.emailnotification.config;
 
+import com.malbano.emailnotification.digest.NotificationDigestAggregator;
+import com.malbano.emailnotification.filter.ProductEventRecordFilter;
+import com.malbano.emailnotification.handler.ProductCreatedEventBatchHandler;
+import com.malbano.emailnotification.handler.ProductCreatedEventDigestHandler;
+import com.malbano.emailnotification.handler.ProductCreatedEventHandler;
+import com.malbano.emailnotification.handler.ProductCreatedEventParallelHandler;
+import com.malbano.emailnotification.metrics.CountingDeadLetterPublishingRecoverer;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import com.malbano.emailnotification.retry.DelayedRetryRecoverer;
+import com.malbano.emailnotification.serialization.ProductCreatedEventBinaryDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.core.env.Environment;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.retrytopic.RetryTopicConfiguration;
+import org.springframework.kafka.retrytopic.RetryTopicConfigurationBuilder;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
+@ImportRuntimeHints(ProductEventRuntimeHints.class)
 public class KafkaConsumerConfiguration {
 
+    public static final String BINARY_CODEC = "binary";
+    public static final String RECORD_LISTENER_MODE = "record";
+    public static final String BATCH_LISTENER_MODE = "batch";
+    public static final String PARALLEL_LISTENER_MODE = "parallel";
+    public static final String DIGEST_LISTENER_MODE = "digest";
+    public static final String TOPICS_RETRY_MODE = "topics";
+    public static final String DELAY_WHEEL_RETRY_MODE = "delay-wheel";
+    public static final String PRODUCT_CREATED_LISTENER_ID = "product-created-events-listener";
+    public static final String PRODUCT_CREATED_TOPIC = "product-created-events-topic";
+    public static final String HIGH_PRIORITY_PRODUCT_CREATED_TOPIC = "product-created-events-high-topic";
+    public static final String LOW_PRIORITY_PRODUCT_CREATED_TOPIC = "product-created-events-low-topic";
+    public static final String PRODUCT_CREATED_DELAY_TOPIC = "product-created-events-delay-topic";
+
     @Autowired
     Environment environment;
 
 
     @Bean
     NewTopic productCreatedEventsDlt() {
+        return dlt(PRODUCT_CREATED_TOPIC);
+    }
+
+    @Bean
+    NewTopic highPriorityProductCreatedEventsDlt() {
+        return dlt(HIGH_PRIORITY_PRODUCT_CREATED_TOPIC);
+    }
+
+    @Bean
+    NewTopic lowPriorityProductCreatedEventsDlt() {
+        return dlt(LOW_PRIORITY_PRODUCT_CREATED_TOPIC);
+    }
+
+    private static NewTopic dlt(String topic) {
         return TopicBuilder
-                .name("product-created-events-topic.DLT")
+                .name(topic + ".DLT")
                 .partitions(3)
                 .replicas(3)
                 .build();
     }
 
+    /**
+     * Non-blocking retries of the record listener: a retry topic per backoff step of each lane (1 s doubling up to
+     * 30 s, 5 attempts) and a container per step, then the lane DLT.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = RECORD_LISTENER_MODE,
+            matchIfMissing = true)
+    @ConditionalOnProperty(name = "app.kafka.consumer.retry-mode", havingValue = TOPICS_RETRY_MODE,
+            matchIfMissing = true)
+    RetryTopicConfiguration productCreatedRetryTopics(KafkaTemplate<String, Object> kafkaTemplate) {
+        return RetryTopicConfigurationBuilder.newInstance()
+                .maxAttempts(5)
+                .exponentialBackoff(1000, 2.0, 30000)
+                .dltSuffix(".DLT")
+                // broker defaults, as with @RetryableTopic
+                .autoCreateTopicsWith(-1, (short) -1)
+                .includeTopics(List.of(HIGH_PRIORITY_PRODUCT_CREATED_TOPIC, PRODUCT_CREATED_TOPIC,
+                        LOW_PRIORITY_PRODUCT_CREATED_TOPIC))
+                .dltHandlerMethod("productCreatedEventHandler", "handleDlt")
+                .create(kafkaTemplate);
+    }
+
+    /**
+     * Single topic of the {@code delay-wheel} retry mode, shared by every backoff step and lane.
+     */
     @Bean
-    public ConsumerFactory<String, Object> consumerFactory() {
+    @ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = RECORD_LISTENER_MODE,
+            matchIfMissing = true)
+    @ConditionalOnProperty(name = "app.kafka.consumer.retry-mode", havingValue = DELAY_WHEEL_RETRY_MODE)
+    NewTopic productCreatedEventsDelayTopic() {
+        return TopicBuilder
+                .name(PRODUCT_CREATED_DELAY_TOPIC)
+                .partitions(3)
+                .replicas(3)
+                .configs(Map.of("min.insync.replicas", "2"))
+                .build();
+    }
+
+    @Bean
+    public ConsumerFactory<String, Object> consumerFactory(MeterRegistry meterRegistry) {
         Map<String, Object> config = new HashMap<>();
         config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, environment.getProperty("spring.kafka.consumer.bootstrap-servers"));
         config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
+        if (environment.getProperty("app.kafka.consumer.lazy-deserialization", Boolean.class, false)) {
+            // payloads are parsed by ProductCreatedEventReader, after ProductEventRecordFilter
+            config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        } else {
+            config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+            config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS,
+                    BINARY_CODEC.equals(environment.getProperty("app.kafka.product-event.codec", "json"))
+                            ? ProductCreatedEventBinaryDeserializer.class
+                            : JsonDeserializer.class);
+        }
         config.put(JsonDeserializer.TRUSTED_PACKAGES, environment.getProperty("spring.kafka.consumer.properties.spring.json.trusted.packages"));
         config.put(ConsumerConfig.GROUP_ID_CONFIG, environment.getProperty("spring.kafka.consumer.group-id"));
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, environment.getProperty("spring.kafka.consumer.max-poll-records", "500"));
         config.put("spring.json.use.type.headers", false);
         config.put("spring.json.value.default.type", "com.malbano.emailnotification.dto.ProductCreatedEvent");
 
-        return new DefaultKafkaConsumerFactory<>(config);
+        DefaultKafkaConsumerFactory<String, Object> factory = new DefaultKafkaConsumerFactory<>(config);
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
-    ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
-            ConsumerFactory<String, Object> consumerFactory, KafkaTemplate<String, Object> kafkaTemplate) {
-
-        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(
+    DeadLetterPublishingRecoverer deadLetterPublishingRecoverer(KafkaTemplate<String, Object> kafkaTemplate,
+                                                                NotificationMetrics metrics) {
+        return new CountingDeadLetterPublishingRecoverer(
                 kafkaTemplate,
-                (record, ex) -> new TopicPartition(record.topic() + ".DLT", record.partition())
+                (record, ex) -> new TopicPartition(record.topic() + ".DLT", record.partition()),
+                metrics
         );
+    }
 
-        DefaultErrorHandler errorHandler = new DefaultErrorHandler(recoverer);
+    @Bean
+    ExponentialBackOffWithMaxRetries retryBackOff() {
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(4);
+        backOff.setInitialInterval(1000);
+        backOff.setMultiplier(2.0);
+        backOff.setMaxInterval(30000);
+        return backOff;
+    }
+
+    @Bean
+    ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory(
+            ConsumerFactory<String, Object> consumerFactory, DeadLetterPublishingRecoverer recoverer,
+            ExponentialBackOffWithMaxRetries retryBackOff, ProductEventRecordFilter recordFilter,
+            ObjectProvider<NotificationDigestAggregator> digestAggregator,
+            ObjectProvider<DelayedRetryRecoverer> delayedRetryRecoverer, ListableBeanFactory beanFactory) {
 
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
-        factory.setCommonErrorHandler(errorHandler);
+        factory.setRecordFilterStrategy(recordFilter);
+        factory.setAckDiscarded(true);
+        // when the circuit breaker pauses the containers, records already polled are not handed to the listener
+        factory.getContainerProperties().setPauseImmediate(true);
+        factory.setConcurrency(environment.getProperty("app.kafka.consumer.concurrency", Integer.class, 1));
+
+        String listenerMode = listenerMode(beanFactory);
+        if (BATCH_LISTENER_MODE.equals(listenerMode)) {
+            factory.setBatchListener(true);
+            factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer, retryBackOff));
+        } else if (PARALLEL_LISTENER_MODE.equals(listenerMode)) {
+            factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+            factory.getContainerProperties().setAsyncAcks(true);
+            factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer));
+        } else if (DIGEST_LISTENER_MODE.equals(listenerMode)) {
+            // offsets are acknowledged by the aggregator once the digests are sent; acking a filtered record would
+            // commit past the records still buffered before it
+            factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+            factory.setAckDiscarded(false);
+            factory.getContainerProperties().setConsumerRebalanceListener(digestAggregator.getObject());
+            factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer));
+        } else if (delayedRetryRecoverer.getIfAvailable() != null) {
+            // no blocking attempts: a failed record goes straight to the delay topic
+            factory.setCommonErrorHandler(new DefaultErrorHandler(delayedRetryRecoverer.getObject(),
+                    new FixedBackOff(0, 0)));
+        } else {
+            factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer));
+        }
 
         return factory;
     }
 
+    /**
+     * The handler of each mode is picked by {@code @ConditionalOnProperty}, which Spring AOT evaluates when the
+     * application is built, while this lookup runs at startup. The container follows the handler that was registered,
+     * and a different {@code listener-mode} at runtime fails the startup instead of wiring a container that does not
+     * fit the listener.
+     */
+    private String listenerMode(ListableBeanFactory beanFactory) {
+        String configured = environment.getProperty("app.kafka.consumer.listener-mode", RECORD_LISTENER_MODE);
+        Map<String, Class<?>> handlers = Map.of(
+                RECORD_LISTENER_MODE, ProductCreatedEventHandler.class,
+                BATCH_LISTENER_MODE, ProductCreatedEventBatchHandler.class,
+                PARALLEL_LISTENER_MODE, ProductCreatedEventParallelHandler.class,
+                DIGEST_LISTENER_MODE, ProductCreatedEventDigestHandler.class);
+        String registered = handlers.entrySet().stream()
+                .filter(handler -> beanFactory.getBeanNamesForType(handler.getValue(), false, false).length > 0)
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(configured);
+        if (!registered.equals(configured)) {
+            throw new IllegalStateException("app.kafka.consumer.listener-mode is '" + configured
+                    + "' but the application was AOT-processed with '" + registered + "'; rebuild it with "
+                    + "-Dspring-boot.aot.jvmArguments=-Dapp.kafka.consumer.listener-mode=" + configured
+                    + " or start it without -Dspring.aot.enabled=true");
+        }
+        return registered;
+    }
+
     @Bean
     KafkaTemplate<String, Object> kafkaTemplate(ProducerFactory<String, Object> producerFactory){
         return new KafkaTemplate<>(producerFactory);
@@ -80,9 +251,12 @@ public class KafkaConsumerConfiguration {
     ProducerFactory<String, Object> producerFactory(){
         Map<String, Object> config = new HashMap<>();
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, environment.getProperty("spring.kafka.consumer.bootstrap-servers"));
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
 
-        return new DefaultKafkaProducerFactory<>(config);
+        // raw payloads forwarded to retry topics and the DLT are written back unchanged
+        Map<Class<?>, Serializer<?>> valueSerializers = Map.of(
+                byte[].class, new ByteArraySerializer(),
+                Object.class, new JsonSerializer<>());
+        return new DefaultKafkaProducerFactory<>(config, new StringSerializer(),
+                new DelegatingByTypeSerializer(valueSerializers, true));
     }
 }
@@ -0,0 +1,22 @@
+package com.malbano.emailnotification.config;
+
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.serialization.ProductCreatedEventBinaryDeserializer;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection the native image cannot see on its own: the Kafka client instantiates the value deserializer from its
+ * class name, and {@link ProductCreatedEvent} is bound by Jackson from the Kafka payload rather than from a controller.
+ */
+class ProductEventRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection().registerType(ProductCreatedEventBinaryDeserializer.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), ProductCreatedEvent.class);
+    }
+}
@@ -0,0 +1,39 @@
+package com.malbano.emailnotification.config;
+
+import com.malbano.emailnotification.smtp.SmtpConnectionPool;
+import com.malbano.emailnotification.smtp.SmtpSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "app.notification.smtp.enabled", havingValue = "true")
+public class SmtpConfiguration {
+
+    @Bean
+    SmtpSettings smtpSettings(@Value("${app.notification.smtp.host:localhost}") String host,
+                              @Value("${app.notification.smtp.port:25}") int port,
+                              @Value("${app.notification.smtp.username:}") String username,
+                              @Value("${app.notification.smtp.password:}") String password,
+                              @Value("${app.notification.smtp.starttls:false}") boolean startTls,
+                              @Value("${app.notification.smtp.pipelining:true}") boolean pipelining,
+                              @Value("${app.notification.smtp.connect-timeout:5s}") Duration connectTimeout,
+                              @Value("${app.notification.smtp.read-timeout:10s}") Duration readTimeout) {
+        return new SmtpSettings(host, port, username, password, startTls, pipelining, connectTimeout, readTimeout);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    SmtpConnectionPool smtpConnectionPool(SmtpSettings settings, MeterRegistry meterRegistry,
+                                          @Value("${app.notification.smtp.pool.max-size:8}") int maxSize,
+                                          @Value("${app.notification.smtp.pool.min-idle:2}") int minIdle,
+                                          @Value("${app.notification.smtp.pool.validation-interval:30s}") Duration validationInterval,
+                                          @Value("${app.notification.smtp.pool.max-idle-time:5m}") Duration maxIdleTime,
+                                          @Value("${app.notification.smtp.pool.borrow-timeout:5s}") Duration borrowTimeout) {
+        return new SmtpConnectionPool(settings, maxSize, minIdle, validationInterval, maxIdleTime, borrowTimeout,
+                meterRegistry);
+    }
+}
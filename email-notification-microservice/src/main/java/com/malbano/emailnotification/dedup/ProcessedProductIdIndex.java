@@ -0,0 +1,279 @@
+package com.malbano.emailnotification.dedup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded set of recently processed productIds. Ids are kept as 64-bit fingerprints in an open addressing table
+ * (load factor at most 0.5) and a FIFO ring holding their insertion time, so each tracked id costs about 32 bytes
+ * and a million ids fit in ~32 MB. The oldest ids are evicted once {@code maxEntries} or the TTL is reached. A
+ * fingerprint collision (about one in 2^64 per pair) would skip a genuinely new event. A {@code null} productId is
+ * never tracked, so such events are not deduplicated.
+ * <p>
+ * The index is saved to {@code snapshot-path} every {@code snapshot-interval} when it changed, and on shutdown, so a
+ * crash loses at most one interval of processed ids. The ring is copied under the lock and written outside it.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.dedup.enabled", havingValue = "true")
+public class ProcessedProductIdIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x44445550;
+    private static final long EMPTY = 0L;
+    private static final long SNAPSHOT_TIMEOUT_SECONDS = 10;
+
+    private final Logger log = LoggerFactory.getLogger(ProcessedProductIdIndex.class);
+    private final long[] table;
+    private final int mask;
+    private final long[] ringFingerprints;
+    private final long[] ringTimestamps;
+    private final long ttlMs;
+    private final Path snapshotPath;
+    private final Duration snapshotInterval;
+    private final ScheduledExecutorService snapshotScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "dedup-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int head;
+    private int size;
+    private long changes;
+    private long savedChanges;
+
+    public ProcessedProductIdIndex(@Value("${app.kafka.consumer.dedup.max-entries:1000000}") int maxEntries,
+                                   @Value("${app.kafka.consumer.dedup.ttl:24h}") Duration ttl,
+                                   @Value("${app.kafka.consumer.dedup.snapshot-path:}") String snapshotPath,
+                                   @Value("${app.kafka.consumer.dedup.snapshot-interval:1m}") Duration snapshotInterval) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The dedup index must hold at least one productId");
+        }
+        if (snapshotInterval.isNegative() || snapshotInterval.isZero()) {
+            throw new IllegalArgumentException("app.kafka.consumer.dedup.snapshot-interval must be positive");
+        }
+        int capacity = Integer.highestOneBit(maxEntries * 2 - 1) << 1;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+        this.ringFingerprints = new long[maxEntries];
+        this.ringTimestamps = new long[maxEntries];
+        this.ttlMs = ttl.toMillis();
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.snapshotInterval = snapshotInterval;
+        load();
+        savedChanges = changes;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (snapshotPath != null) {
+            long intervalMs = snapshotInterval.toMillis();
+            snapshotScheduler.scheduleWithFixedDelay(this::snapshotIfChanged, intervalMs, intervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshotScheduler.shutdown();
+        try {
+            // a periodic snapshot still running would otherwise replace the final one with older ids
+            snapshotScheduler.awaitTermination(SNAPSHOT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    public synchronized boolean contains(String productId) {
+        if (productId == null) {
+            return false;
+        }
+        evictExpired(System.currentTimeMillis());
+        return indexOf(fingerprint(productId)) >= 0;
+    }
+
+    public synchronized void add(String productId) {
+        if (productId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        insert(fingerprint(productId), now);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void insert(long fingerprint, long timestamp) {
+        if (indexOf(fingerprint) >= 0) {
+            return;
+        }
+        if (size == ringFingerprints.length) {
+            evictOldest();
+        }
+        int slot = slot(fingerprint);
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = fingerprint;
+
+        int tail = (head + size) % ringFingerprints.length;
+        ringFingerprints[tail] = fingerprint;
+        ringTimestamps[tail] = timestamp;
+        size++;
+        changes++;
+    }
+
+    private void evictExpired(long now) {
+        while (size > 0 && now - ringTimestamps[head] >= ttlMs) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        remove(ringFingerprints[head]);
+        head = (head + 1) % ringFingerprints.length;
+        size--;
+        changes++;
+    }
+
+    private int indexOf(long fingerprint) {
+        int slot = slot(fingerprint);
+        while (table[slot] != EMPTY) {
+            if (table[slot] == fingerprint) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void remove(long fingerprint) {
+        int hole = indexOf(fingerprint);
+        if (hole < 0) {
+            return;
+        }
+        // backward shift deletion keeps every remaining probe chain unbroken without tombstones
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long candidate = table[slot];
+            if (candidate == EMPTY) {
+                break;
+            }
+            int home = slot(candidate);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                table[hole] = candidate;
+                hole = slot;
+            }
+        }
+        table[hole] = EMPTY;
+    }
+
+    private int slot(long fingerprint) {
+        return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+
+    static long fingerprint(String productId) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : productId.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    private void load() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                log.warn("Ignoring dedup snapshot with unknown format: {}", snapshotPath);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long fingerprint = in.readLong();
+                long timestamp = in.readLong();
+                if (now - timestamp < ttlMs) {
+                    insert(fingerprint, timestamp);
+                }
+            }
+            log.info("Loaded {} processed productIds from {}", size, snapshotPath);
+        } catch (IOException e) {
+            log.warn("Failed to load dedup snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private void snapshotIfChanged() {
+        synchronized (this) {
+            if (changes == savedChanges) {
+                return;
+            }
+        }
+        snapshot();
+    }
+
+    private void snapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        long[] fingerprints;
+        long[] timestamps;
+        long changesSaved;
+        synchronized (this) {
+            fingerprints = new long[size];
+            timestamps = new long[size];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % ringFingerprints.length;
+                fingerprints[i] = ringFingerprints[index];
+                timestamps[i] = ringTimestamps[index];
+            }
+            changesSaved = changes;
+        }
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "dedup", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(fingerprints.length);
+                for (int i = 0; i < fingerprints.length; i++) {
+                    out.writeLong(fingerprints[i]);
+                    out.writeLong(timestamps[i]);
+                }
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                savedChanges = Math.max(savedChanges, changesSaved);
+            }
+            log.info("Saved {} processed productIds to {}", fingerprints.length, snapshotPath);
+        } catch (IOException e) {
+            log.warn("Failed to save dedup snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.malbano.emailnotification.digest;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Commit watermark per partition for records that complete out of order (a digest holds records of several
+ * partitions and windows close independently). A record is acknowledged only once it and every earlier tracked record
+ * of its partition are complete, so with {@code AckMode.MANUAL} the committed offset never passes a record whose
+ * digest was not sent yet. Not thread safe, guarded by the {@link NotificationDigestAggregator}.
+ */
+class DigestOffsetTracker {
+
+    private final Map<TopicPartition, TreeMap<Long, Slot>> partitions = new HashMap<>();
+
+    void track(TopicPartition partition, long offset, Acknowledgment acknowledgment) {
+        partitions.computeIfAbsent(partition, p -> new TreeMap<>()).put(offset, new Slot(acknowledgment));
+    }
+
+    /**
+     * Marks the record complete and acknowledges the last record of the completed prefix of its partition, if any.
+     * Records of partitions revoked meanwhile are ignored, also when the partition was assigned again and the same
+     * offset is tracked for the new delivery (told apart by its acknowledgment).
+     */
+    void complete(TopicPartition partition, long offset, Acknowledgment acknowledgment) {
+        TreeMap<Long, Slot> slots = partitions.get(partition);
+        Slot slot = slots != null ? slots.get(offset) : null;
+        if (slot == null || slot.acknowledgment != acknowledgment) {
+            return;
+        }
+        slot.complete = true;
+        Acknowledgment watermark = null;
+        while (!slots.isEmpty() && slots.firstEntry().getValue().complete) {
+            watermark = slots.pollFirstEntry().getValue().acknowledgment;
+        }
+        if (watermark != null) {
+            watermark.acknowledge();
+        }
+    }
+
+    void revoke(Collection<TopicPartition> revoked) {
+        revoked.forEach(partitions::remove);
+    }
+
+    private static final class Slot {
+
+        final Acknowledgment acknowledgment;
+        boolean complete;
+
+        Slot(Acknowledgment acknowledgment) {
+            this.acknowledgment = acknowledgment;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.malbano.emailnotification.digest;
+
+import com.malbano.emailnotification.circuitbreaker.NotificationCircuitBreaker;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.BackOffExecution;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces product-created events into digests for {@code app.kafka.consumer.listener-mode=digest}. Events are
+ * buffered per group (the {@value #GROUP_HEADER} header, {@value #DEFAULT_GROUP} without it) in a window that is sent
+ * as one {@link ProductNotificationService#processProductCreatedDigest} call once it holds {@code max-events} events
+ * or is {@code window} old, whichever comes first.
+ * <p>
+ * Offsets are committed through a {@link DigestOffsetTracker}: a record is acknowledged only after the digest holding
+ * it (and every earlier record of its partition) was sent or, after the retries, published to the DLT. Buffered and
+ * unsent events are capped by {@code max-buffered-events} and {@code max-buffered-bytes}: above either, the oldest
+ * window is sent early and the assigned partitions are paused until the buffer drains below 80%. Partitions revoked in
+ * a rebalance drop their buffered events, which the new owner receives again since they were never committed.
+ * <p>
+ * A record that could neither be sent nor published to the DLT stays incomplete, so no commit passes it; the listener
+ * is then stopped, dropping the buffer, and started again after {@code failure-pause} to consume the uncommitted
+ * records once more.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = "digest")
+public class NotificationDigestAggregator implements ConsumerAwareRebalanceListener {
+
+    public static final String GROUP_HEADER = "notification-group";
+    public static final String DEFAULT_GROUP = "default";
+
+    // rough heap cost of a buffered record besides its payload: record, headers, event and bookkeeping
+    private static final int RECORD_OVERHEAD_BYTES = 512;
+
+    private final Logger log = LoggerFactory.getLogger(NotificationDigestAggregator.class);
+    private final ProductNotificationService notificationService;
+    private final DeadLetterPublishingRecoverer recoverer;
+    private final ExponentialBackOffWithMaxRetries retryBackOff;
+    private final NotificationCircuitBreaker circuitBreaker;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final long windowNanos;
+    private final int maxEvents;
+    private final int maxBufferedEvents;
+    private final long maxBufferedBytes;
+    private final Duration failurePause;
+    private final AtomicBoolean listenerRestarting = new AtomicBoolean();
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(task -> new Thread(task, "notification-digest"));
+    private final ScheduledExecutorService windowTimer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "notification-digest-window");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // guarded by this
+    private final Map<String, Window> openWindows = new LinkedHashMap<>();
+    private final DigestOffsetTracker offsets = new DigestOffsetTracker();
+    private final Set<TopicPartition> pausedPartitions = new HashSet<>();
+    private int bufferedEvents;
+    private long bufferedBytes;
+
+    private final Map<String, DistributionSummary> digestSizes = new LinkedHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public NotificationDigestAggregator(ProductNotificationService notificationService,
+                                        DeadLetterPublishingRecoverer recoverer,
+                                        ExponentialBackOffWithMaxRetries retryBackOff,
+                                        NotificationCircuitBreaker circuitBreaker,
+                                        KafkaListenerEndpointRegistry listenerRegistry,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${app.kafka.consumer.digest.window:30s}") Duration window,
+                                        @Value("${app.kafka.consumer.digest.max-events:500}") int maxEvents,
+                                        @Value("${app.kafka.consumer.digest.max-buffered-events:20000}") int maxBufferedEvents,
+                                        @Value("${app.kafka.consumer.digest.max-buffered-bytes:32MB}") DataSize maxBufferedBytes,
+                                        @Value("${app.kafka.consumer.digest.failure-pause:30s}") Duration failurePause) {
+        if (maxEvents < 1 || maxBufferedEvents < maxEvents) {
+            throw new IllegalArgumentException("Digest needs 1 <= max-events <= max-buffered-events");
+        }
+        this.notificationService = notificationService;
+        this.recoverer = recoverer;
+        this.retryBackOff = retryBackOff;
+        this.circuitBreaker = circuitBreaker;
+        this.listenerRegistry = listenerRegistry;
+        this.windowNanos = window.toNanos();
+        this.maxEvents = maxEvents;
+        this.maxBufferedEvents = maxBufferedEvents;
+        this.maxBufferedBytes = maxBufferedBytes.toBytes();
+        this.failurePause = failurePause;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("product.notification.digest.buffered", this, aggregator -> aggregator.bufferedEvents())
+                .description("Events buffered for a digest and not yet sent")
+                .register(meterRegistry);
+        Gauge.builder("product.notification.digest.buffered.bytes", this, aggregator -> aggregator.bufferedBytes())
+                .description("Estimated heap held by buffered events")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long tick = Math.max(10, Math.min(1000, TimeUnit.NANOSECONDS.toMillis(windowNanos) / 10));
+        windowTimer.scheduleWithFixedDelay(this::closeExpiredWindows, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        // unsent events were never acknowledged and are consumed again after the restart
+        windowTimer.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    /**
+     * Buffers the event; called on the consumer thread.
+     */
+    public synchronized void add(ConsumerRecord<String, Object> record, ProductCreatedEvent event,
+                                 Acknowledgment acknowledgment) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        offsets.track(partition, record.offset(), acknowledgment);
+
+        String group = group(record);
+        Window window = openWindows.computeIfAbsent(group, Window::new);
+        int bytes = Math.max(0, record.serializedValueSize()) + RECORD_OVERHEAD_BYTES;
+        window.entries.add(new Entry(record, event, acknowledgment, bytes));
+        bufferedEvents++;
+        bufferedBytes += bytes;
+
+        if (window.entries.size() >= maxEvents) {
+            dispatch(openWindows.remove(group), "count");
+        }
+        if (pausedPartitions.isEmpty() && (bufferedEvents >= maxBufferedEvents || bufferedBytes >= maxBufferedBytes)) {
+            // the rest of the current poll still arrives before the pause takes effect, so the caps are soft
+            Iterator<Window> oldest = openWindows.values().iterator();
+            if (oldest.hasNext()) {
+                Window oldestWindow = oldest.next();
+                oldest.remove();
+                dispatch(oldestWindow, "capacity");
+            }
+            pauseAssignedPartitions();
+        }
+    }
+
+    /**
+     * Tracks a record that is not part of any digest, before the handler publishes it to the DLT; until
+     * {@link #completeUnbuffered} it holds back the commits of its partition.
+     */
+    public synchronized void trackUnbuffered(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) {
+        offsets.track(new TopicPartition(record.topic(), record.partition()), record.offset(), acknowledgment);
+    }
+
+    /**
+     * Completes a record tracked with {@link #trackUnbuffered} once it was published to the DLT.
+     */
+    public synchronized void completeUnbuffered(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) {
+        offsets.complete(new TopicPartition(record.topic(), record.partition()), record.offset(), acknowledgment);
+    }
+
+    /**
+     * Stops the listener, which revokes its partitions and drops the buffer, and starts it again after
+     * {@code failure-pause}, so records left incomplete are consumed again from the last commit. Does nothing while a
+     * restart is already pending.
+     */
+    public void restartListener(String reason) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(
+                KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID);
+        if (container == null || !listenerRestarting.compareAndSet(false, true)) {
+            return;
+        }
+        log.error("{}: stopping the digest listener for {} to consume the uncommitted records again", reason, failurePause);
+        container.stop(() -> {
+            try {
+                windowTimer.schedule(() -> {
+                    listenerRestarting.set(false);
+                    container.start();
+                    log.info("Digest listener started again after {}", failurePause);
+                }, failurePause.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        });
+    }
+
+    private static String group(ConsumerRecord<String, Object> record) {
+        Header header = record.headers().lastHeader(GROUP_HEADER);
+        if (header == null || header.value() == null || header.value().length == 0) {
+            return DEFAULT_GROUP;
+        }
+        return new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private synchronized void closeExpiredWindows() {
+        long now = System.nanoTime();
+        Iterator<Window> windows = openWindows.values().iterator();
+        while (windows.hasNext()) {
+            Window window = windows.next();
+            if (now - window.openedNanos >= windowNanos) {
+                windows.remove();
+                dispatch(window, "time");
+            }
+        }
+    }
+
+    private void dispatch(Window window, String trigger) {
+        digestSizes.computeIfAbsent(trigger, t -> DistributionSummary.builder("product.notification.digest.events")
+                        .description("Events per digest, by what closed the window")
+                        .tag("trigger", t)
+                        .register(meterRegistry))
+                .record(window.entries.size());
+        sender.execute(() -> send(window));
+    }
+
+    private void send(Window window) {
+        List<ProductCreatedEvent> events = new ArrayList<>(window.entries.size());
+        for (Entry entry : window.entries) {
+            events.add(entry.event);
+        }
+        boolean completed = false;
+        try {
+            completed = deliver(window, events);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            release(window, completed);
+        }
+        if (!completed) {
+            restartListener("Digest of group " + window.group + " neither sent nor published to the DLT");
+        }
+    }
+
+    private boolean deliver(Window window, List<ProductCreatedEvent> events) throws InterruptedException {
+        BackOffExecution backOff = retryBackOff.start();
+        while (true) {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                Thread.sleep(circuitBreaker.retryDelayMillis());
+                continue;
+            }
+            try {
+                notificationService.processProductCreatedDigest(window.group, events);
+                circuitBreaker.onSuccess();
+                log.debug("Sent digest: group={}, events={}", window.group, events.size());
+                return true;
+            } catch (Exception e) {
+                circuitBreaker.onFailure();
+                long delay = backOff.nextBackOff();
+                if (delay == BackOffExecution.STOP) {
+                    log.error("Error sending digest: group={}, events={}, error={}",
+                            window.group, events.size(), e.getMessage(), e);
+                    return recover(window, e);
+                }
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Publishes the records of the window to the DLT with the same backoff as the sends; each attempt continues from
+     * the first record that was not published.
+     */
+    private boolean recover(Window window, Exception cause) throws InterruptedException {
+        BackOffExecution backOff = retryBackOff.start();
+        int published = 0;
+        while (true) {
+            try {
+                for (; published < window.entries.size(); published++) {
+                    recoverer.accept(window.entries.get(published).record, cause);
+                }
+                return true;
+            } catch (Exception e) {
+                long delay = backOff.nextBackOff();
+                if (delay == BackOffExecution.STOP) {
+                    log.error("Failed to publish digest records to DLT, offsets left uncommitted: group={}",
+                            window.group, e);
+                    return false;
+                }
+                log.warn("Failed to publish digest records to DLT, retrying in {} ms: group={}, error={}",
+                        delay, window.group, e.getMessage());
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    private synchronized void release(Window window, boolean completed) {
+        for (Entry entry : window.entries) {
+            if (completed) {
+                offsets.complete(new TopicPartition(entry.record.topic(), entry.record.partition()),
+                        entry.record.offset(), entry.acknowledgment);
+            }
+            bufferedEvents--;
+            bufferedBytes -= entry.bytes;
+        }
+        if (!pausedPartitions.isEmpty()
+                && bufferedEvents < maxBufferedEvents * 0.8 && bufferedBytes < maxBufferedBytes * 0.8) {
+            resumePausedPartitions();
+        }
+    }
+
+    private void pauseAssignedPartitions() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(
+                KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID);
+        if (container == null || container.getAssignedPartitions() == null) {
+            return;
+        }
+        for (TopicPartition partition : container.getAssignedPartitions()) {
+            if (pausedPartitions.add(partition)) {
+                container.pausePartition(partition);
+            }
+        }
+        log.warn("Digest buffer full ({} events, {} bytes), paused partitions {}",
+                bufferedEvents, bufferedBytes, pausedPartitions);
+    }
+
+    private void resumePausedPartitions() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(
+                KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID);
+        if (container != null) {
+            pausedPartitions.forEach(container::resumePartition);
+        }
+        log.info("Digest buffer drained ({} events), resumed partitions {}", bufferedEvents, pausedPartitions);
+        pausedPartitions.clear();
+    }
+
+    @Override
+    public synchronized void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer,
+                                                             Collection<TopicPartition> partitions) {
+        Iterator<Window> windows = openWindows.values().iterator();
+        while (windows.hasNext()) {
+            Window window = windows.next();
+            window.entries.removeIf(entry -> {
+                boolean revoked = partitions.contains(
+                        new TopicPartition(entry.record.topic(), entry.record.partition()));
+                if (revoked) {
+                    bufferedEvents--;
+                    bufferedBytes -= entry.bytes;
+                }
+                return revoked;
+            });
+            if (window.entries.isEmpty()) {
+                windows.remove();
+            }
+        }
+        offsets.revoke(partitions);
+        pausedPartitions.removeAll(partitions);
+    }
+
+    synchronized int bufferedEvents() {
+        return bufferedEvents;
+    }
+
+    synchronized long bufferedBytes() {
+        return bufferedBytes;
+    }
+
+    private static final class Window {
+
+        final String group;
+        final long openedNanos = System.nanoTime();
+        final List<Entry> entries = new ArrayList<>();
+
+        Window(String group) {
+            this.group = group;
+        }
+    }
+
+    private record Entry(ConsumerRecord<String, Object> record, ProductCreatedEvent event,
+                         Acknowledgment acknowledgment, int bytes) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.malbano.emailnotification.exceptions;
+
+public class BatchProcessingException extends RuntimeException {
+
+    private final int failedIndex;
+
+    public BatchProcessingException(int failedIndex, Throwable cause) {
+        super("Failed to process batch item at index " + failedIndex, cause);
+        this.failedIndex = failedIndex;
+    }
+
+    public int getFailedIndex() {
+        return failedIndex;
+    }
+}
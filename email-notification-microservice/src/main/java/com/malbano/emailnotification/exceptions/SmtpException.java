@@ -0,0 +1,30 @@
+package com.malbano.emailnotification.exceptions;
+
+public class SmtpException extends RuntimeException {
+
+    private final int messageIndex;
+    private final int replyCode;
+
+    public SmtpException(int messageIndex, int replyCode, String reply) {
+        super("SMTP server replied " + reply + " for message " + messageIndex);
+        this.messageIndex = messageIndex;
+        this.replyCode = replyCode;
+    }
+
+    public SmtpException(int messageIndex, String message, Throwable cause) {
+        super(message + " for message " + messageIndex, cause);
+        this.messageIndex = messageIndex;
+        this.replyCode = -1;
+    }
+
+    public int getMessageIndex() {
+        return messageIndex;
+    }
+
+    /**
+     * @return the SMTP reply code, or {@code -1} when the connection failed
+     */
+    public int getReplyCode() {
+        return replyCode;
+    }
+}
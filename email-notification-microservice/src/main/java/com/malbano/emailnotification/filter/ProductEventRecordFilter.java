@@ -0,0 +1,95 @@
+package com.malbano.emailnotification.filter;
+
+import com.malbano.emailnotification.dedup.ProcessedProductIdIndex;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.adapter.RecordFilterStrategy;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Runs before the payload is parsed and only looks at the headers stamped by products-microservice:
+ * <ul>
+ *     <li>records of another {@code event-type} are dropped;</li>
+ *     <li>records with a {@code schema-version} newer than this service understands are routed to the DLT untouched;</li>
+ *     <li>records whose {@code product-id} was already processed are dropped when deduplication is enabled.</li>
+ * </ul>
+ * Records without these headers pass through and are handled as before. DLT records are never filtered.
+ */
+@Component
+public class ProductEventRecordFilter implements RecordFilterStrategy<String, Object> {
+
+    public static final String EVENT_TYPE_HEADER = "event-type";
+    public static final String SCHEMA_VERSION_HEADER = "schema-version";
+    public static final String PRODUCT_ID_HEADER = "product-id";
+    public static final String PRODUCT_CREATED_EVENT_TYPE = "ProductCreated";
+    public static final int SUPPORTED_SCHEMA_VERSION = 1;
+
+    private static final String DLT_SUFFIX = ".DLT";
+    private static final byte[] PRODUCT_CREATED_EVENT_TYPE_BYTES =
+            PRODUCT_CREATED_EVENT_TYPE.getBytes(StandardCharsets.UTF_8);
+
+    private final Logger log = LoggerFactory.getLogger(ProductEventRecordFilter.class);
+    private final DeadLetterPublishingRecoverer recoverer;
+    private final Optional<ProcessedProductIdIndex> processedIds;
+    private final NotificationMetrics metrics;
+
+    public ProductEventRecordFilter(DeadLetterPublishingRecoverer recoverer,
+                                    Optional<ProcessedProductIdIndex> processedIds,
+                                    NotificationMetrics metrics) {
+        this.recoverer = recoverer;
+        this.processedIds = processedIds;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean filter(ConsumerRecord<String, Object> record) {
+        if (record.topic().endsWith(DLT_SUFFIX)) {
+            return false;
+        }
+
+        Header eventType = record.headers().lastHeader(EVENT_TYPE_HEADER);
+        if (eventType != null && !Arrays.equals(eventType.value(), PRODUCT_CREATED_EVENT_TYPE_BYTES)) {
+            metrics.filtered("event-type");
+            return true;
+        }
+
+        Header schemaVersion = record.headers().lastHeader(SCHEMA_VERSION_HEADER);
+        if (schemaVersion != null && parseVersion(schemaVersion.value()) > SUPPORTED_SCHEMA_VERSION) {
+            String version = new String(schemaVersion.value(), StandardCharsets.UTF_8);
+            log.error("Routing ProductCreatedEvent with unsupported schema version {} to DLT: partition={}, offset={}",
+                    version, record.partition(), record.offset());
+            recoverer.accept(record, new DeserializationException("Unsupported ProductCreatedEvent schema version "
+                    + version, record.value() instanceof byte[] data ? data : null, false, null));
+            return true;
+        }
+
+        Header productId = record.headers().lastHeader(PRODUCT_ID_HEADER);
+        if (productId != null && processedIds.isPresent()
+                && processedIds.get().contains(new String(productId.value(), StandardCharsets.UTF_8))) {
+            metrics.duplicateSkipped();
+            return true;
+        }
+        return false;
+    }
+
+    // unparseable versions count as supported, the payload parser decides
+    private static int parseVersion(byte[] value) {
+        int version = 0;
+        for (byte digit : value) {
+            if (digit < '0' || digit > '9' || version > 100_000) {
+                return 0;
+            }
+            version = version * 10 + (digit - '0');
+        }
+        return version;
+    }
+}
@@ -0,0 +1,109 @@
+package com.malbano.emailnotification.handler;
+
+import com.malbano.emailnotification.circuitbreaker.NotificationCircuitBreaker;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.exceptions.BatchProcessingException;
+import com.malbano.emailnotification.logging.HotPathLog;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import com.malbano.emailnotification.serialization.ProductCreatedEventReader;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = "batch")
+public class ProductCreatedEventBatchHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCreatedEventBatchHandler.class);
+
+    private final ProductNotificationService notificationService;
+    private final HotPathLog hotPathLog;
+    private final ProductCreatedEventReader eventReader;
+    private final NotificationCircuitBreaker circuitBreaker;
+    private final NotificationMetrics metrics;
+
+    public ProductCreatedEventBatchHandler(ProductNotificationService notificationService, HotPathLog hotPathLog,
+                                           ProductCreatedEventReader eventReader,
+                                           NotificationCircuitBreaker circuitBreaker,
+                                           NotificationMetrics metrics) {
+        this.notificationService = notificationService;
+        this.hotPathLog = hotPathLog;
+        this.eventReader = eventReader;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+    }
+
+    @KafkaListener(id = KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID,
+            topics = {KafkaConsumerConfiguration.HIGH_PRIORITY_PRODUCT_CREATED_TOPIC,
+                    KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC,
+                    KafkaConsumerConfiguration.LOW_PRIORITY_PRODUCT_CREATED_TOPIC}, groupId = "product-created-events")
+    public void handle(List<ConsumerRecord<String, Object>> records) {
+        log.debug("Processing batch of {} ProductCreatedEvents", records.size());
+        long start = System.nanoTime();
+
+        // records dropped by ProductEventRecordFilter are not in the list, so failures name the record, not an index
+        List<ProductCreatedEvent> events = new ArrayList<>(records.size());
+        DeserializationException invalidCause = null;
+        for (ConsumerRecord<String, Object> record : records) {
+            try {
+                events.add(eventReader.read(record));
+            } catch (DeserializationException e) {
+                invalidCause = e;
+                break;
+            }
+        }
+
+        // the whole batch waits in place; the error handler seeks back to its first record
+        if (!events.isEmpty() && !circuitBreaker.tryAcquirePermission()) {
+            ConsumerRecord<String, Object> first = records.get(0);
+            throw new BatchListenerFailedException("Notification circuit breaker is open",
+                    circuitBreaker.rejection(first.topic(), first.partition()), first);
+        }
+
+        try {
+            notificationService.processProductCreatedBatch(events);
+            if (!events.isEmpty()) {
+                circuitBreaker.onSuccess();
+            }
+        } catch (BatchProcessingException e) {
+            circuitBreaker.onFailure();
+            ConsumerRecord<String, Object> failed = records.get(e.getFailedIndex());
+            record(records.subList(0, e.getFailedIndex()), start);
+            hotPathLog.recordError(failed.topic(), failed.partition());
+            log.error("Error processing ProductCreatedEvent in batch: productId={}, offset={}, error={}",
+                    failed.key(), failed.offset(), e.getCause().getMessage(), e.getCause());
+            throw new BatchListenerFailedException("Failed to process ProductCreatedEvent", e.getCause(), failed);
+        }
+
+        if (invalidCause != null) {
+            ConsumerRecord<String, Object> invalid = records.get(events.size());
+            record(records.subList(0, events.size()), start);
+            hotPathLog.recordError(invalid.topic(), invalid.partition());
+            log.error("Invalid ProductCreatedEvent in batch: key={}, offset={}", invalid.key(), invalid.offset());
+            throw new BatchListenerFailedException("Invalid ProductCreatedEvent payload", invalidCause, invalid);
+        }
+
+        record(records, start);
+        if (hotPathLog.shouldLogEvent(log)) {
+            log.info("Successfully processed batch of {} ProductCreatedEvents", events.size());
+        }
+    }
+
+    // latency of each record is the time spent on the whole batch
+    private void record(List<ConsumerRecord<String, Object>> processed, long start) {
+        for (ConsumerRecord<String, Object> record : processed) {
+            metrics.laneDelivered(record.topic(), record.timestamp());
+            hotPathLog.record(record.topic(), record.partition(), record.offset(), start);
+        }
+    }
+}
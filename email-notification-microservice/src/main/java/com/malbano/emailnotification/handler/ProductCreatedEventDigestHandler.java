@@ -0,0 +1,70 @@
+package com.malbano.emailnotification.handler;
+
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.digest.NotificationDigestAggregator;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.logging.HotPathLog;
+import com.malbano.emailnotification.serialization.ProductCreatedEventReader;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = "digest")
+public class ProductCreatedEventDigestHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCreatedEventDigestHandler.class);
+
+    private final NotificationDigestAggregator aggregator;
+    private final ProductCreatedEventReader eventReader;
+    private final DeadLetterPublishingRecoverer recoverer;
+    private final HotPathLog hotPathLog;
+
+    public ProductCreatedEventDigestHandler(NotificationDigestAggregator aggregator,
+                                            ProductCreatedEventReader eventReader,
+                                            DeadLetterPublishingRecoverer recoverer,
+                                            HotPathLog hotPathLog) {
+        this.aggregator = aggregator;
+        this.eventReader = eventReader;
+        this.recoverer = recoverer;
+        this.hotPathLog = hotPathLog;
+    }
+
+    @KafkaListener(id = KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID,
+            topics = {KafkaConsumerConfiguration.HIGH_PRIORITY_PRODUCT_CREATED_TOPIC,
+                    KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC,
+                    KafkaConsumerConfiguration.LOW_PRIORITY_PRODUCT_CREATED_TOPIC}, groupId = "product-created-events")
+    public void handle(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) {
+        long start = System.nanoTime();
+        ProductCreatedEvent event;
+        try {
+            event = eventReader.read(record);
+        } catch (DeserializationException e) {
+            // tracked before the publish, so a record that did not reach the DLT holds back the commits
+            aggregator.trackUnbuffered(record, acknowledgment);
+            try {
+                recoverer.accept(record, e);
+                aggregator.completeUnbuffered(record, acknowledgment);
+            } catch (Exception dltFailure) {
+                log.error("Failed to publish record to DLT, offset left uncommitted: topic={}, partition={}, offset={}",
+                        record.topic(), record.partition(), record.offset(), dltFailure);
+                aggregator.restartListener("Record " + record.topic() + "-" + record.partition() + "@"
+                        + record.offset() + " not published to the DLT");
+            }
+            return;
+        }
+
+        // acknowledged by the aggregator once the digest holding the event was sent
+        aggregator.add(record, event, acknowledgment);
+        hotPathLog.record(record.topic(), record.partition(), record.offset(), start);
+        if (hotPathLog.shouldLogEvent(log)) {
+            log.info("Buffered ProductCreatedEvent for digest: productId={}", event.getProductId());
+        }
+    }
+}
@@ -1,48 +1,110 @@
 package com.malbano.emailnotification.handler;
 
+import com.malbano.emailnotification.circuitbreaker.NotificationCircuitBreaker;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
 import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.logging.HotPathLog;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import com.malbano.emailnotification.priority.ProductPriorityLane;
+import com.malbano.emailnotification.serialization.ProductCreatedEventBinaryCodec;
+import com.malbano.emailnotification.serialization.ProductCreatedEventReader;
 import com.malbano.emailnotification.service.ProductNotificationService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaHandler;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.annotation.RetryableTopic;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.lang.Nullable;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Component;
 
-
-@RetryableTopic(
-        attempts = "5",
-        backoff = @Backoff(delay = 1000, multiplier = 2.0, maxDelay = 30000),
-        dltTopicSuffix = ".DLT"
-)
-@KafkaListener(topics="product-created-events-topic", groupId = "product-created-events")
+/**
+ * Record listener of the product lanes. Failed records are retried through the retry topics of
+ * {@code KafkaConsumerConfiguration#productCreatedRetryTopics}, which route their dead letters to {@link #handleDlt},
+ * or with {@code app.kafka.consumer.retry-mode=delay-wheel} through the delay topic of the
+ * {@link com.malbano.emailnotification.retry.DelayedRetryScheduler}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = "record", matchIfMissing = true)
+@KafkaListener(id = KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID,
+        topics = {KafkaConsumerConfiguration.HIGH_PRIORITY_PRODUCT_CREATED_TOPIC,
+                KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC,
+                KafkaConsumerConfiguration.LOW_PRIORITY_PRODUCT_CREATED_TOPIC}, groupId = "product-created-events")
 public class ProductCreatedEventHandler {
 
     private static final Logger log = LoggerFactory.getLogger(ProductCreatedEventHandler.class);
 
     private final ProductNotificationService notificationService;
+    private final NotificationMetrics metrics;
+    private final HotPathLog hotPathLog;
+    private final ProductCreatedEventReader eventReader;
+    private final NotificationCircuitBreaker circuitBreaker;
 
-    public ProductCreatedEventHandler(ProductNotificationService notificationService) {
+    public ProductCreatedEventHandler(ProductNotificationService notificationService, NotificationMetrics metrics,
+                                      HotPathLog hotPathLog, ProductCreatedEventReader eventReader,
+                                      NotificationCircuitBreaker circuitBreaker) {
         this.notificationService = notificationService;
+        this.metrics = metrics;
+        this.hotPathLog = hotPathLog;
+        this.eventReader = eventReader;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    // lazy deserialization: the payload is only parsed once the record passed ProductEventRecordFilter
+    @KafkaHandler
+    public void handle(@Payload byte[] payload, @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                       @Header(KafkaHeaders.RECEIVED_PARTITION) int partition, @Header(KafkaHeaders.OFFSET) long offset,
+                       @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long timestamp,
+                       @Header(name = ProductCreatedEventBinaryCodec.CODEC_HEADER, required = false)
+                       @Nullable byte[] codecVersion) {
+        // the codec version header is mapped as raw bytes; the reader checks it against the payload
+        RecordHeaders headers = new RecordHeaders();
+        if (codecVersion != null) {
+            headers.add(ProductCreatedEventBinaryCodec.CODEC_HEADER, codecVersion);
+        }
+        handle(eventReader.decode(headers, payload), topic, partition, offset, timestamp);
     }
 
     @KafkaHandler
-    public void handle(@Payload ProductCreatedEvent event) {
-        log.info("Processing ProductCreatedEvent: productId={}, title='{}'",
+    public void handle(@Payload ProductCreatedEvent event, @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                       @Header(KafkaHeaders.RECEIVED_PARTITION) int partition, @Header(KafkaHeaders.OFFSET) long offset,
+                       @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long timestamp) {
+        // rejected records are sought back instead of going to the retry topics
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw circuitBreaker.rejection(topic, partition);
+        }
+        if (ProductPriorityLane.ofMainTopic(topic) == null) {
+            metrics.retryRouted();
+        }
+        log.debug("Processing ProductCreatedEvent: productId={}, title='{}'",
                 event.getProductId(), event.getTitle());
 
+        long start = System.nanoTime();
         try {
             notificationService.processProductCreated(event);
-            log.info("Successfully processed ProductCreatedEvent: productId={}", event.getProductId());
+            circuitBreaker.onSuccess();
+            metrics.laneDelivered(topic, timestamp);
+            hotPathLog.record(topic, partition, offset, start);
+            if (hotPathLog.shouldLogEvent(log)) {
+                log.info("Successfully processed ProductCreatedEvent: productId={}", event.getProductId());
+            }
         } catch (Exception e) {
+            circuitBreaker.onFailure();
+            hotPathLog.recordError(topic, partition);
             log.error("Error processing ProductCreatedEvent: productId={}, error={}",
                     event.getProductId(), e.getMessage(), e);
             throw e;
         }
     }
+
+    public void handleDlt(ConsumerRecord<String, Object> record) {
+        metrics.dltRouted();
+        log.error("ProductCreatedEvent routed to {}: productId={}, partition={}, offset={}",
+                record.topic(), record.key(), record.partition(), record.offset());
+    }
 }
@@ -0,0 +1,177 @@
+package com.malbano.emailnotification.handler;
+
+import com.malbano.emailnotification.circuitbreaker.NotificationCircuitBreaker;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.logging.HotPathLog;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import com.malbano.emailnotification.processing.KeyOrderedExecutor;
+import com.malbano.emailnotification.serialization.ProductCreatedEventReader;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.BackOffExecution;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hands each record to the {@link KeyOrderedExecutor}. When the executor is saturated, the assigned partitions are
+ * paused, so the consumer keeps polling (and stays in the group) without fetching more records, and resumed once it
+ * drains.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = "parallel")
+public class ProductCreatedEventParallelHandler implements KeyOrderedExecutor.SaturationListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCreatedEventParallelHandler.class);
+
+    private final ProductNotificationService notificationService;
+    private final KeyOrderedExecutor executor;
+    private final DeadLetterPublishingRecoverer recoverer;
+    private final ExponentialBackOffWithMaxRetries retryBackOff;
+    private final HotPathLog hotPathLog;
+    private final ProductCreatedEventReader eventReader;
+    private final NotificationCircuitBreaker circuitBreaker;
+    private final NotificationMetrics metrics;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    // only touched by saturated() and drained(), which the executor serializes
+    private final Set<TopicPartition> pausedPartitions = new HashSet<>();
+
+    public ProductCreatedEventParallelHandler(ProductNotificationService notificationService,
+                                              KeyOrderedExecutor executor,
+                                              DeadLetterPublishingRecoverer recoverer,
+                                              ExponentialBackOffWithMaxRetries retryBackOff,
+                                              HotPathLog hotPathLog,
+                                              ProductCreatedEventReader eventReader,
+                                              NotificationCircuitBreaker circuitBreaker,
+                                              NotificationMetrics metrics,
+                                              KafkaListenerEndpointRegistry listenerRegistry) {
+        this.notificationService = notificationService;
+        this.executor = executor;
+        this.recoverer = recoverer;
+        this.retryBackOff = retryBackOff;
+        this.hotPathLog = hotPathLog;
+        this.eventReader = eventReader;
+        this.circuitBreaker = circuitBreaker;
+        this.metrics = metrics;
+        this.listenerRegistry = listenerRegistry;
+        executor.setSaturationListener(this);
+    }
+
+    @KafkaListener(id = KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID,
+            topics = {KafkaConsumerConfiguration.HIGH_PRIORITY_PRODUCT_CREATED_TOPIC,
+                    KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC,
+                    KafkaConsumerConfiguration.LOW_PRIORITY_PRODUCT_CREATED_TOPIC}, groupId = "product-created-events")
+    public void handle(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment)
+            throws InterruptedException {
+        executor.submit(record.key(), () -> process(record, acknowledgment));
+    }
+
+    @Override
+    public void saturated() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(
+                KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID);
+        if (container == null || container.getAssignedPartitions() == null) {
+            return;
+        }
+        for (TopicPartition partition : container.getAssignedPartitions()) {
+            if (pausedPartitions.add(partition)) {
+                container.pausePartition(partition);
+            }
+        }
+        log.warn("Parallel executor saturated, paused partitions {}", pausedPartitions);
+    }
+
+    @Override
+    public void drained() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(
+                KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID);
+        if (container != null) {
+            pausedPartitions.forEach(container::resumePartition);
+        }
+        log.info("Parallel executor drained, resumed partitions {}", pausedPartitions);
+        pausedPartitions.clear();
+    }
+
+    private void process(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) {
+        ProductCreatedEvent event;
+        try {
+            event = eventReader.read(record);
+        } catch (DeserializationException e) {
+            recover(record, acknowledgment, e);
+            return;
+        }
+
+        log.debug("Processing ProductCreatedEvent: productId={}, title='{}'", event.getProductId(), event.getTitle());
+
+        long start = System.nanoTime();
+        BackOffExecution backOff = retryBackOff.start();
+        while (true) {
+            // offsets are acked out of order here, so a rejected record waits on its virtual thread without
+            // using up a retry; the paused container stops handing out new records meanwhile
+            if (!circuitBreaker.tryAcquirePermission()) {
+                if (!sleep(circuitBreaker.retryDelayMillis())) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                notificationService.processProductCreated(event);
+                circuitBreaker.onSuccess();
+                metrics.laneDelivered(record.topic(), record.timestamp());
+                hotPathLog.record(record.topic(), record.partition(), record.offset(), start);
+                if (hotPathLog.shouldLogEvent(log)) {
+                    log.info("Successfully processed ProductCreatedEvent: productId={}", event.getProductId());
+                }
+                acknowledgment.acknowledge();
+                return;
+            } catch (Exception e) {
+                circuitBreaker.onFailure();
+                long delay = backOff.nextBackOff();
+                if (delay == BackOffExecution.STOP) {
+                    hotPathLog.recordError(record.topic(), record.partition());
+                    log.error("Error processing ProductCreatedEvent: productId={}, error={}",
+                            event.getProductId(), e.getMessage(), e);
+                    recover(record, acknowledgment, e);
+                    return;
+                }
+                if (!sleep(delay)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void recover(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment,
+                         Exception cause) {
+        try {
+            recoverer.accept(record, cause);
+            acknowledgment.acknowledge();
+        } catch (Exception e) {
+            log.error("Failed to publish record to DLT, offset left uncommitted: topic={}, partition={}, offset={}",
+                    record.topic(), record.partition(), record.offset(), e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.malbano.emailnotification.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Logging for paths that run once per product event. Instead of an INFO line per event:
+ * <ul>
+ *     <li>per-event lines are written for 1 in {@code sample-rate} events, or for every event while the logger is at
+ *     DEBUG (switchable at runtime through {@code /actuator/loggers});</li>
+ *     <li>every event is counted per topic and partition, and a summary line with count, errors, offset range and
+ *     latency percentiles is written every {@code summary-interval} for the partitions that had traffic.</li>
+ * </ul>
+ * Errors are not sampled; callers keep logging them in full. Both settings can be changed at runtime through
+ * {@code /actuator/hotpathlog}.
+ */
+@Component
+public class HotPathLog {
+
+    private static final int MAX_PARTITIONS = 256;
+
+    private final Logger log = LoggerFactory.getLogger(HotPathLog.class);
+    private final Map<String, AtomicReferenceArray<PartitionLogStats>> topics = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "hot-path-log-summary");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int sampleRate;
+    private volatile Duration summaryInterval;
+    private ScheduledFuture<?> summaryTask;
+
+    public HotPathLog(@Value("${app.logging.hot-path.sample-rate:100}") int sampleRate,
+                      @Value("${app.logging.hot-path.summary-interval:30s}") Duration summaryInterval) {
+        this.sampleRate = sampleRate;
+        this.summaryInterval = summaryInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduleSummary();
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        logSummary();
+    }
+
+    /**
+     * @return whether the per-event line of this event should be written to the given logger
+     */
+    public boolean shouldLogEvent(Logger logger) {
+        if (logger.isDebugEnabled()) {
+            return true;
+        }
+        int rate = sampleRate;
+        return rate > 0 && (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0);
+    }
+
+    public void record(String topic, int partition, long offset, long startNanos) {
+        stats(topic, partition).record(offset, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    public void recordError(String topic, int partition) {
+        stats(topic, partition).recordError();
+    }
+
+    public int sampleRate() {
+        return sampleRate;
+    }
+
+    public Duration summaryInterval() {
+        return summaryInterval;
+    }
+
+    /**
+     * @param sampleRate 1 logs every event, 0 disables sampled lines
+     * @param summaryInterval zero disables summaries
+     */
+    public synchronized void configure(int sampleRate, Duration summaryInterval) {
+        if (sampleRate < 0 || summaryInterval.isNegative()) {
+            throw new IllegalArgumentException("sampleRate and summaryInterval must not be negative");
+        }
+        this.sampleRate = sampleRate;
+        if (!summaryInterval.equals(this.summaryInterval)) {
+            this.summaryInterval = summaryInterval;
+            scheduleSummary();
+        }
+        log.info("Hot path logging: sampleRate={}, summaryInterval={}", sampleRate, summaryInterval);
+    }
+
+    private synchronized void scheduleSummary() {
+        if (summaryTask != null) {
+            summaryTask.cancel(false);
+            summaryTask = null;
+        }
+        long intervalMs = summaryInterval.toMillis();
+        if (intervalMs > 0 && !scheduler.isShutdown()) {
+            summaryTask = scheduler.scheduleAtFixedRate(this::logSummary, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private PartitionLogStats stats(String topic, int partition) {
+        AtomicReferenceArray<PartitionLogStats> partitions = topics.get(topic);
+        if (partitions == null) {
+            partitions = topics.computeIfAbsent(topic, t -> new AtomicReferenceArray<>(MAX_PARTITIONS + 1));
+        }
+        // slot 0 collects events whose partition is out of range
+        int slot = partition >= 0 && partition < MAX_PARTITIONS ? partition + 1 : 0;
+        PartitionLogStats stats = partitions.get(slot);
+        if (stats == null) {
+            partitions.compareAndSet(slot, null, new PartitionLogStats());
+            stats = partitions.get(slot);
+        }
+        return stats;
+    }
+
+    private void logSummary() {
+        try {
+            for (Map.Entry<String, AtomicReferenceArray<PartitionLogStats>> topic : topics.entrySet()) {
+                AtomicReferenceArray<PartitionLogStats> partitions = topic.getValue();
+                for (int slot = 0; slot < partitions.length(); slot++) {
+                    PartitionLogStats stats = partitions.get(slot);
+                    if (stats == null) {
+                        continue;
+                    }
+                    PartitionLogStats.Summary summary = stats.drain();
+                    if (summary.count() == 0 && summary.errors() == 0) {
+                        continue;
+                    }
+                    String offsets = summary.maxOffset() < 0 ? "-" : summary.minOffset() + ".." + summary.maxOffset();
+                    log.info("Summary topic={} partition={} count={} errors={} offsets={} "
+                                    + "latency p50={}ms p99={}ms max={}ms",
+                            topic.getKey(), slot == 0 ? "unknown" : String.valueOf(slot - 1),
+                            summary.count(), summary.errors(), offsets,
+                            millis(summary.p50Micros()), millis(summary.p99Micros()), millis(summary.maxMicros()));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to write hot path log summary: {}", e.getMessage());
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.2f", micros / 1000.0);
+    }
+}
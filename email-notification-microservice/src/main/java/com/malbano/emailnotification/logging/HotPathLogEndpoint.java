@@ -0,0 +1,39 @@
+package com.malbano.emailnotification.logging;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/hotpathlog} shows the {@link HotPathLog} settings; {@code POST} with
+ * {@code {"sampleRate": 1000, "summaryInterval": "1m"}} changes them without a restart (omitted fields are kept).
+ */
+@Component
+@Endpoint(id = "hotpathlog")
+public class HotPathLogEndpoint {
+
+    private final HotPathLog hotPathLog;
+
+    public HotPathLogEndpoint(HotPathLog hotPathLog) {
+        this.hotPathLog = hotPathLog;
+    }
+
+    @ReadOperation
+    public Map<String, Object> settings() {
+        return Map.of(
+                "sampleRate", hotPathLog.sampleRate(),
+                "summaryInterval", hotPathLog.summaryInterval().toString());
+    }
+
+    @WriteOperation
+    public Map<String, Object> configure(@Nullable Integer sampleRate, @Nullable Duration summaryInterval) {
+        hotPathLog.configure(sampleRate != null ? sampleRate : hotPathLog.sampleRate(),
+                summaryInterval != null ? summaryInterval : hotPathLog.summaryInterval());
+        return settings();
+    }
+}
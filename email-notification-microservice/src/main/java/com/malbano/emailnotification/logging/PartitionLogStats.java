@@ -0,0 +1,105 @@
+package com.malbano.emailnotification.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one topic partition for the current summary interval. Recording only touches preallocated atomics, so
+ * it never allocates; latencies go to log-linear buckets (8 per power of two, about 12% wide) in microseconds.
+ */
+class PartitionLogStats {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong minOffset = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxOffset = new AtomicLong(-1);
+    private final AtomicLong maxLatencyMicros = new AtomicLong();
+    private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKETS);
+
+    record Summary(long count, long errors, long minOffset, long maxOffset,
+                   long p50Micros, long p99Micros, long maxMicros) {
+    }
+
+    void record(long offset, long latencyMicros) {
+        count.increment();
+        if (offset >= 0) {
+            long current;
+            while (offset < (current = minOffset.get()) && !minOffset.compareAndSet(current, offset)) {
+                // retry
+            }
+            while (offset > (current = maxOffset.get()) && !maxOffset.compareAndSet(current, offset)) {
+                // retry
+            }
+        }
+        long micros = Math.max(0, latencyMicros);
+        latencyBuckets.incrementAndGet(bucket(micros));
+        long current;
+        while (micros > (current = maxLatencyMicros.get()) && !maxLatencyMicros.compareAndSet(current, micros)) {
+            // retry
+        }
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    /**
+     * Returns the counters since the previous call and resets them. Records arriving concurrently are counted in
+     * either this interval or the next one.
+     */
+    Summary drain() {
+        long drainedCount = count.sumThenReset();
+        long drainedErrors = errors.sumThenReset();
+        long[] buckets = new long[BUCKETS];
+        long latencies = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = latencyBuckets.getAndSet(i, 0);
+            latencies += buckets[i];
+        }
+        // bucket upper bounds may exceed the largest latency actually recorded
+        long max = maxLatencyMicros.getAndSet(0);
+        return new Summary(drainedCount, drainedErrors,
+                minOffset.getAndSet(Long.MAX_VALUE), maxOffset.getAndSet(-1),
+                Math.min(max, percentile(buckets, latencies, 0.50)), Math.min(max, percentile(buckets, latencies, 0.99)),
+                max);
+    }
+
+    private static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static long percentile(long[] buckets, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(buckets.length - 1);
+    }
+}
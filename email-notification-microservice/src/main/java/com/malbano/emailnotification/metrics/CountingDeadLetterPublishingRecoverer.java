@@ -0,0 +1,33 @@
+package com.malbano.emailnotification.metrics;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.SeekUtils;
+
+import java.util.function.BiFunction;
+
+public class CountingDeadLetterPublishingRecoverer extends DeadLetterPublishingRecoverer {
+
+    private final NotificationMetrics metrics;
+
+    public CountingDeadLetterPublishingRecoverer(KafkaOperations<?, ?> template,
+                                                 BiFunction<ConsumerRecord<?, ?>, Exception, TopicPartition> destinationResolver,
+                                                 NotificationMetrics metrics) {
+        super(template, destinationResolver);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void accept(ConsumerRecord<?, ?> record, Consumer<?, ?> consumer, Exception exception) {
+        // records rejected by the circuit breaker are not failures; rethrowing makes the error handler seek back
+        if (SeekUtils.isBackoffException(exception)) {
+            throw (NestedRuntimeException) exception;
+        }
+        super.accept(record, consumer, exception);
+        metrics.dltRouted();
+    }
+}
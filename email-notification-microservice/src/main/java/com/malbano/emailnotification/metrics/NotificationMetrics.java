@@ -0,0 +1,101 @@
+package com.malbano.emailnotification.metrics;
+
+import com.malbano.emailnotification.priority.ProductPriorityLane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class NotificationMetrics {
+
+    private final Timer processingSuccess;
+    private final Timer processingFailure;
+    private final Counter retryRouted;
+    private final Counter retryDelayed;
+    private final Counter dltRouted;
+    private final Counter duplicateSkipped;
+    private final MeterRegistry registry;
+    private final Map<String, Counter> filtered = new ConcurrentHashMap<>();
+    private final Map<ProductPriorityLane, Timer> laneLatency = new EnumMap<>(ProductPriorityLane.class);
+
+    public NotificationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.processingSuccess = processingTimer(registry, "success");
+        this.processingFailure = processingTimer(registry, "failure");
+        this.retryRouted = Counter.builder("product.notification.retry.routed")
+                .description("ProductCreatedEvents delivered from a retry topic")
+                .register(registry);
+        this.retryDelayed = Counter.builder("product.notification.retry.delayed")
+                .description("Failed ProductCreatedEvents published to the delay topic for another attempt")
+                .register(registry);
+        this.dltRouted = Counter.builder("product.notification.dlt.routed")
+                .description("ProductCreatedEvents routed to the dead letter topic")
+                .register(registry);
+        this.duplicateSkipped = Counter.builder("product.notification.duplicates.skipped")
+                .description("ProductCreatedEvents skipped because their productId was already processed")
+                .register(registry);
+        for (ProductPriorityLane lane : ProductPriorityLane.values()) {
+            laneLatency.put(lane, Timer.builder("product.notification.lane.latency")
+                    .description("Time from the product event being produced to its notification being sent, "
+                            + "per priority lane; the count is the lane throughput")
+                    .tag("lane", lane.tag())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    private static Timer processingTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("product.notification.processing")
+                .description("ProductNotificationService processing time")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void recordProcessing(long startNanos, boolean success) {
+        (success ? processingSuccess : processingFailure).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a notification sent for a record of {@code topic} produced at {@code recordTimestamp} (epoch millis).
+     */
+    public void laneDelivered(String topic, long recordTimestamp) {
+        ProductPriorityLane lane = ProductPriorityLane.ofTopic(topic);
+        if (lane != null) {
+            laneLatency.get(lane).record(Math.max(0, System.currentTimeMillis() - recordTimestamp),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void retryRouted() {
+        retryRouted.increment();
+    }
+
+    public void retryDelayed() {
+        retryDelayed.increment();
+    }
+
+    public void dltRouted() {
+        dltRouted.increment();
+    }
+
+    public void duplicateSkipped() {
+        duplicateSkipped.increment();
+    }
+
+    public void filtered(String reason) {
+        filtered.computeIfAbsent(reason, r -> Counter.builder("product.notification.filtered")
+                        .description("Records dropped from their headers before the payload was parsed")
+                        .tag("reason", r)
+                        .register(registry))
+                .increment();
+    }
+}
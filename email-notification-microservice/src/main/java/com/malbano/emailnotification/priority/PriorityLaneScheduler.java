@@ -0,0 +1,260 @@
+package com.malbano.emailnotification.priority;
+
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Weighted scheduler over the priority lanes of the product-created listener container, enabled with
+ * {@code app.kafka.consumer.priority-lanes.scheduler.enabled=true}. The container consumes the three lane topics;
+ * every {@code lag-refresh-interval} this reads the lag of each lane on the partitions assigned to this instance (end
+ * offsets minus the group's committed offsets, so records already fetched but not handled yet still count; two admin
+ * requests), and every {@code interval} the records each lane consumed (the consumer's fetch metrics, read locally),
+ * and pauses or resumes the partitions of the lower lanes:
+ * <ul>
+ *     <li>a lane is paused while a higher lane has lag and the lane already got its share of the records, measured
+ *     as the records consumed over the last second divided by its weight, compared with the higher lane's;</li>
+ *     <li>otherwise it runs, so a lane is never held back while the lanes above it are idle, and a backlogged lower
+ *     lane still gets {@code weight / sum of weights} of the records instead of starving.</li>
+ * </ul>
+ * The highest lane is never paused. A paused partition's records already in the consumer's fetch buffer are held
+ * back too, but pausing takes effect at the next poll, so a record of a higher lane can still wait behind one poll
+ * ({@code max.poll.records}) of lower-lane records. Disabled in digest mode, where the aggregator pauses partitions
+ * itself and notifications wait for their window anyway.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.priority-lanes.scheduler.enabled", havingValue = "true")
+public class PriorityLaneScheduler {
+
+    private static final String FETCH_METRICS_GROUP = "consumer-fetch-manager-metrics";
+    private static final double SHARE_HORIZON_MS = 1000;
+    private static final long ADMIN_TIMEOUT_SECONDS = 10;
+
+    private final Logger log = LoggerFactory.getLogger(PriorityLaneScheduler.class);
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final Admin admin;
+    private final String groupId;
+    private final ProductPriorityLane[] lanes = ProductPriorityLane.values();
+    private final int[] weights = new int[lanes.length];
+    private final Duration interval;
+    private final long lagRefreshNanos;
+    private final boolean digestMode;
+    private final double shareDecay;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "priority-lane-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLongArray backlog = new AtomicLongArray(lanes.length);
+    private final AtomicLongArray paused = new AtomicLongArray(lanes.length);
+    private final Counter[] pauses = new Counter[lanes.length];
+
+    // records consumed per lane, decayed so only the last second or so counts
+    private final double[] served = new double[lanes.length];
+    private final long[] lastConsumed = new long[lanes.length];
+    private long[] lag = new long[lanes.length];
+    private long lagReadNanos;
+
+    public PriorityLaneScheduler(KafkaListenerEndpointRegistry listenerRegistry,
+                                 MeterRegistry meterRegistry,
+                                 ConsumerFactory<String, Object> consumerFactory,
+                                 @Value("${app.kafka.consumer.priority-lanes.weights.high:8}") int highWeight,
+                                 @Value("${app.kafka.consumer.priority-lanes.weights.normal:2}") int normalWeight,
+                                 @Value("${app.kafka.consumer.priority-lanes.weights.low:1}") int lowWeight,
+                                 @Value("${app.kafka.consumer.priority-lanes.scheduler.interval:100ms}") Duration interval,
+                                 @Value("${app.kafka.consumer.priority-lanes.scheduler.lag-refresh-interval:1s}") Duration lagRefreshInterval,
+                                 @Value("${app.kafka.consumer.listener-mode:record}") String listenerMode) {
+        if (highWeight < 1 || normalWeight < 1 || lowWeight < 1) {
+            throw new IllegalArgumentException("Priority lane weights must be at least 1");
+        }
+        this.listenerRegistry = listenerRegistry;
+        this.weights[ProductPriorityLane.HIGH.ordinal()] = highWeight;
+        this.weights[ProductPriorityLane.NORMAL.ordinal()] = normalWeight;
+        this.weights[ProductPriorityLane.LOW.ordinal()] = lowWeight;
+        this.interval = interval;
+        this.lagRefreshNanos = lagRefreshInterval.toNanos();
+        this.digestMode = KafkaConsumerConfiguration.DIGEST_LISTENER_MODE.equals(listenerMode);
+        this.shareDecay = Math.exp(-interval.toMillis() / SHARE_HORIZON_MS);
+        this.groupId = (String) consumerFactory.getConfigurationProperties().get(ConsumerConfig.GROUP_ID_CONFIG);
+
+        Map<String, Object> adminConfig = new HashMap<>();
+        adminConfig.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                consumerFactory.getConfigurationProperties().get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        this.admin = Admin.create(adminConfig);
+
+        for (ProductPriorityLane lane : lanes) {
+            int index = lane.ordinal();
+            Gauge.builder("product.notification.lane.backlog", backlog, lag -> lag.get(index))
+                    .description("Lag of the priority lane on the partitions of this instance")
+                    .tag("lane", lane.tag())
+                    .register(meterRegistry);
+            Gauge.builder("product.notification.lane.paused", paused, state -> state.get(index))
+                    .description("1 while the lane scheduler holds the priority lane paused")
+                    .tag("lane", lane.tag())
+                    .register(meterRegistry);
+            pauses[index] = Counter.builder("product.notification.lane.pauses")
+                    .description("Times the lane scheduler paused the priority lane for a higher one")
+                    .tag("lane", lane.tag())
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (digestMode) {
+            log.info("Priority lane scheduler disabled in digest mode, lanes are consumed without weights");
+            return;
+        }
+        lagReadNanos = System.nanoTime() - lagRefreshNanos;
+        scheduler.scheduleWithFixedDelay(this::evaluate, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        admin.close(Duration.ofSeconds(ADMIN_TIMEOUT_SECONDS));
+    }
+
+    private void evaluate() {
+        try {
+            MessageListenerContainer container =
+                    listenerRegistry.getListenerContainer(KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID);
+            if (container == null || !container.isRunning()) {
+                return;
+            }
+
+            Collection<TopicPartition> assigned = container.getAssignedPartitions();
+            if (assigned == null || assigned.isEmpty()) {
+                return;
+            }
+            // the lag between two refreshes is the last one read; the shares below still move every interval
+            if (System.nanoTime() - lagReadNanos >= lagRefreshNanos) {
+                lag = lag(assigned);
+                lagReadNanos = System.nanoTime();
+            }
+            long[] consumed = consumed(container.metrics());
+            for (int i = 0; i < lanes.length; i++) {
+                // the totals restart when the autoscaler replaces the consumers
+                long delta = consumed[i] >= lastConsumed[i] ? consumed[i] - lastConsumed[i] : consumed[i];
+                lastConsumed[i] = consumed[i];
+                served[i] = served[i] * shareDecay + delta;
+                backlog.set(i, lag[i]);
+            }
+
+            for (int i = 1; i < lanes.length; i++) {
+                boolean hold = holdBack(i, lag);
+                if (hold && paused.get(i) == 0) {
+                    pauses[i].increment();
+                    log.debug("Pausing {} lane behind a higher lane (lag={})", lanes[i].tag(), lag[i]);
+                }
+                paused.set(i, hold ? 1 : 0);
+                apply(container, assigned, lanes[i], hold);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Priority lane scheduler evaluation failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean holdBack(int lane, long[] lag) {
+        for (int higher = 0; higher < lane; higher++) {
+            if (lag[higher] > 0 && served[lane] * weights[higher] >= served[higher] * weights[lane]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void apply(MessageListenerContainer container, Collection<TopicPartition> assigned,
+                              ProductPriorityLane lane, boolean hold) {
+        for (TopicPartition partition : assigned) {
+            if (!partition.topic().equals(lane.topic())) {
+                continue;
+            }
+            // both are no-ops when already applied; the concurrent container only tracks the requests in its
+            // children, which the autoscaler may have replaced since the last evaluation
+            if (hold) {
+                container.pausePartition(partition);
+            } else {
+                container.resumePartition(partition);
+            }
+        }
+    }
+
+    private long[] lag(Collection<TopicPartition> assigned) throws Exception {
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        for (TopicPartition partition : assigned) {
+            if (ProductPriorityLane.ofMainTopic(partition.topic()) != null) {
+                request.put(partition, OffsetSpec.latest());
+            }
+        }
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets = admin.listOffsets(request).all()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        long[] lag = new long[lanes.length];
+        for (Map.Entry<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> end : endOffsets.entrySet()) {
+            OffsetAndMetadata position = committed.get(end.getKey());
+            if (position != null) {
+                lag[ProductPriorityLane.ofMainTopic(end.getKey().topic()).ordinal()] +=
+                        Math.max(0, end.getValue().offset() - position.offset());
+            }
+        }
+        return lag;
+    }
+
+    /**
+     * Sums {@code records-consumed-total} of each lane topic over the consumers of the container.
+     */
+    private long[] consumed(Map<String, Map<MetricName, ? extends Metric>> metrics) {
+        long[] consumed = new long[lanes.length];
+        for (Map<MetricName, ? extends Metric> consumerMetrics : metrics.values()) {
+            for (Map.Entry<MetricName, ? extends Metric> metric : consumerMetrics.entrySet()) {
+                MetricName name = metric.getKey();
+                if (!FETCH_METRICS_GROUP.equals(name.group()) || !"records-consumed-total".equals(name.name())
+                        || name.tags().containsKey("partition")) {
+                    continue;
+                }
+                ProductPriorityLane lane = ProductPriorityLane.ofMainTopic(name.tags().get("topic"));
+                if (lane != null && metric.getValue().metricValue() instanceof Double value && !value.isNaN()) {
+                    consumed[lane.ordinal()] += value.longValue();
+                }
+            }
+        }
+        return consumed;
+    }
+}
@@ -0,0 +1,53 @@
+package com.malbano.emailnotification.priority;
+
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+
+/**
+ * Priority lanes published by products-microservice, highest first. Each lane is its own topic; {@code NORMAL} is the
+ * original product topic, used by producers that do not set a priority.
+ */
+public enum ProductPriorityLane {
+    HIGH(KafkaConsumerConfiguration.HIGH_PRIORITY_PRODUCT_CREATED_TOPIC),
+    NORMAL(KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC),
+    LOW(KafkaConsumerConfiguration.LOW_PRIORITY_PRODUCT_CREATED_TOPIC);
+
+    private static final String RETRY_TOPIC_SUFFIX = "-retry";
+
+    private final String topic;
+
+    ProductPriorityLane(String topic) {
+        this.topic = topic;
+    }
+
+    public String topic() {
+        return topic;
+    }
+
+    public String tag() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * @return the lane of a main topic, or null for any other topic
+     */
+    public static ProductPriorityLane ofMainTopic(String topic) {
+        for (ProductPriorityLane lane : values()) {
+            if (lane.topic.equals(topic)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the lane of a main or retry topic, or null for any other topic (the DLTs)
+     */
+    public static ProductPriorityLane ofTopic(String topic) {
+        for (ProductPriorityLane lane : values()) {
+            if (lane.topic.equals(topic) || topic.startsWith(lane.topic + RETRY_TOPIC_SUFFIX)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,142 @@
+package com.malbano.emailnotification.processing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on virtual threads, at most {@code maxInFlight} at a time, while tasks sharing a key run one after
+ * another in submission order.
+ * <p>
+ * {@link #submit} is called from the consumer thread and never waits for a slot longer than {@code acquire-timeout},
+ * so a slow mail server cannot hold the consumer past {@code max.poll.interval.ms}. When no slot frees up in time the
+ * task still runs, over the limit, and the {@link SaturationListener} is told to stop the intake; records already
+ * polled are then accepted without waiting. It is told to resume once the tasks in flight are back to half the limit.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = "parallel")
+public class KeyOrderedExecutor {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final long acquireTimeoutMs;
+    private final int resumeThreshold;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile SaturationListener saturationListener = new SaturationListener() {
+        @Override
+        public void saturated() {
+        }
+
+        @Override
+        public void drained() {
+        }
+    };
+    // changed under the executor's monitor, so saturated() and drained() never overlap or run out of order
+    private volatile boolean saturated;
+
+    public KeyOrderedExecutor(@Value("${app.kafka.consumer.parallel.max-in-flight:64}") int maxInFlight,
+                              @Value("${app.kafka.consumer.parallel.acquire-timeout:1s}") Duration acquireTimeout) {
+        if (acquireTimeout.isNegative()) {
+            throw new IllegalArgumentException("app.kafka.consumer.parallel.acquire-timeout must not be negative");
+        }
+        this.permits = new Semaphore(maxInFlight);
+        this.acquireTimeoutMs = acquireTimeout.toMillis();
+        this.resumeThreshold = maxInFlight / 2;
+    }
+
+    public void setSaturationListener(SaturationListener saturationListener) {
+        this.saturationListener = saturationListener;
+    }
+
+    /**
+     * @return false if the task was accepted over {@code maxInFlight}
+     */
+    public boolean submit(String key, Runnable task) throws InterruptedException {
+        boolean permitted = permits.tryAcquire()
+                || !saturated && permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        // counted before the task can finish, so its completion always sees the saturation set below
+        inFlight.incrementAndGet();
+        if (!permitted) {
+            synchronized (this) {
+                if (!saturated) {
+                    saturated = true;
+                    saturationListener.saturated();
+                }
+            }
+        }
+
+        if (key == null) {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    release(permitted);
+                }
+            });
+            return permitted;
+        }
+
+        CompletableFuture<Void> tail = new CompletableFuture<>();
+        CompletableFuture<Void> previous = tails.put(key, tail);
+        Runnable ordered = () -> {
+            try {
+                task.run();
+            } finally {
+                tails.remove(key, tail);
+                release(permitted);
+                tail.complete(null);
+            }
+        };
+
+        if (previous == null) {
+            executor.execute(ordered);
+        } else {
+            previous.whenCompleteAsync((result, exception) -> ordered.run(), executor);
+        }
+        return permitted;
+    }
+
+    private void release(boolean permitted) {
+        if (permitted) {
+            permits.release();
+        }
+        if (inFlight.decrementAndGet() <= resumeThreshold && saturated) {
+            synchronized (this) {
+                if (saturated) {
+                    saturated = false;
+                    saturationListener.drained();
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public interface SaturationListener {
+
+        /**
+         * No slot freed up within {@code acquire-timeout}; stop handing out tasks.
+         */
+        void saturated();
+
+        /**
+         * The tasks in flight are back to half of {@code maxInFlight}.
+         */
+        void drained();
+    }
+}
@@ -0,0 +1,104 @@
+package com.malbano.emailnotification.replay;
+
+import com.malbano.emailnotification.priority.ProductPriorityLane;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Replay request and per-partition progress, saved as a properties file so an interrupted replay (stopped, or the
+ * service restarted) continues from the first record that was not yet replayed. Replaced atomically on every save.
+ *
+ * @param nextOffsets partition to the next offset to replay
+ * @param endOffsets  partition to the offset the replay stops at (exclusive)
+ */
+record DltReplayCheckpoint(DltReplayRequest request, Map<Integer, Long> nextOffsets, Map<Integer, Long> endOffsets,
+                           boolean completed) {
+
+    void save(Path path) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("lane", request.lane().name());
+        properties.setProperty("mode", request.mode().name());
+        properties.setProperty("rate", String.valueOf(request.ratePerSecond()));
+        setIfPresent(properties, "from", request.from());
+        setIfPresent(properties, "to", request.to());
+        setIfPresent(properties, "fromOffset", request.fromOffset());
+        setIfPresent(properties, "toOffset", request.toOffset());
+        setIfPresent(properties, "key", request.key());
+        setIfPresent(properties, "exception", request.exception());
+        nextOffsets.forEach((partition, offset) ->
+                properties.setProperty("partition." + partition + ".next", String.valueOf(offset)));
+        endOffsets.forEach((partition, offset) ->
+                properties.setProperty("partition." + partition + ".end", String.valueOf(offset)));
+        properties.setProperty("completed", String.valueOf(completed));
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, "DLT replay checkpoint");
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static DltReplayCheckpoint load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        // checkpoints written before lanes could be chosen are of the normal lane
+        DltReplayRequest request = new DltReplayRequest(
+                ProductPriorityLane.valueOf(properties.getProperty("lane", ProductPriorityLane.NORMAL.name())),
+                DltReplayRequest.Mode.valueOf(properties.getProperty("mode")),
+                Integer.parseInt(properties.getProperty("rate")),
+                instant(properties.getProperty("from")),
+                instant(properties.getProperty("to")),
+                number(properties.getProperty("fromOffset")),
+                number(properties.getProperty("toOffset")),
+                properties.getProperty("key"),
+                properties.getProperty("exception"));
+
+        Map<Integer, Long> nextOffsets = new TreeMap<>();
+        Map<Integer, Long> endOffsets = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("partition.")) {
+                String[] parts = name.split("\\.");
+                int partition = Integer.parseInt(parts[1]);
+                long offset = Long.parseLong(properties.getProperty(name));
+                ("next".equals(parts[2]) ? nextOffsets : endOffsets).put(partition, offset);
+            }
+        }
+        return new DltReplayCheckpoint(request, nextOffsets, endOffsets,
+                Boolean.parseBoolean(properties.getProperty("completed")));
+    }
+
+    private static void setIfPresent(Properties properties, String name, Object value) {
+        if (value != null) {
+            properties.setProperty(name, value.toString());
+        }
+    }
+
+    private static Instant instant(String value) {
+        return value != null ? Instant.parse(value) : null;
+    }
+
+    private static Long number(String value) {
+        return value != null ? Long.valueOf(value) : null;
+    }
+}
@@ -0,0 +1,72 @@
+package com.malbano.emailnotification.replay;
+
+import com.malbano.emailnotification.priority.ProductPriorityLane;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/dltreplay} shows the progress of the last {@link DltReplayer} run; {@code POST} with
+ * {@code {"mode": "reinject", "rate": 200, "from": "2025-09-01T10:00:00Z", "exception": "MailSendException"}} starts
+ * one (every field but {@code mode} is optional, {@code lane} defaults to {@code normal}) and {@code {"resume": true}}
+ * continues the interrupted one from its checkpoint; {@code DELETE} stops it.
+ * <p>
+ * It writes to the topics, so it is not in the default web exposure: add {@code dltreplay} to
+ * {@code management.endpoints.web.exposure.include} only where the management port is not public, or enable
+ * {@code spring.jmx.enabled} and use JMX.
+ */
+@Component
+@Endpoint(id = "dltreplay")
+public class DltReplayEndpoint {
+
+    private final DltReplayer replayer;
+    private final int defaultRate;
+
+    public DltReplayEndpoint(DltReplayer replayer,
+                             @Value("${app.kafka.consumer.dlt-replay.rate:100}") int defaultRate) {
+        this.replayer = replayer;
+        this.defaultRate = defaultRate;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return replayer.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> start(@Nullable String lane, @Nullable String mode, @Nullable Integer rate, @Nullable Instant from,
+                                     @Nullable Instant to, @Nullable Long fromOffset, @Nullable Long toOffset,
+                                     @Nullable String key, @Nullable String exception, @Nullable Boolean resume) {
+        try {
+            if (Boolean.TRUE.equals(resume)) {
+                return replayer.resume();
+            }
+            if (mode == null) {
+                throw new IllegalArgumentException("mode is required (reinject or process)");
+            }
+            ProductPriorityLane replayLane = lane != null
+                    ? ProductPriorityLane.valueOf(lane.toUpperCase(Locale.ROOT)) : ProductPriorityLane.NORMAL;
+            return replayer.start(new DltReplayRequest(replayLane,
+                    DltReplayRequest.Mode.valueOf(mode.toUpperCase(Locale.ROOT)),
+                    rate != null ? rate : defaultRate, from, to, fromOffset, toOffset, key, exception));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // answered with 400 instead of 500
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+    }
+
+    @DeleteOperation
+    public Map<String, Object> stop() {
+        return replayer.stop();
+    }
+}
@@ -0,0 +1,67 @@
+package com.malbano.emailnotification.replay;
+
+import com.malbano.emailnotification.priority.ProductPriorityLane;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * What to replay from the DLT of a priority lane. Every bound is optional and applies to each partition: records from {@code from}
+ * (timestamp) and {@code fromOffset}, up to {@code to} and {@code toOffset} (both exclusive), and never past the end
+ * offsets seen when the replay starts. {@code key} keeps one productId, {@code exception} keeps records whose DLT
+ * exception class or message contains the text.
+ *
+ * @param lane          whose {@code .DLT} is replayed; {@link Mode#REINJECT} publishes back to its topic
+ * @param mode          {@link Mode#REINJECT} publishes the records back to the main topic,
+ *                      {@link Mode#PROCESS} sends the notifications directly
+ * @param ratePerSecond records per second over all partitions
+ */
+public record DltReplayRequest(ProductPriorityLane lane, Mode mode, int ratePerSecond, Instant from, Instant to, Long fromOffset, Long toOffset,
+                               String key, String exception) {
+
+    public enum Mode {
+        REINJECT, PROCESS
+    }
+
+    public DltReplayRequest {
+        if (lane == null) {
+            throw new IllegalArgumentException("lane is required");
+        }
+        if (mode == null) {
+            throw new IllegalArgumentException("mode is required");
+        }
+        if (ratePerSecond < 1) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (fromOffset != null && toOffset != null && fromOffset >= toOffset) {
+            throw new IllegalArgumentException("fromOffset must be lower than toOffset");
+        }
+    }
+
+    String dltTopic() {
+        return lane.topic() + ".DLT";
+    }
+
+    boolean matches(ConsumerRecord<String, byte[]> record) {
+        if (key != null && !key.equals(record.key())) {
+            return false;
+        }
+        if (exception != null) {
+            return headerContains(record, KafkaHeaders.DLT_EXCEPTION_FQCN, exception)
+                    || headerContains(record, KafkaHeaders.DLT_EXCEPTION_CAUSE_FQCN, exception)
+                    || headerContains(record, KafkaHeaders.DLT_EXCEPTION_MESSAGE, exception);
+        }
+        return true;
+    }
+
+    private static boolean headerContains(ConsumerRecord<String, byte[]> record, String name, String text) {
+        Header header = record.headers().lastHeader(name);
+        return header != null && new String(header.value(), StandardCharsets.UTF_8).contains(text);
+    }
+}
@@ -0,0 +1,500 @@
+package com.malbano.emailnotification.replay;
+
+import com.malbano.emailnotification.circuitbreaker.NotificationCircuitBreaker;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.retry.DelayedRetryHeaders;
+import com.malbano.emailnotification.serialization.ProductCreatedEventReader;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.retrytopic.RetryTopicHeaders;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replays the {@code .DLT} of a priority lane after an incident. Each DLT partition is read by
+ * its own consumer (no consumer group, so the {@code @DltHandler} is not affected) on a virtual thread; records that
+ * match the {@link DltReplayRequest} take a token from a shared {@link TokenBucket} and are either published back to
+ * the main topic without their DLT and retry headers or handed to the {@link ProductNotificationService}, at most
+ * {@code max-in-flight} at a time.
+ * <p>
+ * A partition only advances its checkpointed offset once every record of a poll has been acknowledged or processed,
+ * and the checkpoint is saved every {@code checkpoint-interval}, so a stopped or interrupted replay can be resumed
+ * without skipping records (records after the last checkpoint may be replayed twice). Records that fail are counted,
+ * logged with their offset and left in the DLT.
+ */
+@Component
+public class DltReplayer {
+
+    public enum State {
+        IDLE, RUNNING, COMPLETED, STOPPED, FAILED
+    }
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final Logger log = LoggerFactory.getLogger(DltReplayer.class);
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ProductNotificationService notificationService;
+    private final NotificationCircuitBreaker circuitBreaker;
+    private final ProductCreatedEventReader eventReader;
+    private final Object bootstrapServers;
+    private final Path checkpointPath;
+    private final int maxInFlight;
+    private final Duration checkpointInterval;
+    private final Duration progressInterval;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "dlt-replay-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter replayedCounter;
+    private final Counter filteredCounter;
+    private final Counter failedCounter;
+
+    private volatile Replay current;
+
+    public DltReplayer(KafkaTemplate<String, Object> kafkaTemplate,
+                       ProductNotificationService notificationService,
+                       NotificationCircuitBreaker circuitBreaker,
+                       ProductCreatedEventReader eventReader,
+                       ConsumerFactory<String, Object> consumerFactory,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.kafka.consumer.dlt-replay.checkpoint-path:./data/dlt-replay.checkpoint}") Path checkpointPath,
+                       @Value("${app.kafka.consumer.dlt-replay.max-in-flight:64}") int maxInFlight,
+                       @Value("${app.kafka.consumer.dlt-replay.checkpoint-interval:1s}") Duration checkpointInterval,
+                       @Value("${app.kafka.consumer.dlt-replay.progress-interval:10s}") Duration progressInterval) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.notificationService = notificationService;
+        this.circuitBreaker = circuitBreaker;
+        this.eventReader = eventReader;
+        this.bootstrapServers = consumerFactory.getConfigurationProperties().get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG);
+        this.checkpointPath = checkpointPath;
+        this.maxInFlight = maxInFlight;
+        this.checkpointInterval = checkpointInterval;
+        this.progressInterval = progressInterval;
+        this.replayedCounter = replayCounter(meterRegistry, "replayed");
+        this.filteredCounter = replayCounter(meterRegistry, "filtered");
+        this.failedCounter = replayCounter(meterRegistry, "failed");
+    }
+
+    private static Counter replayCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("product.notification.dlt.replay")
+                .description("DLT records handled by the replay tool")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void reportInterruptedReplay() {
+        if (Files.exists(checkpointPath)) {
+            try {
+                if (!DltReplayCheckpoint.load(checkpointPath).completed()) {
+                    log.warn("An interrupted DLT replay can be resumed from {}", checkpointPath);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Unreadable DLT replay checkpoint {}: {}", checkpointPath, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Replay replay = current;
+        if (replay != null && replay.state == State.RUNNING) {
+            replay.stopRequested = true;
+            replay.awaitWorkers();
+        }
+        workers.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    public synchronized Map<String, Object> start(DltReplayRequest request) {
+        ensureNotRunning();
+        Map<Integer, Long> nextOffsets = new TreeMap<>();
+        Map<Integer, Long> endOffsets = new TreeMap<>();
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(consumerConfig("dlt-replay-planner"))) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo info : consumer.partitionsFor(request.dltTopic(),
+                    Duration.ofSeconds(30))) {
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+            }
+            Map<TopicPartition, Long> beginning = consumer.beginningOffsets(partitions);
+            Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+            Map<TopicPartition, OffsetAndTimestamp> fromTime = request.from() != null
+                    ? consumer.offsetsForTimes(timestamps(partitions, request.from())) : Map.of();
+            Map<TopicPartition, OffsetAndTimestamp> toTime = request.to() != null
+                    ? consumer.offsetsForTimes(timestamps(partitions, request.to())) : Map.of();
+
+            for (TopicPartition partition : partitions) {
+                long last = end.get(partition);
+                if (request.toOffset() != null) {
+                    last = Math.min(last, request.toOffset());
+                }
+                if (request.to() != null && toTime.get(partition) != null) {
+                    last = Math.min(last, toTime.get(partition).offset());
+                }
+                long first = beginning.get(partition);
+                if (request.fromOffset() != null) {
+                    first = Math.max(first, request.fromOffset());
+                }
+                if (request.from() != null) {
+                    // no record at or after the timestamp: nothing to replay on this partition
+                    OffsetAndTimestamp offset = fromTime.get(partition);
+                    first = Math.max(first, offset != null ? offset.offset() : last);
+                }
+                nextOffsets.put(partition.partition(), Math.min(first, last));
+                endOffsets.put(partition.partition(), last);
+            }
+        }
+        return launch(new DltReplayCheckpoint(request, nextOffsets, endOffsets, false));
+    }
+
+    public synchronized Map<String, Object> resume() {
+        ensureNotRunning();
+        DltReplayCheckpoint checkpoint;
+        try {
+            checkpoint = DltReplayCheckpoint.load(checkpointPath);
+        } catch (IOException e) {
+            throw new IllegalStateException("No DLT replay checkpoint to resume at " + checkpointPath, e);
+        }
+        if (checkpoint.completed()) {
+            throw new IllegalStateException("The last DLT replay already completed");
+        }
+        return launch(checkpoint);
+    }
+
+    public Map<String, Object> stop() {
+        Replay replay = current;
+        if (replay != null && replay.state == State.RUNNING) {
+            replay.stopRequested = true;
+            replay.awaitWorkers();
+        }
+        return status();
+    }
+
+    public Map<String, Object> status() {
+        Replay replay = current;
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (replay == null) {
+            status.put("state", State.IDLE);
+            return status;
+        }
+        long handled = replay.replayed.sum() + replay.failed.sum();
+        double seconds = Math.max(1, replay.elapsedMillis()) / 1000.0;
+        status.put("state", replay.state);
+        status.put("request", replay.checkpoint.request());
+        status.put("startedAt", replay.startedAt.toString());
+        status.put("replayed", replay.replayed.sum());
+        status.put("filtered", replay.filtered.sum());
+        status.put("failed", replay.failed.sum());
+        status.put("remaining", replay.remaining());
+        status.put("recordsPerSecond", Math.round(handled / seconds));
+        List<Map<String, Object>> partitions = new ArrayList<>();
+        for (PartitionProgress progress : replay.partitions) {
+            partitions.add(Map.of("partition", progress.partition, "nextOffset", progress.nextOffset,
+                    "endOffset", progress.endOffset));
+        }
+        status.put("partitions", partitions);
+        if (replay.error != null) {
+            status.put("error", replay.error);
+        }
+        return status;
+    }
+
+    private void ensureNotRunning() {
+        Replay replay = current;
+        if (replay != null && replay.state == State.RUNNING) {
+            throw new IllegalStateException("A DLT replay is already running");
+        }
+    }
+
+    private Map<String, Object> launch(DltReplayCheckpoint checkpoint) {
+        Replay replay = new Replay(checkpoint);
+        current = replay;
+        saveCheckpoint(replay);
+        log.info("DLT replay started: {}, remaining={}", checkpoint.request(), replay.remaining());
+
+        List<CompletableFuture<Void>> partitionRuns = new ArrayList<>();
+        for (PartitionProgress progress : replay.partitions) {
+            partitionRuns.add(CompletableFuture.runAsync(() -> replayPartition(replay, progress), workers));
+        }
+        replay.done = CompletableFuture.allOf(partitionRuns.toArray(CompletableFuture[]::new));
+        ScheduledFuture<?> checkpoints = scheduler.scheduleWithFixedDelay(() -> saveCheckpoint(replay),
+                checkpointInterval.toMillis(), checkpointInterval.toMillis(), TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> progressLog = scheduler.scheduleAtFixedRate(() -> logProgress(replay),
+                progressInterval.toMillis(), progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+        replay.done.whenComplete((result, exception) -> {
+            checkpoints.cancel(false);
+            progressLog.cancel(false);
+            replay.finishedNanos = System.nanoTime();
+            if (exception != null) {
+                replay.error = exception.getMessage();
+                replay.state = State.FAILED;
+            } else {
+                replay.state = replay.stopRequested ? State.STOPPED : State.COMPLETED;
+            }
+            saveCheckpoint(replay);
+            logProgress(replay);
+        });
+        return status();
+    }
+
+    private void replayPartition(Replay replay, PartitionProgress progress) {
+        if (progress.nextOffset >= progress.endOffset) {
+            return;
+        }
+        TopicPartition topicPartition =
+                new TopicPartition(replay.checkpoint.request().dltTopic(), progress.partition);
+        try (KafkaConsumer<String, byte[]> consumer =
+                     new KafkaConsumer<>(consumerConfig("dlt-replay-" + progress.partition))) {
+            consumer.assign(List.of(topicPartition));
+            consumer.seek(topicPartition, progress.nextOffset);
+
+            while (!replay.stopRequested && progress.nextOffset < progress.endOffset) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+                List<CompletableFuture<Void>> inFlight = new ArrayList<>(records.count());
+                long next = -1;
+                for (ConsumerRecord<String, byte[]> record : records) {
+                    if (record.offset() >= progress.endOffset || replay.stopRequested) {
+                        break;
+                    }
+                    next = record.offset() + 1;
+                    if (!replay.checkpoint.request().matches(record)) {
+                        replay.filtered.increment();
+                        filteredCounter.increment();
+                        continue;
+                    }
+                    replay.bucket.acquire();
+                    replay.inFlight.acquire();
+                    inFlight.add(dispatch(replay, record).whenComplete((result, exception) -> replay.inFlight.release()));
+                }
+                CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+
+                if (replay.stopRequested) {
+                    if (next >= 0) {
+                        progress.nextOffset = next;
+                    }
+                } else {
+                    // the position also skips offsets without records, such as transaction markers
+                    progress.nextOffset = Math.min(progress.endOffset, Math.max(next, consumer.position(topicPartition)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            replay.stopRequested = true;
+        }
+    }
+
+    private CompletableFuture<Void> dispatch(Replay replay, ConsumerRecord<String, byte[]> record) {
+        if (replay.checkpoint.request().mode() == DltReplayRequest.Mode.PROCESS) {
+            return CompletableFuture.runAsync(() -> process(replay, record), workers);
+        }
+        ProducerRecord<String, Object> reinjected = new ProducerRecord<>(
+                replay.checkpoint.request().lane().topic(), null, record.key(), record.value());
+        for (Header header : record.headers()) {
+            if (!header.key().startsWith(KafkaHeaders.PREFIX + "dlt-") && !isRetryTopicHeader(header.key())) {
+                reinjected.headers().add(header);
+            }
+        }
+        return kafkaTemplate.send(reinjected).handle((result, exception) -> {
+            if (exception != null) {
+                failed(replay, record, exception);
+            } else {
+                replayed(replay);
+            }
+            return null;
+        });
+    }
+
+    private void process(Replay replay, ConsumerRecord<String, byte[]> record) {
+        try {
+            ProductCreatedEvent event = eventReader.decode(record.headers(), record.value());
+            // like the listeners, wait while the mail backend is known to be down instead of failing fast
+            while (!circuitBreaker.tryAcquirePermission()) {
+                Thread.sleep(circuitBreaker.retryDelayMillis());
+            }
+            try {
+                notificationService.processProductCreated(event);
+                circuitBreaker.onSuccess();
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+            replayed(replay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed(replay, record, e);
+        } catch (RuntimeException e) {
+            failed(replay, record, e);
+        }
+    }
+
+    private void replayed(Replay replay) {
+        replay.replayed.increment();
+        replayedCounter.increment();
+    }
+
+    private void failed(Replay replay, ConsumerRecord<String, byte[]> record, Throwable exception) {
+        replay.failed.increment();
+        failedCounter.increment();
+        log.warn("DLT replay failed, record left in the DLT: partition={}, offset={}, key={}, error={}",
+                record.partition(), record.offset(), record.key(), exception.getMessage());
+    }
+
+    private static boolean isRetryTopicHeader(String name) {
+        return name.equals(RetryTopicHeaders.DEFAULT_HEADER_ATTEMPTS)
+                || name.equals(RetryTopicHeaders.DEFAULT_HEADER_BACKOFF_TIMESTAMP)
+                || name.equals(RetryTopicHeaders.DEFAULT_HEADER_ORIGINAL_TIMESTAMP)
+                || name.startsWith(DelayedRetryHeaders.PREFIX);
+    }
+
+    private synchronized void saveCheckpoint(Replay replay) {
+        Map<Integer, Long> nextOffsets = new TreeMap<>();
+        for (PartitionProgress progress : replay.partitions) {
+            nextOffsets.put(progress.partition, progress.nextOffset);
+        }
+        DltReplayCheckpoint checkpoint = new DltReplayCheckpoint(replay.checkpoint.request(), nextOffsets,
+                replay.checkpoint.endOffsets(), replay.state == State.COMPLETED);
+        try {
+            checkpoint.save(checkpointPath);
+        } catch (IOException e) {
+            log.warn("Failed to save DLT replay checkpoint {}: {}", checkpointPath, e.getMessage());
+        }
+    }
+
+    private void logProgress(Replay replay) {
+        long replayed = replay.replayed.sum();
+        long failed = replay.failed.sum();
+        long intervalHandled = replayed + failed - replay.lastLoggedHandled;
+        long intervalMillis = Math.max(1, replay.elapsedMillis() - replay.lastLoggedMillis);
+        replay.lastLoggedHandled = replayed + failed;
+        replay.lastLoggedMillis = replay.elapsedMillis();
+        log.info("DLT replay {}: replayed={}, filtered={}, failed={}, remaining={}, rate={}/s",
+                replay.state, replayed, replay.filtered.sum(), failed, replay.remaining(),
+                intervalHandled * 1000 / intervalMillis);
+    }
+
+    private Map<String, Object> consumerConfig(String clientId) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1000);
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId);
+        return config;
+    }
+
+    private static Map<TopicPartition, Long> timestamps(List<TopicPartition> partitions, Instant instant) {
+        Map<TopicPartition, Long> timestamps = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            timestamps.put(partition, instant.toEpochMilli());
+        }
+        return timestamps;
+    }
+
+    private final class Replay {
+
+        final DltReplayCheckpoint checkpoint;
+        final List<PartitionProgress> partitions = new ArrayList<>();
+        final TokenBucket bucket;
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final Instant startedAt = Instant.now();
+        final long startedNanos = System.nanoTime();
+        final LongAdder replayed = new LongAdder();
+        final LongAdder filtered = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        volatile State state = State.RUNNING;
+        volatile boolean stopRequested;
+        volatile String error;
+        volatile CompletableFuture<Void> done;
+        volatile long finishedNanos;
+        long lastLoggedHandled;
+        long lastLoggedMillis;
+
+        Replay(DltReplayCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            // a tenth of a second of burst, so a worker back from a poll does not lose its share of the rate
+            int rate = checkpoint.request().ratePerSecond();
+            this.bucket = new TokenBucket(rate, Math.max(1, rate / 10));
+            checkpoint.endOffsets().forEach((partition, end) -> partitions.add(
+                    new PartitionProgress(partition, checkpoint.nextOffsets().getOrDefault(partition, end), end)));
+        }
+
+        long elapsedMillis() {
+            long endNanos = state == State.RUNNING ? System.nanoTime() : finishedNanos;
+            return (endNanos - startedNanos) / 1_000_000;
+        }
+
+        long remaining() {
+            long remaining = 0;
+            for (PartitionProgress progress : partitions) {
+                remaining += Math.max(0, progress.endOffset - progress.nextOffset);
+            }
+            return remaining;
+        }
+
+        void awaitWorkers() {
+            CompletableFuture<Void> workersDone = done;
+            if (workersDone != null) {
+                try {
+                    workersDone.get(30, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    log.warn("DLT replay workers did not stop cleanly: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static final class PartitionProgress {
+
+        final int partition;
+        final long endOffset;
+        volatile long nextOffset;
+
+        PartitionProgress(int partition, long nextOffset, long endOffset) {
+            this.partition = partition;
+            this.nextOffset = nextOffset;
+            this.endOffset = endOffset;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.malbano.emailnotification.replay;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token bucket shared by the replay workers, refilled at {@code ratePerSecond} and holding at most {@code burst}
+ * tokens. Kept as the theoretical arrival time of the next token (GCRA), so taking a token is a single CAS and
+ * callers that must wait park for exactly the time until their token instead of polling.
+ */
+class TokenBucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong nextFreeNanos = new AtomicLong(System.nanoTime());
+
+    TokenBucket(int ratePerSecond, int burst) {
+        if (ratePerSecond < 1 || burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive");
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    /**
+     * Takes one token, parking the calling thread until it is available.
+     */
+    void acquire() throws InterruptedException {
+        long now;
+        long waitNanos;
+        while (true) {
+            now = System.nanoTime();
+            long next = nextFreeNanos.get();
+            // an idle bucket is full: its next token is due now, and up to burst tokens are taken without waiting
+            long due = Math.max(next, now);
+            if (nextFreeNanos.compareAndSet(next, due + intervalNanos)) {
+                waitNanos = due - now - toleranceNanos;
+                break;
+            }
+        }
+        long deadline = now + waitNanos;
+        while (waitNanos > 0) {
+            LockSupport.parkNanos(waitNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitNanos = deadline - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.malbano.emailnotification.retry;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Headers of a record in the delay topic: when its next attempt is due, how many attempts were made, and where the
+ * record was first consumed, so a released record is handled, retried and dead-lettered as the original one.
+ */
+public final class DelayedRetryHeaders {
+
+    public static final String PREFIX = "product-retry-";
+    static final String ATTEMPTS = PREFIX + "attempts";
+    static final String DUE = PREFIX + "due";
+    static final String TOPIC = PREFIX + "topic";
+    static final String PARTITION = PREFIX + "partition";
+    static final String OFFSET = PREFIX + "offset";
+    static final String TIMESTAMP = PREFIX + "timestamp";
+
+    private DelayedRetryHeaders() {
+    }
+
+    /**
+     * Replaces the delay headers of {@code headers} with the ones of {@code origin} after {@code attempts} failed
+     * attempts, the next one due at {@code dueMs}.
+     */
+    static void write(Headers headers, ConsumerRecord<?, ?> origin, int attempts, long dueMs) {
+        for (String name : new String[]{ATTEMPTS, DUE, TOPIC, PARTITION, OFFSET, TIMESTAMP}) {
+            headers.remove(name);
+        }
+        headers.add(ATTEMPTS, ByteBuffer.allocate(Integer.BYTES).putInt(attempts).array());
+        headers.add(DUE, ByteBuffer.allocate(Long.BYTES).putLong(dueMs).array());
+        headers.add(TOPIC, origin.topic().getBytes(StandardCharsets.UTF_8));
+        headers.add(PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(origin.partition()).array());
+        headers.add(OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(origin.offset()).array());
+        headers.add(TIMESTAMP, ByteBuffer.allocate(Long.BYTES).putLong(origin.timestamp()).array());
+    }
+
+    /**
+     * @return failed attempts recorded when the record was delayed, 0 if it was not delayed yet
+     */
+    static int attempts(Headers headers) {
+        Header header = headers.lastHeader(ATTEMPTS);
+        return header != null && header.value().length == Integer.BYTES ? ByteBuffer.wrap(header.value()).getInt() : 0;
+    }
+
+    /**
+     * @return epoch millis of the next attempt, 0 (due now) if the header is missing
+     */
+    static long due(Headers headers) {
+        Header header = headers.lastHeader(DUE);
+        return header != null && header.value().length == Long.BYTES ? ByteBuffer.wrap(header.value()).getLong() : 0;
+    }
+
+    /**
+     * @return the record as it was consumed from its own topic, with the payload and headers of the delayed one;
+     * the delayed record itself if it has no delay headers
+     */
+    static ConsumerRecord<String, byte[]> origin(ConsumerRecord<String, byte[]> delayed) {
+        Headers headers = delayed.headers();
+        Header topic = headers.lastHeader(TOPIC);
+        Header partition = headers.lastHeader(PARTITION);
+        Header offset = headers.lastHeader(OFFSET);
+        Header timestamp = headers.lastHeader(TIMESTAMP);
+        if (topic == null || partition == null || offset == null || timestamp == null) {
+            return delayed;
+        }
+        return new ConsumerRecord<>(new String(topic.value(), StandardCharsets.UTF_8),
+                ByteBuffer.wrap(partition.value()).getInt(), ByteBuffer.wrap(offset.value()).getLong(),
+                ByteBuffer.wrap(timestamp.value()).getLong(), TimestampType.CREATE_TIME,
+                ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE, delayed.key(), delayed.value(),
+                new RecordHeaders(headers.toArray()), Optional.empty());
+    }
+}
@@ -0,0 +1,108 @@
+package com.malbano.emailnotification.retry;
+
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedRuntimeException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerAwareRecordRecoverer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.ExceptionClassifier;
+import org.springframework.kafka.listener.SeekUtils;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.BackOffExecution;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Recoverer of the record listener in the {@code delay-wheel} retry mode. Instead of a retry topic per backoff step,
+ * a failed record is published to {@value KafkaConsumerConfiguration#PRODUCT_CREATED_DELAY_TOPIC} with the time its
+ * next attempt is due, and the {@link DelayedRetryScheduler} releases it from there. The delays and the number of
+ * attempts come from the same {@code retryBackOff} as the other modes (1 s doubling up to 30 s, 5 attempts). When they
+ * run out, or for failures a retry cannot fix (the fatal exceptions of {@link ExceptionClassifier}, such as a payload
+ * that does not parse), the record goes to the DLT of its lane.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = "record", matchIfMissing = true)
+@ConditionalOnProperty(name = "app.kafka.consumer.retry-mode", havingValue = "delay-wheel")
+public class DelayedRetryRecoverer extends ExceptionClassifier implements ConsumerAwareRecordRecoverer {
+
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+
+    private final Logger log = LoggerFactory.getLogger(DelayedRetryRecoverer.class);
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final DeadLetterPublishingRecoverer deadLetterRecoverer;
+    private final ExponentialBackOffWithMaxRetries retryBackOff;
+    private final NotificationMetrics metrics;
+
+    public DelayedRetryRecoverer(KafkaTemplate<String, Object> kafkaTemplate,
+                                 DeadLetterPublishingRecoverer deadLetterRecoverer,
+                                 ExponentialBackOffWithMaxRetries retryBackOff,
+                                 NotificationMetrics metrics) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.deadLetterRecoverer = deadLetterRecoverer;
+        this.retryBackOff = retryBackOff;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param record the record as consumed from its own topic; for a record released by the scheduler, the one from
+     *               {@link DelayedRetryHeaders#origin}
+     * @throws KafkaException if the record could not be published, so the caller keeps it
+     */
+    @Override
+    public void accept(ConsumerRecord<?, ?> record, @Nullable Consumer<?, ?> consumer, Exception exception) {
+        // records rejected by the circuit breaker are not failures; rethrowing makes the error handler seek back
+        if (SeekUtils.isBackoffException(exception)) {
+            throw (NestedRuntimeException) exception;
+        }
+        int attempts = DelayedRetryHeaders.attempts(record.headers()) + 1;
+        long delay = getClassifier().classify(exception) ? delayAfter(attempts) : BackOffExecution.STOP;
+        if (delay == BackOffExecution.STOP) {
+            deadLetterRecoverer.accept(record, consumer, exception);
+            return;
+        }
+
+        ProducerRecord<String, Object> delayed = new ProducerRecord<>(
+                KafkaConsumerConfiguration.PRODUCT_CREATED_DELAY_TOPIC, null, (String) record.key(), record.value(),
+                record.headers());
+        DelayedRetryHeaders.write(delayed.headers(), record, attempts, System.currentTimeMillis() + delay);
+        try {
+            kafkaTemplate.send(delayed).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KafkaException("Interrupted while delaying a retry of " + record.topic(), e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new KafkaException("Failed to delay a retry of " + record.topic() + "-" + record.partition()
+                    + "@" + record.offset(), e);
+        }
+        metrics.retryDelayed();
+        log.debug("Retry {} of {}-{}@{} delayed by {} ms", attempts + 1, record.topic(), record.partition(),
+                record.offset(), delay);
+    }
+
+    /**
+     * @return the delay before the attempt after {@code attempts} failed ones, or {@link BackOffExecution#STOP}
+     */
+    private long delayAfter(int attempts) {
+        BackOffExecution execution = retryBackOff.start();
+        long delay = BackOffExecution.STOP;
+        for (int i = 0; i < attempts; i++) {
+            delay = execution.nextBackOff();
+            if (delay == BackOffExecution.STOP) {
+                break;
+            }
+        }
+        return delay;
+    }
+}
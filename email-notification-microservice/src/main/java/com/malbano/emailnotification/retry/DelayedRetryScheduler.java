@@ -0,0 +1,441 @@
+package com.malbano.emailnotification.retry;
+
+import com.malbano.emailnotification.circuitbreaker.NotificationCircuitBreaker;
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import com.malbano.emailnotification.serialization.ProductCreatedEventReader;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumes {@value KafkaConsumerConfiguration#PRODUCT_CREATED_DELAY_TOPIC} on a single thread and holds each record
+ * in a {@link TimingWheel} until the attempt in its due-time header, then handles it like the record listener: through
+ * the {@link NotificationCircuitBreaker} and the {@link ProductNotificationService}, and on failure back to the
+ * {@link DelayedRetryRecoverer}, which delays it again or dead-letters it. One consumer and one topic serve every
+ * backoff step, where the retry topics need a topic and a listener container per step.
+ * <ul>
+ *     <li>At most {@code max-entries} records are held. Past that, polled records are published back to the end of
+ *     the delay topic with the same due time and the partitions are paused until the wheel is down to three
+ *     quarters, so a full wheel spills one poll instead of cycling records through the topic.</li>
+ *     <li>The committed offset of a partition stays at its first record still held, so records in the wheel are
+ *     consumed again after a restart or rebalance (at least once, like the listener).</li>
+ *     <li>Due records are handled at most {@code max.poll.records} and {@code release-time-limit} per poll (the rest
+ *     stay due for the next one), so a burst of retries coming due together, or a slow mail server, does not keep
+ *     the consumer from polling within {@code max.poll.interval.ms}.</li>
+ *     <li>While the circuit breaker rejects calls, released records go back into the wheel for
+ *     {@link NotificationCircuitBreaker#retryDelayMillis()} without using up an attempt.</li>
+ *     <li>If the consumer loop fails, the held records are dropped and a new consumer starts after a backoff (1 s
+ *     doubling up to 30 s), consuming them again from the committed offsets.</li>
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.listener-mode", havingValue = "record", matchIfMissing = true)
+@ConditionalOnProperty(name = "app.kafka.consumer.retry-mode", havingValue = "delay-wheel")
+public class DelayedRetryScheduler {
+
+    private static final long POLL_TIMEOUT_MS = 500;
+    private static final long COMMIT_INTERVAL_MS = 1000;
+    private static final long REPUBLISH_BACKOFF_MS = 1000;
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+    private static final long RESTART_BACKOFF_MS = 1000;
+    private static final long MAX_RESTART_BACKOFF_MS = 30000;
+    private static final int DEFAULT_MAX_POLL_INTERVAL_MS = 300000;
+
+    private final Logger log = LoggerFactory.getLogger(DelayedRetryScheduler.class);
+    private final ProductNotificationService notificationService;
+    private final NotificationCircuitBreaker circuitBreaker;
+    private final ProductCreatedEventReader eventReader;
+    private final DelayedRetryRecoverer recoverer;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final NotificationMetrics metrics;
+    private final Map<String, Object> consumerConfig = new HashMap<>();
+    private final int maxEntries;
+    private final int releaseBatch;
+    private final long releaseTimeLimitNanos;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "product-delay-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // owned by the worker thread
+    private final TimingWheel<ConsumerRecord<String, byte[]>> wheel;
+    private final ArrayDeque<ConsumerRecord<String, byte[]>> ready = new ArrayDeque<>();
+    private final Map<TopicPartition, TreeSet<Long>> held = new HashMap<>();
+    private final Map<TopicPartition, Long> fetched = new HashMap<>();
+    private final Map<TopicPartition, Long> committed = new HashMap<>();
+    private final List<Spill> spills = new ArrayList<>();
+    private volatile KafkaConsumer<String, byte[]> consumer;
+    private boolean paused;
+    private long lastCommit;
+
+    private final Counter spilled;
+    private final Timer lateness;
+    private volatile int size;
+    private volatile boolean running;
+
+    public DelayedRetryScheduler(ProductNotificationService notificationService,
+                                 NotificationCircuitBreaker circuitBreaker,
+                                 ProductCreatedEventReader eventReader,
+                                 DelayedRetryRecoverer recoverer,
+                                 KafkaTemplate<String, Object> kafkaTemplate,
+                                 NotificationMetrics metrics,
+                                 ConsumerFactory<String, Object> consumerFactory,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.kafka.consumer.delay-retry.tick:10ms}") Duration tick,
+                                 @Value("${app.kafka.consumer.delay-retry.wheel-size:64}") int wheelSize,
+                                 @Value("${app.kafka.consumer.delay-retry.max-entries:10000}") int maxEntries,
+                                 @Value("${spring.kafka.consumer.max-poll-records:500}") int maxPollRecords,
+                                 @Value("${app.kafka.consumer.delay-retry.release-time-limit:10s}") Duration releaseTimeLimit) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The delay wheel must hold at least one record");
+        }
+        Map<String, Object> properties = consumerFactory.getConfigurationProperties();
+        Object maxPollInterval = properties.getOrDefault(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG,
+                DEFAULT_MAX_POLL_INTERVAL_MS);
+        // leaves the other half of the interval for the poll, the spills and the commit
+        if (releaseTimeLimit.isNegative() || releaseTimeLimit.isZero()
+                || releaseTimeLimit.toMillis() > Long.parseLong(maxPollInterval.toString()) / 2) {
+            throw new IllegalArgumentException("app.kafka.consumer.delay-retry.release-time-limit must be positive and "
+                    + "at most half of max.poll.interval.ms (" + maxPollInterval + ")");
+        }
+        this.notificationService = notificationService;
+        this.circuitBreaker = circuitBreaker;
+        this.eventReader = eventReader;
+        this.recoverer = recoverer;
+        this.kafkaTemplate = kafkaTemplate;
+        this.metrics = metrics;
+        this.maxEntries = maxEntries;
+        this.releaseBatch = maxPollRecords;
+        this.releaseTimeLimitNanos = releaseTimeLimit.toNanos();
+        this.wheel = new TimingWheel<>(tick.toMillis(), wheelSize, System.currentTimeMillis());
+
+        consumerConfig.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, properties.get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        consumerConfig.put(ConsumerConfig.GROUP_ID_CONFIG, properties.get(ConsumerConfig.GROUP_ID_CONFIG) + "-delay");
+        consumerConfig.put(ConsumerConfig.CLIENT_ID_CONFIG, "product-delay-retry");
+        consumerConfig.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerConfig.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        consumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        // retries delayed before the group first joined must not be skipped
+        consumerConfig.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumerConfig.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        consumerConfig.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, maxPollInterval);
+
+        Gauge.builder("product.notification.delay.held", this, scheduler -> scheduler.size)
+                .description("Delayed retries held in memory by the timing wheel, waiting or due")
+                .register(meterRegistry);
+        this.spilled = Counter.builder("product.notification.delay.spilled")
+                .description("Delayed retries published back to the delay topic because the timing wheel was full")
+                .register(meterRegistry);
+        this.lateness = Timer.builder("product.notification.delay.lateness")
+                .description("Time from the due time of a delayed retry to its attempt")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker.execute(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        KafkaConsumer<String, byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        worker.shutdown();
+        if (!worker.awaitTermination(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Delayed retry scheduler did not stop in {} s", SEND_TIMEOUT_SECONDS);
+        }
+    }
+
+    private void run() {
+        long backoffMs = RESTART_BACKOFF_MS;
+        while (running) {
+            long started = System.currentTimeMillis();
+            try {
+                consume();
+                return;
+            } catch (RuntimeException e) {
+                if (System.currentTimeMillis() - started > MAX_RESTART_BACKOFF_MS) {
+                    // the previous consumer ran fine for a while, this is a new failure
+                    backoffMs = RESTART_BACKOFF_MS;
+                }
+                log.error("Delayed retry scheduler failed, starting a new consumer in {} ms; held retries are consumed "
+                        + "again from the committed offsets", backoffMs, e);
+            }
+            reset();
+            if (!pause(backoffMs)) {
+                return;
+            }
+            backoffMs = Math.min(backoffMs * 2, MAX_RESTART_BACKOFF_MS);
+        }
+    }
+
+    private void consume() {
+        try (KafkaConsumer<String, byte[]> delayConsumer = new KafkaConsumer<>(consumerConfig)) {
+            consumer = delayConsumer;
+            delayConsumer.subscribe(List.of(KafkaConsumerConfiguration.PRODUCT_CREATED_DELAY_TOPIC),
+                    new RebalanceListener());
+            while (running) {
+                long now = System.currentTimeMillis();
+                wheel.advance(now, ready::add);
+                long timeout = ready.isEmpty() ? Math.min(POLL_TIMEOUT_MS, Math.max(0, wheel.nextExpiration() - now)) : 0;
+                try {
+                    for (ConsumerRecord<String, byte[]> record : delayConsumer.poll(Duration.ofMillis(timeout))) {
+                        schedule(record);
+                    }
+                } catch (WakeupException e) {
+                    break;
+                }
+                awaitSpills();
+                release();
+                throttle();
+                size = wheel.size() + ready.size();
+                if (System.currentTimeMillis() - lastCommit >= COMMIT_INTERVAL_MS) {
+                    commit(fetched.keySet());
+                }
+            }
+            commit(fetched.keySet());
+        } finally {
+            consumer = null;
+        }
+    }
+
+    /**
+     * Drops what the failed consumer held; none of it was committed past.
+     */
+    private void reset() {
+        wheel.removeIf(record -> true);
+        ready.clear();
+        held.clear();
+        fetched.clear();
+        committed.clear();
+        spills.clear();
+        paused = false;
+        size = 0;
+    }
+
+    /**
+     * @return false if the scheduler was shut down meanwhile
+     */
+    private boolean pause(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        try {
+            while (running && System.currentTimeMillis() < deadline) {
+                Thread.sleep(Math.min(POLL_TIMEOUT_MS, Math.max(1, deadline - System.currentTimeMillis())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return running;
+    }
+
+    private void schedule(ConsumerRecord<String, byte[]> record) {
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        fetched.put(partition, record.offset() + 1);
+        if (wheel.size() + ready.size() >= maxEntries) {
+            spills.add(new Spill(record, kafkaTemplate.send(new ProducerRecord<>(record.topic(), null, record.key(),
+                    record.value(), record.headers()))));
+            return;
+        }
+        hold(record, DelayedRetryHeaders.due(record.headers()));
+    }
+
+    private void hold(ConsumerRecord<String, byte[]> record, long dueMs) {
+        held.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), p -> new TreeSet<>())
+                .add(record.offset());
+        requeue(record, dueMs);
+    }
+
+    private void requeue(ConsumerRecord<String, byte[]> record, long dueMs) {
+        if (!wheel.add(record, dueMs)) {
+            ready.add(record);
+        }
+    }
+
+    /**
+     * A spilled record is only done once the broker has its copy; if that fails it is held anyway, over the limit.
+     */
+    private void awaitSpills() {
+        for (Spill spill : spills) {
+            try {
+                RecordMetadata metadata = spill.sent().get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS).getRecordMetadata();
+                spilled.increment();
+                log.debug("Delay wheel full, retry spilled to offset {}", metadata.offset());
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                log.warn("Failed to spill a delayed retry, holding it over the limit: {}", e.getMessage());
+                hold(spill.record(), DelayedRetryHeaders.due(spill.record().headers()));
+            }
+        }
+        spills.clear();
+    }
+
+    private void release() {
+        long deadline = System.nanoTime() + releaseTimeLimitNanos;
+        for (int i = 0; i < releaseBatch && !ready.isEmpty() && System.nanoTime() - deadline < 0; i++) {
+            attempt(ready.poll());
+        }
+    }
+
+    private void attempt(ConsumerRecord<String, byte[]> delayed) {
+        ConsumerRecord<String, byte[]> origin = DelayedRetryHeaders.origin(delayed);
+        long now = System.currentTimeMillis();
+        try {
+            ProductCreatedEvent event = eventReader.decode(origin.headers(), origin.value());
+            if (!circuitBreaker.tryAcquirePermission()) {
+                requeue(delayed, now + circuitBreaker.retryDelayMillis());
+                return;
+            }
+            lateness.record(Math.max(0, now - DelayedRetryHeaders.due(delayed.headers())), TimeUnit.MILLISECONDS);
+            try {
+                notificationService.processProductCreated(event);
+                circuitBreaker.onSuccess();
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+            metrics.retryRouted();
+            metrics.laneDelivered(origin.topic(), origin.timestamp());
+        } catch (RuntimeException e) {
+            log.error("Error processing delayed ProductCreatedEvent: key={}, attempts={}, error={}",
+                    origin.key(), DelayedRetryHeaders.attempts(origin.headers()) + 1, e.getMessage());
+            try {
+                recoverer.accept(origin, null, e);
+            } catch (RuntimeException publishFailure) {
+                log.warn("Failed to delay or dead-letter a retry, trying again in {} ms: {}", REPUBLISH_BACKOFF_MS,
+                        publishFailure.getMessage());
+                requeue(delayed, now + REPUBLISH_BACKOFF_MS);
+                return;
+            }
+        }
+        done(delayed);
+    }
+
+    private void done(ConsumerRecord<String, byte[]> delayed) {
+        TreeSet<Long> offsets = held.get(new TopicPartition(delayed.topic(), delayed.partition()));
+        if (offsets != null) {
+            offsets.remove(delayed.offset());
+        }
+    }
+
+    private void throttle() {
+        int size = wheel.size() + ready.size();
+        if (!paused && size >= maxEntries) {
+            consumer.pause(consumer.assignment());
+            paused = true;
+            log.info("Delay wheel full ({} retries held), pausing the delay topic", size);
+        } else if (paused && size <= maxEntries * 3L / 4) {
+            consumer.resume(consumer.paused());
+            paused = false;
+        }
+    }
+
+    private void commit(Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            Long next = fetched.get(partition);
+            if (next == null) {
+                continue;
+            }
+            TreeSet<Long> offsetsHeld = held.get(partition);
+            long offset = offsetsHeld == null || offsetsHeld.isEmpty() ? next : offsetsHeld.first();
+            if (!Long.valueOf(offset).equals(committed.get(partition))) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        }
+        lastCommit = System.currentTimeMillis();
+        if (offsets.isEmpty()) {
+            return;
+        }
+        try {
+            consumer.commitSync(offsets);
+            offsets.forEach((partition, offset) -> committed.put(partition, offset.offset()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to commit delay topic offsets: {}", e.getMessage());
+        }
+    }
+
+    private void forget(Collection<TopicPartition> partitions) {
+        wheel.removeIf(record -> partitions.contains(new TopicPartition(record.topic(), record.partition())));
+        ready.removeIf(record -> partitions.contains(new TopicPartition(record.topic(), record.partition())));
+        for (TopicPartition partition : partitions) {
+            held.remove(partition);
+            fetched.remove(partition);
+            committed.remove(partition);
+        }
+    }
+
+    private record Spill(ConsumerRecord<String, byte[]> record, CompletableFuture<SendResult<String, Object>> sent) {
+    }
+
+    /**
+     * Runs inside poll on the worker thread. Revoked partitions are committed up to their first held record and
+     * dropped from the wheel; their new owner consumes those records again.
+     */
+    private final class RebalanceListener implements ConsumerRebalanceListener {
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            commit(partitions);
+            forget(partitions);
+        }
+
+        @Override
+        public void onPartitionsLost(Collection<TopicPartition> partitions) {
+            forget(partitions);
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            if (paused) {
+                consumer.pause(partitions);
+            }
+        }
+    }
+}
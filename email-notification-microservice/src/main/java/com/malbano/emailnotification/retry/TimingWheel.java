@@ -0,0 +1,169 @@
+package com.malbano.emailnotification.retry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timing wheel holding items until their due time. The first level has {@code wheelSize} buckets of
+ * {@code tickMs}; each next level, created when an item is due further away than the current levels cover, has
+ * buckets as wide as the whole level below. Adding an item only touches one bucket, and only buckets (never items)
+ * are ordered by expiration, so the cost does not grow with the number of items held. When a bucket of an upper level
+ * expires its items move down to finer buckets, and items of a first-level bucket are released.
+ * <p>
+ * Items are released at the first tick boundary at or after their due time, never before it. Not thread safe, owned
+ * by the {@link DelayedRetryScheduler} poll loop.
+ */
+final class TimingWheel<T> {
+
+    private final PriorityQueue<Bucket<T>> expirations =
+            new PriorityQueue<>(Comparator.comparingLong(bucket -> bucket.expiration));
+    private final Level<T> first;
+    private int size;
+
+    TimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs < 1 || wheelSize < 2) {
+            throw new IllegalArgumentException("Timing wheel needs a tick of at least 1 ms and at least 2 buckets");
+        }
+        this.first = new Level<>(tickMs, wheelSize, startMs, expirations);
+    }
+
+    /**
+     * @return false, without holding the item, if it is already due
+     */
+    boolean add(T item, long dueMs) {
+        if (!first.add(new Entry<>(item, Math.ceilDiv(dueMs, first.tickMs) * first.tickMs))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves the clock to {@code nowMs} and hands every item due by then to {@code released}, in due order up to the
+     * tick.
+     */
+    void advance(long nowMs, Consumer<T> released) {
+        Bucket<T> bucket;
+        while ((bucket = expirations.peek()) != null && bucket.expiration <= nowMs) {
+            expirations.poll();
+            first.advanceClock(bucket.expiration);
+            for (Entry<T> entry : bucket.flush()) {
+                if (!first.add(entry)) {
+                    size--;
+                    released.accept(entry.item);
+                }
+            }
+        }
+        // every bucket left expires after nowMs, so none is reused for a later round by moving the clock
+        first.advanceClock(nowMs);
+    }
+
+    /**
+     * @return epoch millis of the next bucket to expire, or {@link Long#MAX_VALUE} if the wheel is empty
+     */
+    long nextExpiration() {
+        Bucket<T> bucket = expirations.peek();
+        return bucket != null ? bucket.expiration : Long.MAX_VALUE;
+    }
+
+    int removeIf(Predicate<T> filter) {
+        int removed = 0;
+        for (Bucket<T> bucket : expirations) {
+            int before = bucket.entries.size();
+            bucket.entries.removeIf(entry -> filter.test(entry.item));
+            removed += before - bucket.entries.size();
+        }
+        size -= removed;
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static final class Level<T> {
+
+        final long tickMs;
+        final int wheelSize;
+        final long intervalMs;
+        final Bucket<T>[] buckets;
+        final PriorityQueue<Bucket<T>> expirations;
+        long currentTime;
+        Level<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        Level(long tickMs, int wheelSize, long startMs, PriorityQueue<Bucket<T>> expirations) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.intervalMs = tickMs * wheelSize;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<>();
+            }
+            this.expirations = expirations;
+            this.currentTime = startMs - (startMs % tickMs);
+        }
+
+        /**
+         * @return false if the entry expires within the current tick of this level
+         */
+        boolean add(Entry<T> entry) {
+            if (entry.expiration < currentTime + tickMs) {
+                return false;
+            }
+            if (entry.expiration < currentTime + intervalMs) {
+                long virtualId = entry.expiration / tickMs;
+                Bucket<T> bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.entries.add(entry);
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    expirations.add(bucket);
+                }
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level<>(intervalMs, wheelSize, currentTime, expirations);
+            }
+            return overflow.add(entry);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    private static final class Bucket<T> {
+
+        final List<Entry<T>> entries = new ArrayList<>();
+        long expiration = -1;
+
+        /**
+         * @return true if the bucket starts a new round and has to be queued again
+         */
+        boolean setExpiration(long expirationMs) {
+            if (expiration == expirationMs) {
+                return false;
+            }
+            expiration = expirationMs;
+            return true;
+        }
+
+        List<Entry<T>> flush() {
+            List<Entry<T>> flushed = new ArrayList<>(entries);
+            entries.clear();
+            expiration = -1;
+            return flushed;
+        }
+    }
+
+    private record Entry<T>(T item, long expiration) {
+    }
+}
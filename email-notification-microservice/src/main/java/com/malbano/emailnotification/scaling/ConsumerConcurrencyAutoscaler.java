@@ -0,0 +1,267 @@
+package com.malbano.emailnotification.scaling;
+
+import com.malbano.emailnotification.config.KafkaConsumerConfiguration;
+import com.malbano.emailnotification.priority.ProductPriorityLane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resizes the product-created listener container between 1 and the topic's partition count. Every interval the
+ * time needed to drain the group's lag, summed over the priority lanes, is estimated from the mean handler latency;
+ * the container only grows after {@code scale-up-samples} consecutive estimates above the scale-up drain time, only
+ * shrinks after {@code scale-down-samples} estimates below the (much lower) scale-down drain time, and never changes
+ * twice within the cooldown.
+ * <p>
+ * Spring Kafka cannot add or remove a single consumer of a running {@link ConcurrentMessageListenerContainer}, so a
+ * resize stops the whole container and starts it with the new concurrency. Every consumer leaves the group, which
+ * costs a full rebalance; records polled but not yet committed are consumed again, and partition pauses set on the
+ * old consumers are lost. A resize is therefore skipped while the container or any of its partitions is paused, and
+ * the cooldown keeps restarts rare. The estimate needs the per-record latency of
+ * {@code product.notification.processing}, which only the {@code record} and {@code parallel} listener modes
+ * record; in {@code batch} and {@code digest} mode the timer covers a whole batch or digest and the autoscaler stays
+ * off.
+ */
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.autoscaling.enabled", havingValue = "true")
+public class ConsumerConcurrencyAutoscaler {
+
+    // the lane topics have the same partition count, so this one bounds the useful concurrency
+    private static final String TOPIC = KafkaConsumerConfiguration.PRODUCT_CREATED_TOPIC;
+    private static final long ADMIN_TIMEOUT_SECONDS = 10;
+
+    private final Logger log = LoggerFactory.getLogger(ConsumerConcurrencyAutoscaler.class);
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final Admin admin;
+    private final String groupId;
+    private final String listenerMode;
+    private final Duration interval;
+    private final double scaleUpDrainSeconds;
+    private final double scaleDownDrainSeconds;
+    private final int scaleUpSamples;
+    private final int scaleDownSamples;
+    private final long cooldownMs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "consumer-autoscaler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong lag = new AtomicLong();
+    private final AtomicInteger concurrency = new AtomicInteger();
+    private final Counter scaledUp;
+    private final Counter scaledDown;
+
+    private long lastProcessedCount;
+    private double lastProcessedNanos;
+    private double meanLatencySeconds;
+    private int aboveStreak;
+    private int belowStreak;
+    private long lastScaledAt;
+
+    public ConsumerConcurrencyAutoscaler(KafkaListenerEndpointRegistry listenerRegistry,
+                                         MeterRegistry meterRegistry,
+                                         ConsumerFactory<String, Object> consumerFactory,
+                                         @Value("${app.kafka.consumer.listener-mode:record}") String listenerMode,
+                                         @Value("${app.kafka.consumer.autoscaling.interval:10s}") Duration interval,
+                                         @Value("${app.kafka.consumer.autoscaling.scale-up-drain-time:30s}") Duration scaleUpDrainTime,
+                                         @Value("${app.kafka.consumer.autoscaling.scale-down-drain-time:5s}") Duration scaleDownDrainTime,
+                                         @Value("${app.kafka.consumer.autoscaling.scale-up-samples:2}") int scaleUpSamples,
+                                         @Value("${app.kafka.consumer.autoscaling.scale-down-samples:6}") int scaleDownSamples,
+                                         @Value("${app.kafka.consumer.autoscaling.cooldown:60s}") Duration cooldown) {
+        this.listenerRegistry = listenerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.groupId = (String) consumerFactory.getConfigurationProperties().get(ConsumerConfig.GROUP_ID_CONFIG);
+        this.listenerMode = listenerMode;
+        this.interval = interval;
+        this.scaleUpDrainSeconds = scaleUpDrainTime.toMillis() / 1000.0;
+        this.scaleDownDrainSeconds = scaleDownDrainTime.toMillis() / 1000.0;
+        this.scaleUpSamples = scaleUpSamples;
+        this.scaleDownSamples = scaleDownSamples;
+        this.cooldownMs = cooldown.toMillis();
+
+        Map<String, Object> adminConfig = new HashMap<>();
+        adminConfig.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG,
+                consumerFactory.getConfigurationProperties().get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        this.admin = Admin.create(adminConfig);
+
+        Gauge.builder("product.notification.consumer.lag", lag, AtomicLong::get)
+                .description("Total lag of the product-created consumer group seen by the autoscaler")
+                .register(meterRegistry);
+        Gauge.builder("product.notification.consumer.concurrency", concurrency, AtomicInteger::get)
+                .description("Consumer threads of the product-created listener container")
+                .register(meterRegistry);
+        this.scaledUp = scalingCounter(meterRegistry, "up");
+        this.scaledDown = scalingCounter(meterRegistry, "down");
+    }
+
+    private static Counter scalingCounter(MeterRegistry registry, String direction) {
+        return Counter.builder("product.notification.consumer.scaling")
+                .description("Concurrency changes made by the consumer autoscaler")
+                .tag("direction", direction)
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!KafkaConsumerConfiguration.RECORD_LISTENER_MODE.equals(listenerMode)
+                && !KafkaConsumerConfiguration.PARALLEL_LISTENER_MODE.equals(listenerMode)) {
+            log.warn("Consumer autoscaling disabled: listener-mode '{}' does not time single records", listenerMode);
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::evaluate, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        admin.close(Duration.ofSeconds(ADMIN_TIMEOUT_SECONDS));
+    }
+
+    private void evaluate() {
+        try {
+            MessageListenerContainer listenerContainer =
+                    listenerRegistry.getListenerContainer(KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID);
+            if (!(listenerContainer instanceof ConcurrentMessageListenerContainer<?, ?> container)
+                    || !container.isRunning()) {
+                return;
+            }
+
+            int partitions = partitionCount();
+            long currentLag = totalLag(partitions);
+            int current = container.getConcurrency();
+            updateMeanLatency();
+            lag.set(currentLag);
+            concurrency.set(current);
+
+            double drainSeconds = currentLag * meanLatencySeconds / current;
+            if (drainSeconds > scaleUpDrainSeconds && current < partitions) {
+                aboveStreak++;
+                belowStreak = 0;
+            } else if (drainSeconds < scaleDownDrainSeconds && current > 1) {
+                belowStreak++;
+                aboveStreak = 0;
+            } else {
+                aboveStreak = 0;
+                belowStreak = 0;
+            }
+
+            if (System.currentTimeMillis() - lastScaledAt < cooldownMs || isPaused(container)) {
+                return;
+            }
+            if (aboveStreak >= scaleUpSamples) {
+                int needed = (int) Math.ceil(currentLag * meanLatencySeconds / scaleUpDrainSeconds);
+                resize(container, current, Math.min(partitions, Math.max(current + 1, needed)), currentLag, drainSeconds);
+                scaledUp.increment();
+            } else if (belowStreak >= scaleDownSamples) {
+                resize(container, current, current - 1, currentLag, drainSeconds);
+                scaledDown.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Consumer autoscaler evaluation failed: {}", e.getMessage());
+        }
+    }
+
+    private void resize(ConcurrentMessageListenerContainer<?, ?> container, int from, int to, long currentLag,
+                        double drainSeconds) {
+        log.info("Scaling {} concurrency {} -> {} (lag={}, meanLatency={}ms, estimatedDrain={}s)",
+                KafkaConsumerConfiguration.PRODUCT_CREATED_LISTENER_ID, from, to, currentLag,
+                Math.round(meanLatencySeconds * 1000), Math.round(drainSeconds));
+        container.stop();
+        container.setConcurrency(to);
+        container.start();
+        concurrency.set(to);
+        lastScaledAt = System.currentTimeMillis();
+        aboveStreak = 0;
+        belowStreak = 0;
+    }
+
+    /**
+     * The circuit breaker pauses the whole container, which a restart keeps; partition pauses would be dropped, and
+     * either way the lag does not reflect the consumers' throughput while paused.
+     */
+    private static boolean isPaused(ConcurrentMessageListenerContainer<?, ?> container) {
+        if (container.isPauseRequested()) {
+            return true;
+        }
+        Collection<TopicPartition> assigned = container.getAssignedPartitions();
+        return assigned != null && assigned.stream().anyMatch(container::isPartitionPaused);
+    }
+
+    private int partitionCount() throws Exception {
+        return admin.describeTopics(List.of(TOPIC)).allTopicNames()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .get(TOPIC).partitions().size();
+    }
+
+    private long totalLag(int partitions) throws Exception {
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        Map<TopicPartition, OffsetSpec> request = new HashMap<>();
+        for (ProductPriorityLane lane : ProductPriorityLane.values()) {
+            for (int partition = 0; partition < partitions; partition++) {
+                request.put(new TopicPartition(lane.topic(), partition), OffsetSpec.latest());
+            }
+        }
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> endOffsets = admin.listOffsets(request).all()
+                .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        long total = 0;
+        for (Map.Entry<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> end : endOffsets.entrySet()) {
+            OffsetAndMetadata position = committed.get(end.getKey());
+            if (position != null) {
+                total += Math.max(0, end.getValue().offset() - position.offset());
+            }
+        }
+        return total;
+    }
+
+    private void updateMeanLatency() {
+        long count = 0;
+        double nanos = 0;
+        for (Timer timer : meterRegistry.find("product.notification.processing").timers()) {
+            count += timer.count();
+            nanos += timer.totalTime(TimeUnit.NANOSECONDS);
+        }
+        if (count > lastProcessedCount) {
+            meanLatencySeconds = (nanos - lastProcessedNanos) / (count - lastProcessedCount) / 1_000_000_000.0;
+        }
+        lastProcessedCount = count;
+        lastProcessedNanos = nanos;
+    }
+}
@@ -0,0 +1,59 @@
+package com.malbano.emailnotification.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Turns a consumed record into a {@link ProductCreatedEvent}. With lazy deserialization the consumer hands over raw
+ * bytes and they are parsed here, only for records that reach a handler; with eager deserialization the value is
+ * already an event, or null with the failure in a header.
+ */
+@Component
+public class ProductCreatedEventReader {
+
+    private static final LogAccessor logAccessor = new LogAccessor(ProductCreatedEventReader.class);
+
+    private final ObjectMapper objectMapper;
+
+    public ProductCreatedEventReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @throws DeserializationException if the value is missing or cannot be parsed
+     */
+    public ProductCreatedEvent read(ConsumerRecord<?, ?> record) {
+        Object value = record.value();
+        if (value instanceof ProductCreatedEvent event) {
+            return event;
+        }
+        if (value instanceof byte[] data) {
+            return decode(record.headers(), data);
+        }
+        DeserializationException cause = SerializationUtils.getExceptionFromHeader(record,
+                SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, logAccessor);
+        throw cause != null ? cause : new DeserializationException("Empty ProductCreatedEvent payload", null, false, null);
+    }
+
+    /**
+     * @param headers used to confirm the binary codec version, may be null
+     * @throws DeserializationException if the payload cannot be parsed
+     */
+    public ProductCreatedEvent decode(Headers headers, byte[] data) {
+        try {
+            return ProductCreatedEventBinaryCodec.isBinary(headers, data)
+                    ? ProductCreatedEventBinaryCodec.decode(data)
+                    : objectMapper.readValue(data, ProductCreatedEvent.class);
+        } catch (IOException | RuntimeException e) {
+            throw new DeserializationException("Invalid ProductCreatedEvent payload: " + e.getMessage(), data, false, e);
+        }
+    }
+}
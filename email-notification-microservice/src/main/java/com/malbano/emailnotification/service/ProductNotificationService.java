@@ -2,6 +2,15 @@ package com.malbano.emailnotification.service;
 
 import com.malbano.emailnotification.dto.ProductCreatedEvent;
 
+import java.util.List;
+
 public interface ProductNotificationService {
     void processProductCreated(ProductCreatedEvent event);
+
+    void processProductCreatedBatch(List<ProductCreatedEvent> events);
+
+    /**
+     * Sends one notification covering all the events, see {@code app.kafka.consumer.listener-mode=digest}.
+     */
+    void processProductCreatedDigest(String group, List<ProductCreatedEvent> events);
 }
@@ -0,0 +1,101 @@
+package com.malbano.emailnotification.service.impl;
+
+import com.malbano.emailnotification.dedup.ProcessedProductIdIndex;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.exceptions.BatchProcessingException;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@Primary
+@ConditionalOnProperty(name = "app.kafka.consumer.dedup.enabled", havingValue = "true")
+public class DeduplicatingProductNotificationService implements ProductNotificationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeduplicatingProductNotificationService.class);
+
+    private final ProductNotificationService delegate;
+    private final ProcessedProductIdIndex processedIds;
+    private final NotificationMetrics metrics;
+
+    public DeduplicatingProductNotificationService(@Qualifier("productNotificationServiceImpl") ProductNotificationService delegate,
+                                                   ProcessedProductIdIndex processedIds,
+                                                   NotificationMetrics metrics) {
+        this.delegate = delegate;
+        this.processedIds = processedIds;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void processProductCreated(ProductCreatedEvent event) {
+        if (processedIds.contains(event.getProductId())) {
+            skipDuplicate(event);
+            return;
+        }
+        delegate.processProductCreated(event);
+        processedIds.add(event.getProductId());
+    }
+
+    @Override
+    public void processProductCreatedBatch(List<ProductCreatedEvent> events) {
+        List<ProductCreatedEvent> fresh = new ArrayList<>(events.size());
+        int[] originalIndexes = new int[events.size()];
+        Set<String> batchIds = new HashSet<>();
+        for (int i = 0; i < events.size(); i++) {
+            ProductCreatedEvent event = events.get(i);
+            if (!batchIds.add(event.getProductId()) || processedIds.contains(event.getProductId())) {
+                skipDuplicate(event);
+                continue;
+            }
+            originalIndexes[fresh.size()] = i;
+            fresh.add(event);
+        }
+
+        try {
+            delegate.processProductCreatedBatch(fresh);
+        } catch (BatchProcessingException e) {
+            markProcessed(fresh.subList(0, e.getFailedIndex()));
+            throw new BatchProcessingException(originalIndexes[e.getFailedIndex()], e.getCause());
+        }
+        markProcessed(fresh);
+    }
+
+    @Override
+    public void processProductCreatedDigest(String group, List<ProductCreatedEvent> events) {
+        List<ProductCreatedEvent> fresh = new ArrayList<>(events.size());
+        Set<String> digestIds = new HashSet<>();
+        for (ProductCreatedEvent event : events) {
+            if (!digestIds.add(event.getProductId()) || processedIds.contains(event.getProductId())) {
+                skipDuplicate(event);
+            } else {
+                fresh.add(event);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return;
+        }
+        delegate.processProductCreatedDigest(group, fresh);
+        markProcessed(fresh);
+    }
+
+    private void markProcessed(List<ProductCreatedEvent> events) {
+        for (ProductCreatedEvent event : events) {
+            processedIds.add(event.getProductId());
+        }
+    }
+
+    private void skipDuplicate(ProductCreatedEvent event) {
+        metrics.duplicateSkipped();
+        LOGGER.debug("Skipping already processed ProductCreatedEvent: productId={}", event.getProductId());
+    }
+}
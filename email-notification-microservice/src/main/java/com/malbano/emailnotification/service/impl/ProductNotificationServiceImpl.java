@@ -1,24 +1,69 @@
 package com.malbano.emailnotification.service.impl;
 
 import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.exceptions.BatchProcessingException;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
 import com.malbano.emailnotification.service.ProductNotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
+@ConditionalOnProperty(name = "app.notification.smtp.enabled", havingValue = "false", matchIfMissing = true)
 public class ProductNotificationServiceImpl implements ProductNotificationService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProductNotificationServiceImpl.class);
 
+    private final NotificationMetrics metrics;
+
+    public ProductNotificationServiceImpl(NotificationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     public void processProductCreated(ProductCreatedEvent event) {
-        LOGGER.info("Processing product notification for: {}", event.getTitle());
+        LOGGER.debug("Processing product notification for: {}", event.getTitle());
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            LOGGER.debug("mock email enviado");
+            Thread.sleep(50);
+            success = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Processing interrupted", e);
+        } finally {
+            metrics.recordProcessing(start, success);
+        }
+    }
+
+    @Override
+    public void processProductCreatedBatch(List<ProductCreatedEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            try {
+                processProductCreated(events.get(i));
+            } catch (RuntimeException e) {
+                throw new BatchProcessingException(i, e);
+            }
+        }
+    }
+
+    @Override
+    public void processProductCreatedDigest(String group, List<ProductCreatedEvent> events) {
+        LOGGER.debug("Processing product digest for group {}: {} products", group, events.size());
+        long start = System.nanoTime();
+        boolean success = false;
         try {
-            LOGGER.info("mock email enviado");
+            LOGGER.debug("mock digest enviado");
             Thread.sleep(50);
+            success = true;
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Processing interrupted", e);
+        } finally {
+            metrics.recordProcessing(start, success);
         }
     }
-}
\ No newline at end of file
+}
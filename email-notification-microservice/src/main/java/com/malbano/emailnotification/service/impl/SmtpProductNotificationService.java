@@ -0,0 +1,153 @@
+package com.malbano.emailnotification.service.impl;
+
+import com.malbano.emailnotification.digest.NotificationDigestAggregator;
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import com.malbano.emailnotification.exceptions.BatchProcessingException;
+import com.malbano.emailnotification.exceptions.SmtpException;
+import com.malbano.emailnotification.metrics.NotificationMetrics;
+import com.malbano.emailnotification.service.ProductNotificationService;
+import com.malbano.emailnotification.smtp.SmtpConnectionPool;
+import com.malbano.emailnotification.smtp.SmtpMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Sends the product notifications through the {@link SmtpConnectionPool}. A batch goes out on a single pooled session,
+ * pipelined when the server allows it. Registered under the mock's bean name, so the deduplicating decorator (and
+ * anything else that asks for {@code productNotificationServiceImpl}) wraps it unchanged.
+ */
+@Service("productNotificationServiceImpl")
+@ConditionalOnProperty(name = "app.notification.smtp.enabled", havingValue = "true")
+public class SmtpProductNotificationService implements ProductNotificationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SmtpProductNotificationService.class);
+    private static final Base64.Encoder BODY_ENCODER = Base64.getMimeEncoder(76, new byte[]{'\r', '\n'});
+
+    private final SmtpConnectionPool pool;
+    private final NotificationMetrics metrics;
+    private final String from;
+    private final List<String> recipients;
+
+    public SmtpProductNotificationService(SmtpConnectionPool pool,
+                                          NotificationMetrics metrics,
+                                          @Value("${app.notification.smtp.from:notifications@localhost}") String from,
+                                          @Value("${app.notification.smtp.to:products@localhost}") String to) {
+        this.pool = pool;
+        this.metrics = metrics;
+        this.from = from;
+        this.recipients = Arrays.stream(to.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    @Override
+    public void processProductCreated(ProductCreatedEvent event) {
+        LOGGER.debug("Processing product notification for: {}", event.getTitle());
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            pool.send(List.of(toMessage(event)));
+            success = true;
+        } finally {
+            metrics.recordProcessing(start, success);
+        }
+    }
+
+    @Override
+    public void processProductCreatedBatch(List<ProductCreatedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<SmtpMessage> messages = new ArrayList<>(events.size());
+        for (ProductCreatedEvent event : events) {
+            messages.add(toMessage(event));
+        }
+        long start = System.nanoTime();
+        try {
+            pool.send(messages);
+            recordEach(start, events.size(), true);
+        } catch (SmtpException e) {
+            // the messages before the failed one were accepted by the server
+            recordEach(start, e.getMessageIndex(), true);
+            metrics.recordProcessing(start, false);
+            throw new BatchProcessingException(e.getMessageIndex(), e);
+        }
+    }
+
+    private void recordEach(long start, int count, boolean success) {
+        for (int i = 0; i < count; i++) {
+            metrics.recordProcessing(start, success);
+        }
+    }
+
+    @Override
+    public void processProductCreatedDigest(String group, List<ProductCreatedEvent> events) {
+        LOGGER.debug("Processing product digest for group {}: {} products", group, events.size());
+        StringBuilder body = new StringBuilder(events.size() * 80)
+                .append(events.size()).append(" novos produtos cadastrados:\r\n\r\n");
+        for (ProductCreatedEvent event : events) {
+            body.append("- ").append(event.getTitle())
+                    .append(" | Preço: ").append(event.getPrice())
+                    .append(" | Quantidade: ").append(event.getQuantity())
+                    .append(" | Id: ").append(event.getProductId()).append("\r\n");
+        }
+        String subject = events.size() + " novos produtos"
+                + (NotificationDigestAggregator.DEFAULT_GROUP.equals(group) ? "" : " (" + group + ")");
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            pool.send(List.of(message(subject, body.toString(),
+                    "digest." + events.get(0).getProductId() + "." + events.size())));
+            success = true;
+        } finally {
+            metrics.recordProcessing(start, success);
+        }
+    }
+
+    private SmtpMessage toMessage(ProductCreatedEvent event) {
+        String body = "Novo produto cadastrado: " + event.getTitle() + "\r\n"
+                + "Preço: " + event.getPrice() + "\r\n"
+                + "Quantidade: " + event.getQuantity() + "\r\n"
+                + "Id: " + event.getProductId() + "\r\n";
+        return message("Novo produto: " + event.getTitle(), body, event.getProductId() + ".product-created");
+    }
+
+    private SmtpMessage message(String subject, String body, String messageIdLocalPart) {
+        String content = "From: <" + from + ">\r\n"
+                + "To: " + String.join(", ", recipients.stream().map(r -> "<" + r + ">").toList()) + "\r\n"
+                + "Subject: " + encodeHeader(subject) + "\r\n"
+                + "Date: " + DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now()) + "\r\n"
+                + "Message-ID: <" + messageIdLocalPart + "@" + domain(from) + ">\r\n"
+                + "MIME-Version: 1.0\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Transfer-Encoding: base64\r\n"
+                + "\r\n"
+                + BODY_ENCODER.encodeToString(body.getBytes(StandardCharsets.UTF_8));
+        return new SmtpMessage(from, recipients, content);
+    }
+
+    /**
+     * RFC 2047 encoded-word for non-ASCII text; line breaks are dropped so a title cannot add headers.
+     */
+    private static String encodeHeader(String text) {
+        String singleLine = text.replaceAll("[\\r\\n]+", " ");
+        if (singleLine.chars().allMatch(c -> c >= 0x20 && c < 0x7f)) {
+            return singleLine;
+        }
+        return "=?UTF-8?B?" + Base64.getEncoder().encodeToString(singleLine.getBytes(StandardCharsets.UTF_8)) + "?=";
+    }
+
+    private static String domain(String address) {
+        int at = address.lastIndexOf('@');
+        return at >= 0 ? address.substring(at + 1) : "localhost";
+    }
+}
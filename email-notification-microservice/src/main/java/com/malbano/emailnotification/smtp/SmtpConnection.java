@@ -0,0 +1,338 @@
+package com.malbano.emailnotification.smtp;
+
+import com.malbano.emailnotification.exceptions.SmtpException;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * One authenticated SMTP session that sends any number of messages, each as its own {@code MAIL FROM} transaction.
+ * When the server advertises {@code PIPELINING}, the envelope ({@code MAIL FROM}, {@code RCPT TO}, {@code DATA}) goes
+ * out in one write, and the envelope of the next message is written together with the end of the current one, so a
+ * message costs one round trip after the {@code 354} instead of four.
+ * <p>
+ * Not thread safe: a connection is used by one sender at a time, see {@link SmtpConnectionPool}.
+ */
+public class SmtpConnection implements Closeable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final String LOCAL_NAME = localName();
+
+    private final SmtpSettings settings;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private Set<String> extensions = Set.of();
+    private boolean usable = true;
+    private long lastUsedNanos = System.nanoTime();
+
+    private SmtpConnection(SmtpSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Connects, says {@code EHLO} and, as configured, upgrades to TLS and authenticates.
+     */
+    public static SmtpConnection open(SmtpSettings settings) throws IOException {
+        SmtpConnection connection = new SmtpConnection(settings);
+        try {
+            connection.handshake();
+        } catch (IOException | RuntimeException e) {
+            connection.closeQuietly();
+            throw e;
+        }
+        return connection;
+    }
+
+    private void handshake() throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(settings.host(), settings.port()),
+                (int) settings.connectTimeout().toMillis());
+        socket.setSoTimeout((int) settings.readTimeout().toMillis());
+        bindStreams();
+        expect(readReply(), 220, "greeting");
+        ehlo();
+
+        if (settings.startTls()) {
+            if (!extensions.contains("STARTTLS")) {
+                throw new IOException("SMTP server does not offer STARTTLS");
+            }
+            expect(command("STARTTLS"), 220, "STARTTLS");
+            SSLSocket tls = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                    .createSocket(socket, settings.host(), settings.port(), true);
+            // the certificate must match the host before the credentials are sent
+            SSLParameters parameters = tls.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            tls.setSSLParameters(parameters);
+            tls.startHandshake();
+            socket = tls;
+            bindStreams();
+            ehlo();
+        }
+        if (settings.authenticate()) {
+            String credentials = "\0" + settings.username() + "\0" + settings.password();
+            expect(command("AUTH PLAIN " + Base64.getEncoder()
+                    .encodeToString(credentials.getBytes(StandardCharsets.UTF_8))), 235, "AUTH");
+        }
+    }
+
+    private void bindStreams() throws IOException {
+        in = new BufferedInputStream(socket.getInputStream());
+        out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+    }
+
+    private void ehlo() throws IOException {
+        Reply reply = command("EHLO " + LOCAL_NAME);
+        expect(reply, 250, "EHLO");
+        Set<String> offered = new HashSet<>();
+        // the first line is the server greeting, every following line an extension keyword with its parameters
+        for (int i = 1; i < reply.lines().size(); i++) {
+            offered.add(reply.lines().get(i).split(" ", 2)[0].toUpperCase(Locale.ROOT));
+        }
+        extensions = offered;
+    }
+
+    private static String localName() {
+        try {
+            return InetAddress.getLocalHost().getCanonicalHostName();
+        } catch (IOException e) {
+            return "localhost";
+        }
+    }
+
+    public boolean pipelining() {
+        return settings.pipelining() && extensions.contains("PIPELINING");
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    public long idleNanos() {
+        return System.nanoTime() - lastUsedNanos;
+    }
+
+    /**
+     * Health check for an idle connection: {@code NOOP} must be answered with {@code 250}.
+     */
+    public boolean probe() {
+        try {
+            usable = command("NOOP").code() == 250;
+            lastUsedNanos = System.nanoTime();
+        } catch (IOException e) {
+            usable = false;
+        }
+        return usable;
+    }
+
+    /**
+     * Sends the messages in order, stopping at the first failure.
+     *
+     * @throws SmtpException with the index of the message that was not accepted; the messages before it were
+     *                       delivered. {@link #isUsable()} tells whether the session can still be reused.
+     */
+    public void send(List<SmtpMessage> messages) {
+        boolean pipelining = pipelining();
+        int index = 0;
+        try {
+            if (pipelining) {
+                writeEnvelope(messages.get(0));
+                out.flush();
+            }
+            for (; index < messages.size(); index++) {
+                SmtpMessage message = messages.get(index);
+                if (pipelining) {
+                    readEnvelopeReplies(message, index);
+                } else {
+                    sendEnvelope(message, index);
+                }
+                writeContent(message.content());
+                boolean nextPipelined = pipelining && index + 1 < messages.size();
+                if (nextPipelined) {
+                    writeEnvelope(messages.get(index + 1));
+                }
+                out.flush();
+
+                Reply reply = readReply();
+                if (reply.code() != 250) {
+                    // the replies to the next envelope are still pending, the session is in an unknown state
+                    usable = !nextPipelined;
+                    throw new SmtpException(index, reply.code(), reply.text());
+                }
+                lastUsedNanos = System.nanoTime();
+            }
+        } catch (IOException e) {
+            usable = false;
+            throw new SmtpException(index, "SMTP connection to " + settings.host() + " failed", e);
+        }
+    }
+
+    private void writeEnvelope(SmtpMessage message) throws IOException {
+        writeLine("MAIL FROM:<" + message.from() + ">");
+        for (String recipient : message.recipients()) {
+            writeLine("RCPT TO:<" + recipient + ">");
+        }
+        writeLine("DATA");
+    }
+
+    private void readEnvelopeReplies(SmtpMessage message, int index) throws IOException {
+        Reply failure = null;
+        Reply mail = readReply();
+        if (mail.code() != 250) {
+            failure = mail;
+        }
+        for (int i = 0; i < message.recipients().size(); i++) {
+            Reply rcpt = readReply();
+            if (failure == null && rcpt.code() != 250 && rcpt.code() != 251) {
+                failure = rcpt;
+            }
+        }
+        Reply data = readReply();
+        if (failure == null && data.code() != 354) {
+            failure = data;
+        }
+        if (failure != null) {
+            if (data.code() == 354) {
+                // the server waits for content that must not be delivered; dropping the session aborts it
+                usable = false;
+            } else {
+                abortTransaction();
+            }
+            throw new SmtpException(index, failure.code(), failure.text());
+        }
+    }
+
+    private void sendEnvelope(SmtpMessage message, int index) throws IOException {
+        Reply reply = command("MAIL FROM:<" + message.from() + ">");
+        if (reply.code() == 250) {
+            for (String recipient : message.recipients()) {
+                reply = command("RCPT TO:<" + recipient + ">");
+                if (reply.code() != 250 && reply.code() != 251) {
+                    break;
+                }
+            }
+        }
+        if (reply.code() == 250 || reply.code() == 251) {
+            reply = command("DATA");
+            if (reply.code() == 354) {
+                return;
+            }
+        }
+        abortTransaction();
+        throw new SmtpException(index, reply.code(), reply.text());
+    }
+
+    private void abortTransaction() throws IOException {
+        usable = command("RSET").code() == 250;
+    }
+
+    private void writeContent(String content) throws IOException {
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf("\r\n", start);
+            if (end < 0) {
+                end = content.length();
+            }
+            if (content.charAt(start) == '.') {
+                out.write('.');
+            }
+            out.write(content.substring(start, end).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            start = end + 2;
+        }
+        writeLine(".");
+    }
+
+    private Reply command(String line) throws IOException {
+        writeLine(line);
+        out.flush();
+        return readReply();
+    }
+
+    private void writeLine(String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private Reply readReply() throws IOException {
+        List<String> lines = new ArrayList<>(1);
+        while (true) {
+            String line = readLine();
+            if (line.length() < 3) {
+                throw new IOException("Malformed SMTP reply: " + line);
+            }
+            lines.add(line.length() > 4 ? line.substring(4) : "");
+            if (line.length() == 3 || line.charAt(3) != '-') {
+                return new Reply(Integer.parseInt(line.substring(0, 3)), line, lines);
+            }
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("SMTP server closed the connection");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void expect(Reply reply, int code, String step) throws IOException {
+        if (reply.code() != code) {
+            throw new IOException("SMTP " + step + " failed: " + reply.text());
+        }
+    }
+
+    /**
+     * Ends the session with {@code QUIT}.
+     */
+    @Override
+    public void close() {
+        if (usable && socket != null && !socket.isClosed()) {
+            try {
+                command("QUIT");
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        usable = false;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+        }
+    }
+
+    private record Reply(int code, String text, List<String> lines) {
+    }
+}
@@ -0,0 +1,184 @@
+package com.malbano.emailnotification.smtp;
+
+import com.malbano.emailnotification.exceptions.SmtpException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * At most {@code maxSize} authenticated {@link SmtpConnection}s, reused across messages. Idle connections are kept
+ * most recently used first, so a quiet period leaves the oldest ones at the tail where maintenance closes those idle
+ * for longer than {@code maxIdleTime} (keeping {@code minIdle}) and probes the rest with {@code NOOP} every
+ * {@code validationInterval}, before the server drops them on its own idle timeout. A connection idle for longer
+ * than {@code validationInterval} is probed again when borrowed.
+ */
+public class SmtpConnectionPool implements AutoCloseable {
+
+    private final Logger log = LoggerFactory.getLogger(SmtpConnectionPool.class);
+    private final SmtpSettings settings;
+    private final int minIdle;
+    private final long validationNanos;
+    private final long maxIdleNanos;
+    private final Duration borrowTimeout;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<SmtpConnection> idle = new LinkedBlockingDeque<>();
+    private final Counter connects;
+    private final Counter discards;
+    private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "smtp-pool-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int maxSize;
+    private volatile boolean closed;
+
+    public SmtpConnectionPool(SmtpSettings settings, int maxSize, int minIdle, Duration validationInterval,
+                              Duration maxIdleTime, Duration borrowTimeout, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.validationNanos = validationInterval.toNanos();
+        this.maxIdleNanos = maxIdleTime.toNanos();
+        this.borrowTimeout = borrowTimeout;
+        this.permits = new Semaphore(maxSize, true);
+        this.connects = Counter.builder("product.notification.smtp.connects")
+                .description("SMTP sessions opened (handshake and authentication)")
+                .register(meterRegistry);
+        this.discards = Counter.builder("product.notification.smtp.discards")
+                .description("SMTP sessions closed after a failure or a failed health check")
+                .register(meterRegistry);
+        Gauge.builder("product.notification.smtp.connections", idle, LinkedBlockingDeque::size)
+                .description("SMTP sessions in the pool")
+                .tag("state", "idle")
+                .register(meterRegistry);
+        Gauge.builder("product.notification.smtp.connections", this, pool -> pool.maxSize - pool.permits.availablePermits())
+                .description("SMTP sessions in the pool")
+                .tag("state", "active")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens {@code minIdle} connections and starts the maintenance. An unreachable server is only logged, sending
+     * retries the connection.
+     */
+    public void start() {
+        topUp();
+        long period = Math.max(1, TimeUnit.NANOSECONDS.toMillis(validationNanos));
+        maintenance.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the messages on one pooled connection, in order.
+     *
+     * @throws SmtpException with the index of the first message that was not sent
+     */
+    public void send(List<SmtpMessage> messages) {
+        SmtpConnection connection = borrow();
+        try {
+            connection.send(messages);
+        } finally {
+            release(connection);
+        }
+    }
+
+    private SmtpConnection borrow() {
+        try {
+            if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SmtpException(0, "No SMTP connection available within " + borrowTimeout, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmtpException(0, "Interrupted waiting for an SMTP connection", e);
+        }
+        try {
+            SmtpConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (connection.idleNanos() < validationNanos || connection.probe()) {
+                    return connection;
+                }
+                discard(connection);
+            }
+            return connect();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e instanceof SmtpException smtp ? smtp
+                    : new SmtpException(0, "SMTP connection to " + settings.host() + " failed", e);
+        }
+    }
+
+    private void release(SmtpConnection connection) {
+        if (connection.isUsable() && !closed) {
+            idle.offerFirst(connection);
+        } else {
+            discard(connection);
+        }
+        permits.release();
+    }
+
+    private SmtpConnection connect() throws IOException {
+        SmtpConnection connection = SmtpConnection.open(settings);
+        connects.increment();
+        return connection;
+    }
+
+    private void discard(SmtpConnection connection) {
+        discards.increment();
+        connection.close();
+    }
+
+    private void maintain() {
+        try {
+            // walks the idle connections oldest first, each taken out of the deque while it is checked
+            for (int checked = idle.size(); checked > 0 && !closed; checked--) {
+                SmtpConnection connection = idle.pollLast();
+                if (connection == null) {
+                    break;
+                }
+                if (connection.idleNanos() >= maxIdleNanos && idle.size() >= minIdle) {
+                    connection.close();
+                } else if (connection.idleNanos() < validationNanos || connection.probe()) {
+                    idle.offerLast(connection);
+                } else {
+                    discard(connection);
+                }
+            }
+            topUp();
+        } catch (RuntimeException e) {
+            log.warn("SMTP pool maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    private void topUp() {
+        while (!closed && idle.size() < minIdle && permits.tryAcquire()) {
+            try {
+                idle.offerLast(connect());
+            } catch (IOException e) {
+                log.warn("Could not open SMTP connection to {}:{}: {}", settings.host(), settings.port(), e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        SmtpConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.malbano.emailnotification.smtp;
+
+import java.util.List;
+
+/**
+ * Envelope and content of one message.
+ *
+ * @param content headers and body with CRLF line endings, ASCII only (not yet dot-stuffed)
+ */
+public record SmtpMessage(String from, List<String> recipients, String content) {
+}
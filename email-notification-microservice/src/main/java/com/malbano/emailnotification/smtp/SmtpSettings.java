@@ -0,0 +1,18 @@
+package com.malbano.emailnotification.smtp;
+
+import java.time.Duration;
+
+/**
+ * Where and how {@link SmtpConnection}s connect. Credentials are optional; when present the connection authenticates
+ * with {@code AUTH PLAIN}, after {@code STARTTLS} if {@code startTls} is set.
+ *
+ * @param pipelining send the envelope commands of a message (and of the next message) without waiting for each
+ *                   reply, when the server advertises {@code PIPELINING} (RFC 2920)
+ */
+public record SmtpSettings(String host, int port, String username, String password, boolean startTls,
+                           boolean pipelining, Duration connectTimeout, Duration readTimeout) {
+
+    boolean authenticate() {
+        return username != null && !username.isBlank();
+    }
+}
@@ -0,0 +1,53 @@
+package com.malbano.emailnotification.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * {@link ProcessedProductIdIndex} periodic snapshots and ids it cannot track.
+ */
+class ProcessedProductIdIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void savesChangesPeriodicallyWithoutWaitingForShutdown() {
+        Path snapshot = directory.resolve("dedup-index.snapshot");
+        ProcessedProductIdIndex index = new ProcessedProductIdIndex(100, Duration.ofHours(1), snapshot.toString(),
+                Duration.ofMillis(100));
+        index.start();
+        try {
+            index.add("product-1");
+            index.add("product-2");
+
+            await().atMost(Duration.ofSeconds(5)).until(() -> Files.exists(snapshot));
+
+            // restored before shutdown() writes its own snapshot, as after a crash
+            ProcessedProductIdIndex restored = new ProcessedProductIdIndex(100, Duration.ofHours(1),
+                    snapshot.toString(), Duration.ofMinutes(1));
+            assertThat(restored.size()).isEqualTo(2);
+            assertThat(restored.contains("product-1")).isTrue();
+            assertThat(restored.contains("product-3")).isFalse();
+        } finally {
+            index.shutdown();
+        }
+    }
+
+    @Test
+    void ignoresEventsWithoutProductId() {
+        ProcessedProductIdIndex index = new ProcessedProductIdIndex(100, Duration.ofHours(1), "", Duration.ofMinutes(1));
+
+        index.add(null);
+
+        assertThat(index.contains(null)).isFalse();
+        assertThat(index.size()).isZero();
+    }
+}
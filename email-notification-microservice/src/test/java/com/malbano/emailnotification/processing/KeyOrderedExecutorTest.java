@@ -0,0 +1,81 @@
+package com.malbano.emailnotification.processing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * {@link KeyOrderedExecutor} ordering per key and its bounded wait for a slot.
+ */
+class KeyOrderedExecutorTest {
+
+    private final KeyOrderedExecutor executor = new KeyOrderedExecutor(2, Duration.ofMillis(50));
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void runsTasksOfAKeyInSubmissionOrder() throws InterruptedException {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int task = i;
+            executor.submit(i % 2 == 0 ? "product-1" : null, () -> {
+                if (task % 2 == 0) {
+                    order.add(task);
+                }
+            });
+        }
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> order.size() == 10);
+        assertThat(order).containsExactly(0, 2, 4, 6, 8, 10, 12, 14, 16, 18);
+    }
+
+    @Test
+    void acceptsTasksOverTheLimitAfterTheTimeoutAndReportsSaturationUntilDrained() throws InterruptedException {
+        executor.setSaturationListener(new KeyOrderedExecutor.SaturationListener() {
+            @Override
+            public void saturated() {
+                events.add("saturated");
+            }
+
+            @Override
+            public void drained() {
+                events.add("drained");
+            }
+        });
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        assertThat(executor.submit("product-1", blocked)).isTrue();
+        assertThat(executor.submit("product-2", blocked)).isTrue();
+        long started = System.nanoTime();
+        assertThat(executor.submit("product-3", blocked)).isFalse();
+        // once saturated, records already polled do not wait for a slot
+        assertThat(executor.submit("product-4", blocked)).isFalse();
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+        assertThat(events).containsExactly("saturated");
+
+        release.countDown();
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertThat(events).containsExactly("saturated", "drained"));
+        assertThat(executor.submit("product-5", () -> { })).isTrue();
+    }
+}
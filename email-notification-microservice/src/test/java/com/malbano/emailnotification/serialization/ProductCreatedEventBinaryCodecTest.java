@@ -0,0 +1,170 @@
+package com.malbano.emailnotification.serialization;
+
+import com.malbano.emailnotification.dto.ProductCreatedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link ProductCreatedEventBinaryCodec} and {@link ProductCreatedEventBinaryDeserializer} against payloads laid out
+ * the way products-microservice writes them, plus the JSON records it still sends for prices the layout cannot hold.
+ */
+class ProductCreatedEventBinaryCodecTest {
+
+    private static final String TOPIC = "product-created-events-topic";
+
+    private final ProductCreatedEventBinaryDeserializer deserializer = new ProductCreatedEventBinaryDeserializer();
+    private final JsonSerializer<ProductCreatedEvent> jsonSerializer = new JsonSerializer<>();
+
+    @BeforeEach
+    void configure() {
+        deserializer.configure(Map.of(
+                JsonDeserializer.TRUSTED_PACKAGES, "com.malbano.emailnotification.dto",
+                JsonDeserializer.USE_TYPE_INFO_HEADERS, false,
+                JsonDeserializer.VALUE_DEFAULT_TYPE, ProductCreatedEvent.class.getName()), false);
+    }
+
+    @AfterEach
+    void close() {
+        deserializer.close();
+        jsonSerializer.close();
+    }
+
+    @Test
+    void decodesEveryField() {
+        ProductCreatedEvent event = new ProductCreatedEvent("2f1c7d0e-5b7a-4c55-9f0d-7d5c2a3b9e11", "Café árabe",
+                new BigDecimal("1299.90"), 42);
+
+        Object decoded = deserializer.deserialize(TOPIC, binaryHeaders(), encode(event));
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(event);
+    }
+
+    @Test
+    void decodesAbsentFields() {
+        ProductCreatedEvent event = new ProductCreatedEvent("id-1", null, null, null);
+
+        ProductCreatedEvent decoded = (ProductCreatedEvent) deserializer.deserialize(TOPIC, binaryHeaders(), encode(event));
+
+        assertThat(decoded.getProductId()).isEqualTo("id-1");
+        assertThat(decoded.getTitle()).isNull();
+        assertThat(decoded.getPrice()).isNull();
+        assertThat(decoded.getQuantity()).isNull();
+    }
+
+    @Test
+    void binaryRecordsAreSmallerThanJson() {
+        ProductCreatedEvent event = new ProductCreatedEvent("2f1c7d0e-5b7a-4c55-9f0d-7d5c2a3b9e11", "Notebook",
+                new BigDecimal("4599.00"), 10);
+
+        byte[] binary = encode(event);
+        byte[] json = jsonSerializer.serialize(TOPIC, new RecordHeaders(), event);
+
+        // header(3) + productId(1 + 36) + title(1 + 8) + price(8 + 2) + quantity(4), no field names or quoting
+        assertThat(binary).hasSize(63);
+        assertThat(binary.length).isLessThan(json.length * 2 / 3);
+    }
+
+    @Test
+    void readsJsonRecordsForPricesThatDoNotFit() {
+        ProductCreatedEvent event = new ProductCreatedEvent("id-1", "Mouse", new BigDecimal("1e40").add(BigDecimal.ONE), 1);
+        byte[] json = jsonSerializer.serialize(TOPIC, new RecordHeaders(), event);
+
+        Object decoded = deserializer.deserialize(TOPIC, new RecordHeaders(), json);
+
+        assertThat(ProductCreatedEventBinaryCodec.isBinary(new RecordHeaders(), json)).isFalse();
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(event);
+    }
+
+    @Test
+    void treatsACodecHeaderWithoutValueAsNotBinary() {
+        byte[] data = encode(new ProductCreatedEvent("id-1", "Mouse", BigDecimal.TEN, 1));
+        Headers headers = new RecordHeaders().add(ProductCreatedEventBinaryCodec.CODEC_HEADER, null);
+
+        assertThat(ProductCreatedEventBinaryCodec.isBinary(headers, data)).isFalse();
+    }
+
+    @Test
+    void rejectsTruncatedRecords() {
+        byte[] data = encode(new ProductCreatedEvent("id-1", "Mouse", BigDecimal.TEN, 1));
+
+        for (int length = 2; length < data.length; length++) {
+            byte[] truncated = Arrays.copyOf(data, length);
+            assertThatThrownBy(() -> ProductCreatedEventBinaryCodec.decode(truncated))
+                    .isInstanceOf(SerializationException.class);
+        }
+    }
+
+    @Test
+    void rejectsMalformedStringLengths() {
+        byte[] negativeLength = {ProductCreatedEventBinaryCodec.MAGIC, ProductCreatedEventBinaryCodec.VERSION, 1,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        byte[] tooLong = {ProductCreatedEventBinaryCodec.MAGIC, ProductCreatedEventBinaryCodec.VERSION, 1,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x80};
+
+        assertThatThrownBy(() -> ProductCreatedEventBinaryCodec.decode(negativeLength))
+                .isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> ProductCreatedEventBinaryCodec.decode(tooLong))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    private static Headers binaryHeaders() {
+        return new RecordHeaders().add(ProductCreatedEventBinaryCodec.CODEC_HEADER,
+                new byte[]{ProductCreatedEventBinaryCodec.VERSION});
+    }
+
+    /**
+     * Writes the version 1 layout the same way products-microservice does; this module only reads it.
+     */
+    private static byte[] encode(ProductCreatedEvent event) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int flags = (event.getProductId() != null ? 1 : 0)
+                | (event.getTitle() != null ? 1 << 1 : 0)
+                | (event.getPrice() != null ? 1 << 2 : 0)
+                | (event.getQuantity() != null ? 1 << 3 : 0);
+        out.write(ProductCreatedEventBinaryCodec.MAGIC);
+        out.write(ProductCreatedEventBinaryCodec.VERSION);
+        out.write(flags);
+        writeString(out, event.getProductId());
+        writeString(out, event.getTitle());
+        if (event.getPrice() != null) {
+            out.writeBytes(ByteBuffer.allocate(Long.BYTES + Short.BYTES)
+                    .putLong(event.getPrice().unscaledValue().longValueExact())
+                    .putShort((short) event.getPrice().scale())
+                    .array());
+        }
+        if (event.getQuantity() != null) {
+            out.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(event.getQuantity()).array());
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        while ((length & ~0x7F) != 0) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.writeBytes(bytes);
+    }
+}
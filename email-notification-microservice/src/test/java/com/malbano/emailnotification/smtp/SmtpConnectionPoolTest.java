@@ -0,0 +1,250 @@
+package com.malbano.emailnotification.smtp;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * {@link SmtpConnection} and {@link SmtpConnectionPool} against an in-process GreenMail server, reached through a
+ * proxy that adds {@code PIPELINING} to the {@code EHLO} reply (GreenMail reads pipelined commands but does not
+ * advertise the extension) and can drop every open session.
+ */
+class SmtpConnectionPoolTest {
+
+    private static final String USER = "notifications";
+    private static final String PASSWORD = "secret";
+
+    private GreenMail greenMail;
+    private SmtpProxy proxy;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        greenMail = new GreenMail(new ServerSetup(0, "127.0.0.1", ServerSetup.PROTOCOL_SMTP).dynamicPort());
+        greenMail.start();
+        greenMail.setUser(USER + "@localhost", USER, PASSWORD);
+        proxy = new SmtpProxy(greenMail.getSmtp().getPort());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void stopServer() {
+        proxy.close();
+        greenMail.stop();
+    }
+
+    @Test
+    void pipelinesTheEnvelopesOfABatchInOrder() throws Exception {
+        try (SmtpConnection connection = SmtpConnection.open(settings(true))) {
+            assertThat(connection.pipelining()).isTrue();
+
+            connection.send(List.of(message(1), message(2), message(3)));
+
+            assertThat(connection.isUsable()).isTrue();
+        }
+        assertThat(subjects()).containsExactly("Produto 1", "Produto 2", "Produto 3");
+        // MAIL FROM, RCPT TO and DATA written together instead of one command per round trip
+        assertThat(proxy.clientChunks()).anyMatch(chunk -> chunk.contains("MAIL FROM") && chunk.contains("DATA"));
+    }
+
+    @Test
+    void sendsOneCommandAtATimeWhenPipeliningIsOff() throws Exception {
+        try (SmtpConnection connection = SmtpConnection.open(settings(false))) {
+            assertThat(connection.pipelining()).isFalse();
+
+            connection.send(List.of(message(1), message(2)));
+        }
+        assertThat(subjects()).containsExactly("Produto 1", "Produto 2");
+        assertThat(proxy.clientChunks()).noneMatch(chunk -> chunk.contains("MAIL FROM") && chunk.contains("DATA"));
+    }
+
+    @Test
+    void reusesPooledSessions() throws Exception {
+        try (SmtpConnectionPool pool = pool(0, Duration.ofSeconds(30))) {
+            pool.start();
+            for (int i = 1; i <= 20; i++) {
+                pool.send(List.of(message(i)));
+            }
+        }
+        assertThat(greenMail.getReceivedMessages()).hasSize(20);
+        assertThat(meterRegistry.get("product.notification.smtp.connects").counter().count()).isEqualTo(1);
+        assertThat(proxy.sessions()).isEqualTo(1);
+    }
+
+    @Test
+    void replacesIdleSessionsThatFailTheHealthCheck() throws Exception {
+        try (SmtpConnectionPool pool = pool(1, Duration.ofMillis(100))) {
+            pool.start();
+            assertThat(meterRegistry.get("product.notification.smtp.connects").counter().count()).isEqualTo(1);
+
+            proxy.dropSessions();
+
+            // maintenance probes the idle session with NOOP, discards it and opens a new one to keep minIdle
+            await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> {
+                assertThat(meterRegistry.get("product.notification.smtp.discards").counter().count()).isEqualTo(1);
+                assertThat(meterRegistry.get("product.notification.smtp.connects").counter().count()).isEqualTo(2);
+            });
+            pool.send(List.of(message(1)));
+        }
+        assertThat(subjects()).containsExactly("Produto 1");
+    }
+
+    private SmtpConnectionPool pool(int minIdle, Duration validationInterval) {
+        return new SmtpConnectionPool(settings(true), 1, minIdle, validationInterval, Duration.ofMinutes(5),
+                Duration.ofSeconds(5), meterRegistry);
+    }
+
+    private SmtpSettings settings(boolean pipelining) {
+        return new SmtpSettings("127.0.0.1", proxy.port(), USER, PASSWORD, false, pipelining,
+                Duration.ofSeconds(5), Duration.ofSeconds(5));
+    }
+
+    private static SmtpMessage message(int i) {
+        String content = "From: " + USER + "@localhost\r\n"
+                + "To: products@localhost\r\n"
+                + "Subject: Produto " + i + "\r\n"
+                + "\r\n"
+                + "Novo produto cadastrado: Produto " + i + "\r\n";
+        return new SmtpMessage(USER + "@localhost", List.of("products@localhost"), content);
+    }
+
+    private List<String> subjects() throws Exception {
+        List<String> subjects = new ArrayList<>();
+        for (MimeMessage message : greenMail.getReceivedMessages()) {
+            subjects.add(message.getSubject());
+        }
+        return subjects;
+    }
+
+    /**
+     * Forwards every client connection to GreenMail and keeps what the client wrote, one entry per read.
+     */
+    private static final class SmtpProxy implements AutoCloseable {
+
+        private static final byte[] EHLO_REPLY_PREFIX = "250-".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] PIPELINING = "250-PIPELINING\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        private final ServerSocket serverSocket;
+        private final int targetPort;
+        private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+        private final List<String> clientChunks = new CopyOnWriteArrayList<>();
+        private volatile int sessions;
+
+        SmtpProxy(int targetPort) throws IOException {
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.targetPort = targetPort;
+            threads.submit(this::accept);
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        int sessions() {
+            return sessions;
+        }
+
+        List<String> clientChunks() {
+            return clientChunks;
+        }
+
+        void dropSessions() throws IOException {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+
+        private Void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    Socket server = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                    sockets.add(client);
+                    sockets.add(server);
+                    sessions++;
+                    threads.submit(() -> pump(client, server, false));
+                    threads.submit(() -> pump(server, client, true));
+                } catch (IOException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private Void pump(Socket from, Socket to, boolean fromServer) throws IOException {
+            try (from; to) {
+                InputStream in = from.getInputStream();
+                OutputStream out = to.getOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    byte[] chunk = Arrays.copyOf(buffer, read);
+                    if (fromServer) {
+                        chunk = injectPipelining(chunk);
+                    } else {
+                        clientChunks.add(new String(chunk, StandardCharsets.US_ASCII));
+                    }
+                    out.write(chunk);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // the other side or dropSessions closed the session
+            }
+            return null;
+        }
+
+        /**
+         * Adds {@code PIPELINING} after the first line of a multi-line {@code 250} reply, which only {@code EHLO}
+         * sends here.
+         */
+        private static byte[] injectPipelining(byte[] chunk) {
+            if (chunk.length < 4 || !Arrays.equals(chunk, 0, 4, EHLO_REPLY_PREFIX, 0, 4)) {
+                return chunk;
+            }
+            int lineEnd = 0;
+            while (lineEnd < chunk.length && chunk[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            byte[] injected = new byte[chunk.length + PIPELINING.length];
+            System.arraycopy(chunk, 0, injected, 0, lineEnd + 1);
+            System.arraycopy(PIPELINING, 0, injected, lineEnd + 1, PIPELINING.length);
+            System.arraycopy(chunk, lineEnd + 1, injected, lineEnd + 1 + PIPELINING.length, chunk.length - lineEnd - 1);
+            return injected;
+        }
+
+        @Override
+        public void close() {
+            try {
+                serverSocket.close();
+                dropSessions();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+            threads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.malbano.products.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AIMD limit on unacknowledged async sends. Every fast ack while the limit is at least half used grows it by
+ * {@code 1/limit} (about +1 per round trip); a failed or slow ack (above {@code latency-threshold-ms}) multiplies it
+ * by {@code backoff-ratio}, at most once per observed ack latency so one congested window only counts once.
+ * Acquiring never blocks: over the limit the caller is expected to shed the request.
+ */
+@Component
+public class AdaptiveSendLimiter {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final Counter rejected;
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private long lastDecreaseNanos;
+
+    public AdaptiveSendLimiter(MeterRegistry registry,
+                               @Value("${app.products.async.admission.enabled:true}") boolean enabled,
+                               @Value("${app.products.async.admission.initial-limit:1000}") int initialLimit,
+                               @Value("${app.products.async.admission.min-limit:50}") int minLimit,
+                               @Value("${app.products.async.admission.max-limit:10000}") int maxLimit,
+                               @Value("${app.products.async.admission.latency-threshold-ms:250}") long latencyThresholdMs,
+                               @Value("${app.products.async.admission.backoff-ratio:0.9}") double backoffRatio) {
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.backoffRatio = backoffRatio;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+        // System.nanoTime() has an arbitrary origin, possibly negative; every send starts after this point, so the
+        // first slow ack still decreases the limit
+        this.lastDecreaseNanos = System.nanoTime();
+
+        Gauge.builder("product.send.admission.inflight", inFlight, AtomicInteger::get)
+                .description("Async product sends waiting for a broker acknowledgement")
+                .register(registry);
+        Gauge.builder("product.send.admission.limit", this, limiter -> limiter.limit)
+                .description("Current adaptive limit of unacknowledged async sends")
+                .register(registry);
+        this.rejected = Counter.builder("product.send.admission.rejected")
+                .description("Async product requests shed because the in-flight limit was reached")
+                .register(registry);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (enabled && current >= limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long startNanos, boolean success) {
+        long now = System.nanoTime();
+        long latency = now - startNanos;
+        int used = inFlight.getAndDecrement();
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!success || latency > latencyThresholdNanos) {
+                if (now - lastDecreaseNanos >= latency) {
+                    estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+                    lastDecreaseNanos = now;
+                }
+            } else if (used * 2 >= limit) {
+                estimatedLimit = Math.min(maxLimit, estimatedLimit + 1.0 / estimatedLimit);
+            }
+            limit = (int) estimatedLimit;
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int limit() {
+        return limit;
+    }
+}
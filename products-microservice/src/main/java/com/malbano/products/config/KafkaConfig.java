@@ -1,23 +1,49 @@
 package com.malbano.products.config;
 
 import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.serialization.ProductCreatedEventBinarySerializer;
+import com.malbano.products.util.LogSuccessfulSendUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.CompositeProducerListener;
+import org.springframework.kafka.support.LoggingProducerListener;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
+@ImportRuntimeHints(ProductEventRuntimeHints.class)
 public class KafkaConfig {
 
     public static final String PRODUCT_CREATED_EVENTS_TOPIC = "product-created-events-topic";
+    public static final String HIGH_PRIORITY_PRODUCT_CREATED_EVENTS_TOPIC = "product-created-events-high-topic";
+    public static final String LOW_PRIORITY_PRODUCT_CREATED_EVENTS_TOPIC = "product-created-events-low-topic";
+    /**
+     * Every priority lane, normal (the original topic) first.
+     */
+    public static final List<String> PRODUCT_CREATED_EVENTS_TOPICS = List.of(PRODUCT_CREATED_EVENTS_TOPIC,
+            HIGH_PRIORITY_PRODUCT_CREATED_EVENTS_TOPIC, LOW_PRIORITY_PRODUCT_CREATED_EVENTS_TOPIC);
+    public static final String PRODUCT_READ_MODEL_CHANGELOG_TOPIC = "product-read-model-changelog";
+    public static final String BINARY_CODEC = "binary";
+
+    @Autowired
+    private Environment environment;
 
     @Value("${spring.kafka.producer.bootstrap-servers}")
     private String bootstrapServers;
@@ -28,46 +54,115 @@ public class KafkaConfig {
     @Value("${spring.kafka.producer.value-serializer}")
     private String valueSerializer;
 
+    @Value("${app.kafka.product-event.codec:json}")
+    private String productEventCodec;
+
     @Value("${spring.kafka.producer.acks}")
     private String acks;
 
     @Value("${spring.kafka.producer.properties.delivery.timeout.ms}")
     private Integer deliveryTimeout;
 
-    @Value("${spring.kafka.producer.properties.linger.ms}")
-    private Integer linger;
-
     @Value("${spring.kafka.producer.properties.request.timeout.ms}")
     private Integer requestTimeout;
 
-    @Bean
-    public Map<String, Object> producerConfigs() {
+    public Map<String, Object> producerConfigs(ProducerProfile profile) {
         Map<String, Object> config = new HashMap<>();
         config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, keySerializer);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, valueSerializer);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, BINARY_CODEC.equals(productEventCodec)
+                ? ProductCreatedEventBinarySerializer.class
+                : valueSerializer);
         config.put(ProducerConfig.ACKS_CONFIG, acks);
         config.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, deliveryTimeout);
-        config.put(ProducerConfig.LINGER_MS_CONFIG, linger);
         config.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, requestTimeout);
+        config.putAll(profile.producerConfig(environment));
         return config;
     }
 
     @Bean
-    public ProducerFactory<String, ProductCreatedEvent> producerFactory() {
-        return new DefaultKafkaProducerFactory<>(producerConfigs());
+    @Primary
+    public ProducerFactory<String, ProductCreatedEvent> producerFactory(MeterRegistry meterRegistry) {
+        return profileProducerFactory(ProducerProfile.LOW_LATENCY, meterRegistry);
+    }
+
+    @Bean
+    public ProducerFactory<String, ProductCreatedEvent> highThroughputProducerFactory(MeterRegistry meterRegistry) {
+        return profileProducerFactory(ProducerProfile.HIGH_THROUGHPUT, meterRegistry);
+    }
+
+    private ProducerFactory<String, ProductCreatedEvent> profileProducerFactory(ProducerProfile profile,
+                                                                               MeterRegistry meterRegistry) {
+        DefaultKafkaProducerFactory<String, ProductCreatedEvent> factory =
+                new DefaultKafkaProducerFactory<>(producerConfigs(profile));
+        factory.setBeanName(profile.profileName());
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
+    }
+
+    @Bean
+    @Primary
+    public KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate(
+            @Qualifier("producerFactory") ProducerFactory<String, ProductCreatedEvent> producerFactory,
+            LogSuccessfulSendUtil logUtil) {
+        return productTemplate(producerFactory, logUtil);
+    }
+
+    @Bean
+    public KafkaTemplate<String, ProductCreatedEvent> highThroughputKafkaTemplate(
+            @Qualifier("highThroughputProducerFactory") ProducerFactory<String, ProductCreatedEvent> producerFactory,
+            LogSuccessfulSendUtil logUtil) {
+        return productTemplate(producerFactory, logUtil);
+    }
+
+    private static KafkaTemplate<String, ProductCreatedEvent> productTemplate(
+            ProducerFactory<String, ProductCreatedEvent> producerFactory, LogSuccessfulSendUtil logUtil) {
+        KafkaTemplate<String, ProductCreatedEvent> template = new KafkaTemplate<>(producerFactory);
+        // failed sends keep their full log line and are counted per partition in the hot path summary
+        template.setProducerListener(new CompositeProducerListener<>(new LoggingProducerListener<>(), logUtil));
+        return template;
     }
 
     @Bean
-    public KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    public ProducerProfiles producerProfiles(
+            @Qualifier("kafkaTemplate") KafkaTemplate<String, ProductCreatedEvent> lowLatencyTemplate,
+            @Qualifier("highThroughputKafkaTemplate") KafkaTemplate<String, ProductCreatedEvent> highThroughputTemplate) {
+        return new ProducerProfiles(Map.of(
+                ProducerProfile.LOW_LATENCY, lowLatencyTemplate,
+                ProducerProfile.HIGH_THROUGHPUT, highThroughputTemplate));
     }
 
     @Bean
     public NewTopic createTopic() {
-        return TopicBuilder.name(PRODUCT_CREATED_EVENTS_TOPIC)
+        return productEventsTopic(PRODUCT_CREATED_EVENTS_TOPIC);
+    }
+
+    @Bean
+    public NewTopic createHighPriorityTopic() {
+        return productEventsTopic(HIGH_PRIORITY_PRODUCT_CREATED_EVENTS_TOPIC);
+    }
+
+    @Bean
+    public NewTopic createLowPriorityTopic() {
+        return productEventsTopic(LOW_PRIORITY_PRODUCT_CREATED_EVENTS_TOPIC);
+    }
+
+    private static NewTopic productEventsTopic(String name) {
+        return TopicBuilder.name(name)
+                .partitions(3)
+                .replicas(3)
+                .configs(Map.of("min.insync.replicas", "2"))
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.products.read-model.enabled", havingValue = "true")
+    @ConditionalOnProperty(name = "app.products.read-model.changelog.enabled", havingValue = "true")
+    public NewTopic createReadModelChangelogTopic() {
+        return TopicBuilder.name(PRODUCT_READ_MODEL_CHANGELOG_TOPIC)
                 .partitions(3)
                 .replicas(3)
+                .compact()
                 .configs(Map.of("min.insync.replicas", "2"))
                 .build();
     }
@@ -0,0 +1,54 @@
+package com.malbano.products.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.core.env.PropertyResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named producer tunings. Each profile has its own {@code KafkaTemplate}; the values below are defaults that can be
+ * overridden with {@code app.kafka.producer.profiles.<name>.linger-ms|batch-size|compression-type|buffer-memory}.
+ */
+public enum ProducerProfile {
+
+    LOW_LATENCY("low-latency", 0, 16384, "none", 33554432L),
+    HIGH_THROUGHPUT("high-throughput", 20, 262144, "lz4", 67108864L);
+
+    private final String profileName;
+    private final int lingerMs;
+    private final int batchSize;
+    private final String compressionType;
+    private final long bufferMemory;
+
+    ProducerProfile(String profileName, int lingerMs, int batchSize, String compressionType, long bufferMemory) {
+        this.profileName = profileName;
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compressionType = compressionType;
+        this.bufferMemory = bufferMemory;
+    }
+
+    public String profileName() {
+        return profileName;
+    }
+
+    public Map<String, Object> producerConfig(PropertyResolver properties) {
+        String prefix = "app.kafka.producer.profiles." + profileName + ".";
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.LINGER_MS_CONFIG, properties.getProperty(prefix + "linger-ms", Integer.class, lingerMs));
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, properties.getProperty(prefix + "batch-size", Integer.class, batchSize));
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, properties.getProperty(prefix + "compression-type", compressionType));
+        config.put(ProducerConfig.BUFFER_MEMORY_CONFIG, properties.getProperty(prefix + "buffer-memory", Long.class, bufferMemory));
+        return config;
+    }
+
+    public static ProducerProfile fromName(String name) {
+        for (ProducerProfile profile : values()) {
+            if (profile.profileName.equals(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown producer profile: " + name);
+    }
+}
@@ -0,0 +1,20 @@
+package com.malbano.products.config;
+
+import com.malbano.products.dto.ProductCreatedEvent;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class ProducerProfiles {
+
+    private final Map<ProducerProfile, KafkaTemplate<String, ProductCreatedEvent>> templates;
+
+    public ProducerProfiles(Map<ProducerProfile, KafkaTemplate<String, ProductCreatedEvent>> templates) {
+        this.templates = new EnumMap<>(templates);
+    }
+
+    public KafkaTemplate<String, ProductCreatedEvent> template(String profileName) {
+        return templates.get(ProducerProfile.fromName(profileName));
+    }
+}
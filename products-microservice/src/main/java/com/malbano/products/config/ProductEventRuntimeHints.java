@@ -0,0 +1,25 @@
+package com.malbano.products.config;
+
+import com.malbano.products.dto.CreateProductRequest;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.serialization.ProductCreatedEventBinarySerializer;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection the native image cannot see on its own: the Kafka client instantiates the value serializer from its class
+ * name, {@link ProductCreatedEvent} is written by Jackson to Kafka and to the read model, and the NDJSON batch endpoint
+ * reads {@link CreateProductRequest} through an {@code ObjectReader} instead of {@code @RequestBody}.
+ */
+class ProductEventRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.reflection().registerType(ProductCreatedEventBinarySerializer.class,
+                MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                ProductCreatedEvent.class, CreateProductRequest.class);
+    }
+}
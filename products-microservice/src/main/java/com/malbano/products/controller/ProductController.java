@@ -1,30 +1,64 @@
 package com.malbano.products.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.malbano.products.dto.BatchProductResult;
 import com.malbano.products.dto.CreateProductRequest;
+import com.malbano.products.dto.DeliveryStatus;
+import com.malbano.products.dto.ProductPageResponse;
+import com.malbano.products.dto.ProductResponse;
+import com.malbano.products.exceptions.ProductAdmissionRejectedException;
+import com.malbano.products.exceptions.ProductDurabilityPendingException;
+import com.malbano.products.exceptions.ProductNotFoundException;
+import com.malbano.products.exceptions.ProductQueryUnavailableException;
+import com.malbano.products.service.NonBlockingProductService;
+import com.malbano.products.service.ProductBatchService;
+import com.malbano.products.service.ProductQueryService;
 import com.malbano.products.service.ProductService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/products")
 public class ProductController {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProductController.class);
+    private static final String READ_MODEL_LAG_HEADER = "X-Read-Model-Lag";
 
     private final ProductService syncProductService;
     private final ProductService asyncProductService;
+    private final NonBlockingProductService nonBlockingProductService;
+    private final ProductBatchService batchProductService;
+    private final ProductQueryService productQueryService;
+    private final ObjectMapper objectMapper;
 
     public ProductController(@Qualifier("syncProductService") ProductService syncProductService,
-                             @Qualifier("asyncProductService") ProductService asyncProductService) {
+                             @Qualifier("asyncProductService") ProductService asyncProductService,
+                             NonBlockingProductService nonBlockingProductService,
+                             ProductBatchService batchProductService,
+                             ProductQueryService productQueryService,
+                             ObjectMapper objectMapper) {
         this.syncProductService = syncProductService;
         this.asyncProductService = asyncProductService;
+        this.nonBlockingProductService = nonBlockingProductService;
+        this.batchProductService = batchProductService;
+        this.productQueryService = productQueryService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/sync")
@@ -40,15 +74,72 @@ public class ProductController {
         }
     }
 
+    @PostMapping("/sync/non-blocking")
+    public CompletableFuture<ResponseEntity<Object>> createProductSyncNonBlocking(@RequestBody CreateProductRequest request) {
+        return nonBlockingProductService.createProduct(request)
+                .thenApply(productId -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(productId));
+    }
+
     @PostMapping("/async")
     public ResponseEntity<Object> createProductAsync(@RequestBody CreateProductRequest request){
         try {
             String productId = asyncProductService.createProduct(request);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(productId);
+        } catch (ProductDurabilityPendingException e) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(e.getProductId());
+        } catch (ProductAdmissionRejectedException e) {
+            throw e;
         } catch (Exception e) {
             LOGGER.error("Error creating product asynchronously: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to create product asynchronously", e);
         }
     }
+
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Object> createProductsBatch(InputStream body) {
+        try (MappingIterator<CreateProductRequest> requests =
+                     objectMapper.readerFor(CreateProductRequest.class).readValues(body)) {
+            List<BatchProductResult> results = batchProductService.createProducts(requests);
+            boolean allSent = results.stream().allMatch(result -> result.getStatus() == DeliveryStatus.SENT);
+            return ResponseEntity.status(allSent ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                    .body(results);
+        } catch (Exception e) {
+            LOGGER.error("Error creating product batch: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to create product batch", e);
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Object> getProduct(@PathVariable("id") String productId) {
+        try {
+            ProductResponse product = productQueryService.findProduct(productId);
+            return ResponseEntity.ok()
+                    .header(READ_MODEL_LAG_HEADER, String.valueOf(productQueryService.lag()))
+                    .body(product);
+        } catch (ProductNotFoundException | ProductQueryUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.error("Error reading product {}: {}", productId, e.getMessage(), e);
+            throw new RuntimeException("Failed to read product", e);
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<Object> getProducts(@RequestParam(defaultValue = "0") int page,
+                                              @RequestParam(defaultValue = "20") int size) {
+        try {
+            ProductPageResponse products = productQueryService.findProducts(page, size);
+            return ResponseEntity.ok()
+                    .header(READ_MODEL_LAG_HEADER, String.valueOf(products.getLag()))
+                    .body(products);
+        } catch (ProductQueryUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.error("Error reading products page {}: {}", page, e.getMessage(), e);
+            throw new RuntimeException("Failed to read products", e);
+        }
+    }
 }
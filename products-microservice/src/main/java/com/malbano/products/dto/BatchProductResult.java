@@ -0,0 +1,41 @@
+package com.malbano.products.dto;
+
+public class BatchProductResult {
+
+    private String productId;
+    private DeliveryStatus status;
+    private String error;
+
+    public BatchProductResult() {
+    }
+
+    public BatchProductResult(String productId, DeliveryStatus status, String error) {
+        this.productId = productId;
+        this.status = status;
+        this.error = error;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+
+    public DeliveryStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(DeliveryStatus status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -6,6 +6,7 @@ public class CreateProductRequest {
     private String title;
     private BigDecimal price;
     private Integer quantity;
+    private ProductPriority priority;
 
     public String getTitle() {
         return title;
@@ -30,4 +31,12 @@ public class CreateProductRequest {
     public void setQuantity(Integer quantity) {
         this.quantity = quantity;
     }
+
+    public ProductPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(ProductPriority priority) {
+        this.priority = priority;
+    }
 }
@@ -0,0 +1,7 @@
+package com.malbano.products.dto;
+
+public enum DeliveryStatus {
+    SENT,
+    FAILED,
+    TIMEOUT
+}
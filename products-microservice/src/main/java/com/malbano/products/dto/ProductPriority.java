@@ -0,0 +1,12 @@
+package com.malbano.products.dto;
+
+/**
+ * Notification lane of a product. Each lane has its own topic and the email service drains the higher lanes first, so
+ * a bulk import sent as {@code LOW} does not delay the {@code HIGH} products queued behind it. Requests without a
+ * priority are {@code NORMAL}, which keeps the original topic.
+ */
+public enum ProductPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
@@ -1,5 +1,6 @@
 package com.malbano.products.exceptions;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -19,4 +20,56 @@ public class GlobalExceptionHandler {
         );
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorMessage);
     }
+
+    @ExceptionHandler(ProductPublishTimeoutException.class)
+    public ResponseEntity<ErrorMessage> handlePublishTimeoutException(ProductPublishTimeoutException e) {
+        ErrorMessage errorMessage = new ErrorMessage(
+                LocalDateTime.now(),
+                e.getMessage(),
+                "/products"
+        );
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(errorMessage);
+    }
+
+    @ExceptionHandler(ProductPublishUnavailableException.class)
+    public ResponseEntity<ErrorMessage> handlePublishUnavailableException(ProductPublishUnavailableException e) {
+        ErrorMessage errorMessage = new ErrorMessage(
+                LocalDateTime.now(),
+                e.getMessage(),
+                "/products"
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorMessage);
+    }
+
+    @ExceptionHandler(ProductAdmissionRejectedException.class)
+    public ResponseEntity<ErrorMessage> handleAdmissionRejectedException(ProductAdmissionRejectedException e) {
+        ErrorMessage errorMessage = new ErrorMessage(
+                LocalDateTime.now(),
+                e.getMessage(),
+                "/products"
+        );
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorMessage);
+    }
+
+    @ExceptionHandler(ProductQueryUnavailableException.class)
+    public ResponseEntity<ErrorMessage> handleQueryUnavailableException(ProductQueryUnavailableException e) {
+        ErrorMessage errorMessage = new ErrorMessage(
+                LocalDateTime.now(),
+                e.getMessage(),
+                "/products"
+        );
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorMessage);
+    }
+
+    @ExceptionHandler(ProductNotFoundException.class)
+    public ResponseEntity<ErrorMessage> handleProductNotFoundException(ProductNotFoundException e) {
+        ErrorMessage errorMessage = new ErrorMessage(
+                LocalDateTime.now(),
+                e.getMessage(),
+                "/products"
+        );
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorMessage);
+    }
 }
@@ -0,0 +1,15 @@
+package com.malbano.products.exceptions;
+
+public class ProductAdmissionRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ProductAdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
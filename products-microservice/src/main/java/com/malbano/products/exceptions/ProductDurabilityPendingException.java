@@ -0,0 +1,19 @@
+package com.malbano.products.exceptions;
+
+/**
+ * The product event was appended to the write-ahead log, but its fsync did not finish in time. It is still relayed
+ * once it reaches the disk, so the request must not be retried with a new product.
+ */
+public class ProductDurabilityPendingException extends RuntimeException {
+
+    private final String productId;
+
+    public ProductDurabilityPendingException(String message, String productId) {
+        super(message);
+        this.productId = productId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,8 @@
+package com.malbano.products.exceptions;
+
+public class ProductPublishTimeoutException extends RuntimeException {
+
+    public ProductPublishTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
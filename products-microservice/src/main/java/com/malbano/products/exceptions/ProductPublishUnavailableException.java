@@ -0,0 +1,8 @@
+package com.malbano.products.exceptions;
+
+public class ProductPublishUnavailableException extends RuntimeException {
+
+    public ProductPublishUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,8 @@
+package com.malbano.products.exceptions;
+
+public class ProductQueryUnavailableException extends RuntimeException {
+
+    public ProductQueryUnavailableException(String message) {
+        super(message);
+    }
+}
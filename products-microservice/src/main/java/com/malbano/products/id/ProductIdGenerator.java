@@ -0,0 +1,5 @@
+package com.malbano.products.id;
+
+public interface ProductIdGenerator {
+    String nextId();
+}
@@ -0,0 +1,17 @@
+package com.malbano.products.id.impl;
+
+import com.malbano.products.id.ProductIdGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+@Component
+@ConditionalOnProperty(name = "app.products.id-generator", havingValue = "random-uuid")
+public class RandomUuidProductIdGenerator implements ProductIdGenerator {
+
+    @Override
+    public String nextId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.malbano.products.id.impl;
+
+import com.malbano.products.id.ProductIdGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RFC 9562 UUIDv7: 48-bit Unix milliseconds, then a 12-bit counter in {@code rand_a} and 62 random bits in
+ * {@code rand_b}. The timestamp and counter share one {@link AtomicLong} advanced by CAS, so ids from this node are
+ * strictly increasing even when the clock stalls or steps back; a counter overflow borrows the next millisecond.
+ * The counter restarts at a random value below 2048 each millisecond and the random bits come from
+ * {@link ThreadLocalRandom}, so ids are unique across nodes but not unguessable.
+ */
+@Component
+@ConditionalOnProperty(name = "app.products.id-generator", havingValue = "uuid-v7", matchIfMissing = true)
+public class UuidV7ProductIdGenerator implements ProductIdGenerator {
+
+    private static final int COUNTER_BITS = 12;
+    private static final long VERSION = 0x7000L;
+    private static final long VARIANT = 0x8000000000000000L;
+
+    private final AtomicLong lastTimestampAndCounter = new AtomicLong();
+
+    @Override
+    public String nextId() {
+        return nextUuid().toString();
+    }
+
+    public UUID nextUuid() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long timestampAndCounter = nextTimestampAndCounter(random);
+        long mostSignificantBits = (timestampAndCounter >>> COUNTER_BITS) << 16
+                | VERSION
+                | timestampAndCounter & ((1L << COUNTER_BITS) - 1);
+        long leastSignificantBits = VARIANT | random.nextLong() >>> 2;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    private long nextTimestampAndCounter(ThreadLocalRandom random) {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        while (true) {
+            long last = lastTimestampAndCounter.get();
+            long next = now > last ? now | random.nextInt(1 << (COUNTER_BITS - 1)) : last + 1;
+            if (lastTimestampAndCounter.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.malbano.products.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logging for the send paths, which run once per product event. Per-event lines are written for 1 in
+ * {@code sample-rate} events, or for every event while the logger is at DEBUG, and every {@code summary-interval} a
+ * line per topic and partition with the count, errors and offset range of the sends. Send latency per partition is
+ * already in {@code product.send.ack.latency}, so it is not repeated here. Errors are not sampled.
+ * <p>
+ * {@code GET /actuator/hotpathlog} shows the settings; {@code POST} with
+ * {@code {"sampleRate": 1000, "summaryInterval": "1m"}} changes them without a restart (omitted fields are kept).
+ */
+@Component
+@Endpoint(id = "hotpathlog")
+public class HotPathLog {
+
+    public static final int UNKNOWN_PARTITION = -1;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final Map<String, Map<Integer, PartitionCounters>> topics = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "hot-path-log-summary");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile int sampleRate;
+    private volatile Duration summaryInterval;
+    private ScheduledFuture<?> summaryTask;
+
+    /**
+     * Counters of one partition for the current summary interval; recording never allocates.
+     */
+    private static final class PartitionCounters {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final AtomicLong minOffset = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong maxOffset = new AtomicLong(-1);
+    }
+
+    public HotPathLog(@Value("${app.logging.hot-path.sample-rate:100}") int sampleRate,
+                      @Value("${app.logging.hot-path.summary-interval:30s}") Duration summaryInterval) {
+        this.sampleRate = sampleRate;
+        this.summaryInterval = summaryInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduleSummary();
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        logSummary();
+    }
+
+    /**
+     * @return whether the per-event line of this event should be written to the given logger
+     */
+    public boolean shouldLogEvent(Logger logger) {
+        if (logger.isDebugEnabled()) {
+            return true;
+        }
+        int rate = sampleRate;
+        return rate > 0 && (rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0);
+    }
+
+    public void record(String topic, int partition, long offset) {
+        PartitionCounters counters = counters(topic, partition);
+        counters.count.increment();
+        counters.minOffset.accumulateAndGet(offset, Math::min);
+        counters.maxOffset.accumulateAndGet(offset, Math::max);
+    }
+
+    /**
+     * @param partition the partition the record was assigned, {@link #UNKNOWN_PARTITION} if it failed before that
+     */
+    public void recordError(String topic, int partition) {
+        counters(topic, partition).errors.increment();
+    }
+
+    @ReadOperation
+    public Map<String, Object> settings() {
+        return Map.of(
+                "sampleRate", sampleRate,
+                "summaryInterval", summaryInterval.toString());
+    }
+
+    /**
+     * @param sampleRate 1 logs every event, 0 disables sampled lines
+     * @param summaryInterval zero disables summaries
+     */
+    @WriteOperation
+    public synchronized Map<String, Object> configure(@Nullable Integer sampleRate, @Nullable Duration summaryInterval) {
+        int rate = sampleRate != null ? sampleRate : this.sampleRate;
+        Duration interval = summaryInterval != null ? summaryInterval : this.summaryInterval;
+        if (rate < 0 || interval.isNegative()) {
+            throw new IllegalArgumentException("sampleRate and summaryInterval must not be negative");
+        }
+        this.sampleRate = rate;
+        if (!interval.equals(this.summaryInterval)) {
+            this.summaryInterval = interval;
+            scheduleSummary();
+        }
+        LOGGER.info("Hot path logging: sampleRate={}, summaryInterval={}", rate, interval);
+        return settings();
+    }
+
+    private synchronized void scheduleSummary() {
+        if (summaryTask != null) {
+            summaryTask.cancel(false);
+            summaryTask = null;
+        }
+        long intervalMs = summaryInterval.toMillis();
+        if (intervalMs > 0 && !scheduler.isShutdown()) {
+            summaryTask = scheduler.scheduleAtFixedRate(this::logSummary, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private PartitionCounters counters(String topic, int partition) {
+        Map<Integer, PartitionCounters> partitions = topics.get(topic);
+        if (partitions == null) {
+            partitions = topics.computeIfAbsent(topic, t -> new ConcurrentHashMap<>());
+        }
+        PartitionCounters counters = partitions.get(partition);
+        return counters != null ? counters : partitions.computeIfAbsent(partition, p -> new PartitionCounters());
+    }
+
+    private void logSummary() {
+        try {
+            for (Map.Entry<String, Map<Integer, PartitionCounters>> topic : topics.entrySet()) {
+                for (Map.Entry<Integer, PartitionCounters> partition : topic.getValue().entrySet()) {
+                    PartitionCounters counters = partition.getValue();
+                    long count = counters.count.sumThenReset();
+                    long errors = counters.errors.sumThenReset();
+                    long minOffset = counters.minOffset.getAndSet(Long.MAX_VALUE);
+                    long maxOffset = counters.maxOffset.getAndSet(-1);
+                    if (count == 0 && errors == 0) {
+                        continue;
+                    }
+                    LOGGER.info("Summary topic={} partition={} count={} errors={} offsets={}",
+                            topic.getKey(),
+                            partition.getKey() == UNKNOWN_PARTITION ? "unknown" : String.valueOf(partition.getKey()),
+                            count, errors, maxOffset < 0 ? "-" : minOffset + ".." + maxOffset);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to write hot path log summary: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.malbano.products.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Producer-side meters. Timers and counters are created once per tag combination and cached, so recording on the
+ * send path is a map lookup plus an atomic update.
+ */
+@Component
+public class ProductSendMetrics {
+
+    public enum SendMode {
+        SYNC("sync"), ASYNC("async"), BATCH("batch");
+
+        private final String tag;
+
+        SendMode(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private static final String ACK_LATENCY = "product.send.ack.latency";
+    private static final String FAILURES = "product.send.failures";
+
+    private final MeterRegistry registry;
+    private final Map<SendMode, Map<Integer, Timer>> ackTimers = new ConcurrentHashMap<>();
+    private final Map<SendMode, Map<Class<?>, Counter>> failureCounters = new ConcurrentHashMap<>();
+
+    public ProductSendMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (SendMode mode : SendMode.values()) {
+            ackTimers.put(mode, new ConcurrentHashMap<>());
+            failureCounters.put(mode, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void recordAck(SendMode mode, int partition, long startNanos) {
+        ackTimers.get(mode)
+                .computeIfAbsent(partition, p -> Timer.builder(ACK_LATENCY)
+                        .description("Time from send to broker acknowledgement")
+                        .tag("mode", mode.tag)
+                        .tag("partition", String.valueOf(p))
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailure(SendMode mode, Throwable exception) {
+        Throwable cause = exception.getCause() != null ? exception.getCause() : exception;
+        failureCounters.get(mode)
+                .computeIfAbsent(cause.getClass(), type -> Counter.builder(FAILURES)
+                        .description("Failed product event sends")
+                        .tag("mode", mode.tag)
+                        .tag("exception", type.getSimpleName())
+                        .register(registry))
+                .increment();
+    }
+}
@@ -0,0 +1,318 @@
+package com.malbano.products.readmodel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Products keyed by UUID in two memory-mapped files.
+ * <ul>
+ *     <li>{@code products.dat}: append-only {@code [int length][record]} entries; an update appends a new entry.</li>
+ *     <li>{@code products.idx}: a header with the record count, the data end and the next offset to consume per
+ *     partition, then an open addressing table of {@code [long msb][long lsb][long data position + 1]} slots (load
+ *     factor at most 0.5), then the slot of every product in first-seen order, used for paging.</li>
+ * </ul>
+ * Each product costs about 52 bytes of index plus its record. When the data file fills up, {@link #compact()} drops
+ * the versions left behind by updates. A single writer applies records and offsets; readers share a read lock. The files are only reused when the previous process closed them; after a crash the store
+ * starts empty so it can be restored from a snapshot instead of trusting half-flushed pages.
+ */
+public class MappedProductStore implements AutoCloseable {
+
+    public static final int MAX_PARTITIONS = 256;
+    /**
+     * Keeps the index, mapped as a single buffer with {@code int} positions, under 2 GiB: 2^26 slots of 24 bytes plus
+     * 4 bytes of paging order per product.
+     */
+    public static final int MAX_PRODUCTS = 1 << 25;
+
+    private static final int MAGIC = 0x50524D31;
+    private static final int COUNT_OFFSET = 8;
+    private static final int DATA_END_OFFSET = 16;
+    private static final int STATE_OFFSET = 24;
+    private static final int STATE_OPEN = 1;
+    private static final int STATE_CLOSED = 2;
+    private static final int PARTITIONS_OFFSET = 64;
+    private static final int SLOTS_OFFSET = PARTITIONS_OFFSET + MAX_PARTITIONS * Long.BYTES;
+    private static final int SLOT_SIZE = 3 * Long.BYTES;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer data;
+    private final int maxProducts;
+    private final int slotCount;
+    private final long orderOffset;
+
+    public MappedProductStore(Path directory, int maxProducts, int dataSizeBytes) throws IOException {
+        if (maxProducts < 1 || maxProducts > MAX_PRODUCTS) {
+            throw new IllegalArgumentException("maxProducts must be between 1 and " + MAX_PRODUCTS + ": " + maxProducts);
+        }
+        Files.createDirectories(directory);
+        this.maxProducts = maxProducts;
+        this.slotCount = Integer.highestOneBit(Math.max(maxProducts, 1) * 2 - 1) << 1;
+        this.orderOffset = SLOTS_OFFSET + (long) slotCount * SLOT_SIZE;
+        long indexSize = orderOffset + (long) maxProducts * Integer.BYTES;
+
+        Path indexPath = directory.resolve("products.idx");
+        Path dataPath = directory.resolve("products.dat");
+        boolean reuse = Files.exists(indexPath) && Files.size(indexPath) == indexSize
+                && Files.exists(dataPath) && Files.size(dataPath) == dataSizeBytes;
+        if (!reuse) {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(dataPath);
+        }
+
+        this.indexChannel = FileChannel.open(indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.dataChannel = FileChannel.open(dataPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+        this.data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataSizeBytes);
+
+        if (index.getInt(0) != MAGIC || index.getInt(4) != maxProducts || index.getInt(STATE_OFFSET) != STATE_CLOSED) {
+            if (reuse) {
+                LOGGER.warn("Discarding read model files in {}: different layout or not closed cleanly", directory);
+                for (long position = 0; position < indexSize; position += Long.BYTES) {
+                    index.putLong((int) position, 0);
+                }
+            }
+            index.putInt(4, maxProducts);
+            index.putInt(0, MAGIC);
+        }
+        index.putInt(STATE_OFFSET, STATE_OPEN);
+        index.force(0, PARTITIONS_OFFSET);
+        LOGGER.info("Opened read model with {} products from {}", size(), directory);
+    }
+
+    /**
+     * @return false when the store is full and the record was not applied
+     */
+    public boolean upsert(String productId, byte[] record) {
+        UUID key = UUID.fromString(productId);
+        return upsert(key.getMostSignificantBits(), key.getLeastSignificantBits(), ByteBuffer.wrap(record));
+    }
+
+    /**
+     * @param record the remaining bytes of the buffer are stored; its position is not changed
+     * @return false when the store is full and the record was not applied
+     */
+    public boolean upsert(long msb, long lsb, ByteBuffer record) {
+        int length = record.remaining();
+        lock.writeLock().lock();
+        try {
+            long dataEnd = index.getLong(DATA_END_OFFSET);
+            if (dataEnd + Integer.BYTES + length > data.capacity()) {
+                return false;
+            }
+
+            int slot = findSlot(msb, lsb);
+            boolean existing = index.getLong(slotPosition(slot) + 2 * Long.BYTES) != 0;
+            long count = index.getLong(COUNT_OFFSET);
+            if (!existing && count == maxProducts) {
+                return false;
+            }
+
+            data.putInt((int) dataEnd, length);
+            data.put((int) dataEnd + Integer.BYTES, record, record.position(), length);
+
+            int slotPosition = slotPosition(slot);
+            index.putLong(slotPosition, msb);
+            index.putLong(slotPosition + Long.BYTES, lsb);
+            index.putLong(slotPosition + 2 * Long.BYTES, dataEnd + 1);
+            if (!existing) {
+                index.putInt((int) (orderOffset + count * Integer.BYTES), slot);
+                index.putLong(COUNT_OFFSET, count + 1);
+            }
+            index.putLong(DATA_END_OFFSET, dataEnd + Integer.BYTES + length);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the live records to the start of the data file, in data order so each one only moves towards the start,
+     * and frees the space of the versions replaced by updates. Queries wait for it on the write lock. A crash
+     * halfway leaves the files marked open, so they are discarded on the next start like after any other crash.
+     *
+     * @return the bytes freed
+     */
+    public long compact() {
+        lock.writeLock().lock();
+        try {
+            int count = (int) index.getLong(COUNT_OFFSET);
+            // data position in the high half, slot in the low half, so sorting orders them by position
+            long[] live = new long[count];
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                int slot = index.getInt((int) (orderOffset + (long) ordinal * Integer.BYTES));
+                live[ordinal] = (index.getLong(slotPosition(slot) + 2 * Long.BYTES) - 1) << 32 | slot;
+            }
+            Arrays.sort(live);
+
+            long dataEnd = index.getLong(DATA_END_OFFSET);
+            int writePosition = 0;
+            byte[] entry = new byte[0];
+            for (long positionAndSlot : live) {
+                int position = (int) (positionAndSlot >>> 32);
+                int length = Integer.BYTES + data.getInt(position);
+                if (position != writePosition) {
+                    if (entry.length < length) {
+                        entry = new byte[length];
+                    }
+                    data.get(position, entry, 0, length);
+                    data.put(writePosition, entry, 0, length);
+                    index.putLong(slotPosition((int) positionAndSlot) + 2 * Long.BYTES, writePosition + 1L);
+                }
+                writePosition += length;
+            }
+            index.putLong(DATA_END_OFFSET, writePosition);
+            return dataEnd - writePosition;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void commitOffset(int partition, long nextOffset) {
+        lock.writeLock().lock();
+        try {
+            index.putLong(PARTITIONS_OFFSET + partition * Long.BYTES, nextOffset + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the next offset to consume from the partition, or -1 if nothing was consumed yet
+     */
+    public long committedOffset(int partition) {
+        lock.readLock().lock();
+        try {
+            return index.getLong(PARTITIONS_OFFSET + partition * Long.BYTES) - 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public byte[] get(String productId) {
+        UUID key;
+        try {
+            key = UUID.fromString(productId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            long position = index.getLong(
+                    slotPosition(findSlot(key.getMostSignificantBits(), key.getLeastSignificantBits())) + 2 * Long.BYTES);
+            return position == 0 ? null : readRecord(position - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<byte[]> page(int page, int pageSize) {
+        lock.readLock().lock();
+        try {
+            long count = index.getLong(COUNT_OFFSET);
+            long from = (long) page * pageSize;
+            long to = Math.min(count, from + pageSize);
+            List<byte[]> records = new ArrayList<>(Math.max(0, (int) (to - from)));
+            for (long ordinal = from; ordinal < to; ordinal++) {
+                int slot = index.getInt((int) (orderOffset + ordinal * Integer.BYTES));
+                records.add(readRecord(index.getLong(slotPosition(slot) + 2 * Long.BYTES) - 1));
+            }
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes up to {@code max} products starting at the {@code from} ordinal, in first-seen order, to the visitor.
+     * The record buffer is only valid during the call.
+     *
+     * @return the number of products visited
+     */
+    public int visit(long from, int max, EntryVisitor visitor) throws IOException {
+        lock.readLock().lock();
+        try {
+            long to = Math.min(index.getLong(COUNT_OFFSET), from + max);
+            for (long ordinal = from; ordinal < to; ordinal++) {
+                int slotPosition = slotPosition(index.getInt((int) (orderOffset + ordinal * Integer.BYTES)));
+                int position = (int) (index.getLong(slotPosition + 2 * Long.BYTES) - 1);
+                visitor.visit(index.getLong(slotPosition), index.getLong(slotPosition + Long.BYTES),
+                        data.slice(position + Integer.BYTES, data.getInt(position)));
+            }
+            return (int) Math.max(0, to - from);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return index.getLong(COUNT_OFFSET);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private byte[] readRecord(long position) {
+        int length = data.getInt((int) position);
+        byte[] record = new byte[length];
+        data.get((int) position + Integer.BYTES, record);
+        return record;
+    }
+
+    private int findSlot(long msb, long lsb) {
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash >>> 32) & (slotCount - 1);
+        while (true) {
+            int position = slotPosition(slot);
+            if (index.getLong(position + 2 * Long.BYTES) == 0
+                    || index.getLong(position) == msb && index.getLong(position + Long.BYTES) == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & (slotCount - 1);
+        }
+    }
+
+    private int slotPosition(int slot) {
+        return SLOTS_OFFSET + slot * SLOT_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            data.force();
+            index.force();
+            index.putInt(STATE_OFFSET, STATE_CLOSED);
+            index.force(0, PARTITIONS_OFFSET);
+            indexChannel.close();
+            dataChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public interface EntryVisitor {
+        void visit(long msb, long lsb, ByteBuffer record) throws IOException;
+    }
+}
@@ -0,0 +1,400 @@
+package com.malbano.products.readmodel;
+
+import com.malbano.products.config.KafkaConfig;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.serialization.ProductCreatedEventRecordFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * Materializes the product topics of every priority lane into a {@link MappedProductStore}. A dedicated consumer is
+ * assigned every partition (no consumer group) and resumes from the offsets kept in the store, where each lane owns a
+ * band of the offset slots (the normal lane the first one, so stores written before the lanes existed stay valid).
+ * Queries read the store and never call Kafka.
+ * <p>
+ * When the store starts empty (first start, or the previous process crashed) it is bootstrapped from the latest
+ * {@link ProductSnapshotFile}, written periodically by the updater thread, or else from the compacted
+ * {@link ProductReadModelChangelog} when enabled; only the records after the restored offsets are replayed.
+ * <p>
+ * When the updater fails (broker unreachable for longer than the client retries, a store error), it closes its
+ * consumer, reports a lag of -1 and starts again from the stored offsets after a backoff of 1 s doubling up to 30 s.
+ * When the data file is full, it is compacted before the partition is paused.
+ */
+@Component
+@ConditionalOnProperty(name = "app.products.read-model.enabled", havingValue = "true")
+public class ProductReadModel implements SmartLifecycle {
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final long LAG_REFRESH_MS = 1000;
+    private static final long RESTART_BACKOFF_MS = 1000;
+    private static final long MAX_RESTART_BACKOFF_MS = 30000;
+    private static final int SLOTS_PER_LANE =
+            MappedProductStore.MAX_PARTITIONS / KafkaConfig.PRODUCT_CREATED_EVENTS_TOPICS.size();
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final MappedProductStore store;
+    private final ProductCreatedEventRecordFormat recordFormat;
+    private final String bootstrapServers;
+    private final ProductSnapshotFile snapshotFile;
+    private final Optional<ProductReadModelChangelog> changelog;
+    private final long snapshotIntervalMs;
+    private final Map<String, Object> consumerConfig = new HashMap<>();
+    private final Counter restarts;
+
+    private volatile boolean running;
+    private volatile long lag = -1;
+    private volatile KafkaConsumer<String, byte[]> consumer;
+    private Thread updaterThread;
+    private long startedAt;
+    private String bootstrapSource;
+    private boolean caughtUp;
+    private long appliedSinceSnapshot;
+    private long snapshotAt;
+
+    public ProductReadModel(ProductCreatedEventRecordFormat recordFormat,
+                            MeterRegistry meterRegistry,
+                            Optional<ProductReadModelChangelog> changelog,
+                            @Value("${spring.kafka.producer.bootstrap-servers}") String bootstrapServers,
+                            @Value("${app.products.read-model.directory}") Path directory,
+                            @Value("${app.products.read-model.max-products:1000000}") int maxProducts,
+                            @Value("${app.products.read-model.data-size-mb:256}") int dataSizeMb,
+                            @Value("${app.products.read-model.snapshot.interval:5m}") Duration snapshotInterval)
+            throws IOException {
+        long dataSize = dataSizeMb * 1024L * 1024L;
+        if (dataSize <= 0 || dataSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("app.products.read-model.data-size-mb must be between 1 and 2047");
+        }
+        if (maxProducts < 1 || maxProducts > MappedProductStore.MAX_PRODUCTS) {
+            throw new IllegalArgumentException("app.products.read-model.max-products must be between 1 and "
+                    + MappedProductStore.MAX_PRODUCTS);
+        }
+        this.store = new MappedProductStore(directory, maxProducts, (int) dataSize);
+        this.recordFormat = recordFormat;
+        this.bootstrapServers = bootstrapServers;
+        this.snapshotFile = new ProductSnapshotFile(directory.resolve("products.snapshot"));
+        this.changelog = changelog;
+        this.snapshotIntervalMs = snapshotInterval.toMillis();
+
+        consumerConfig.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        consumerConfig.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerConfig.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        consumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        consumerConfig.put(ConsumerConfig.CLIENT_ID_CONFIG, "products-read-model");
+
+        Gauge.builder("product.read.model.lag", this, ProductReadModel::lag)
+                .description("Records of the product topic not yet applied to the read model (-1 when unknown)")
+                .register(meterRegistry);
+        Gauge.builder("product.read.model.size", store, MappedProductStore::size)
+                .description("Products in the read model")
+                .register(meterRegistry);
+        this.restarts = Counter.builder("product.read.model.restarts")
+                .description("Times the read model updater failed and was started again")
+                .register(meterRegistry);
+    }
+
+    public ProductCreatedEvent find(String productId) throws IOException {
+        byte[] record = store.get(productId);
+        return record == null ? null : recordFormat.decode(record);
+    }
+
+    public List<ProductCreatedEvent> page(int page, int size) throws IOException {
+        List<ProductCreatedEvent> products = new ArrayList<>(size);
+        for (byte[] record : store.page(page, size)) {
+            products.add(recordFormat.decode(record));
+        }
+        return products;
+    }
+
+    public long size() {
+        return store.size();
+    }
+
+    public long lag() {
+        return lag;
+    }
+
+    @Override
+    public void start() {
+        startedAt = System.nanoTime();
+        running = true;
+        updaterThread = new Thread(this::update, "product-read-model");
+        updaterThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        KafkaConsumer<String, byte[]> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        try {
+            updaterThread.join(POLL_TIMEOUT.toMillis() * 10);
+            store.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close read model store: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void update() {
+        long backoffMs = RESTART_BACKOFF_MS;
+        while (running) {
+            long started = System.currentTimeMillis();
+            try {
+                consume();
+                return;
+            } catch (WakeupException e) {
+                // stop() interrupts the poll
+                return;
+            } catch (Exception e) {
+                if (System.currentTimeMillis() - started > MAX_RESTART_BACKOFF_MS) {
+                    // the previous consumer ran fine for a while, this is a new failure
+                    backoffMs = RESTART_BACKOFF_MS;
+                }
+                LOGGER.error("Read model updater failed, starting it again in {} ms from the stored offsets",
+                        backoffMs, e);
+            }
+            lag = -1;
+            restarts.increment();
+            if (!pause(backoffMs)) {
+                return;
+            }
+            backoffMs = Math.min(backoffMs * 2, MAX_RESTART_BACKOFF_MS);
+        }
+    }
+
+    private void consume() {
+        try (KafkaConsumer<String, byte[]> readModelConsumer = new KafkaConsumer<>(consumerConfig)) {
+            consumer = readModelConsumer;
+            bootstrap();
+            assignPartitions();
+            long lagRefreshedAt = 0;
+            snapshotAt = System.currentTimeMillis();
+            while (running) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(POLL_TIMEOUT);
+                for (TopicPartition partition : records.partitions()) {
+                    apply(partition, records.records(partition));
+                }
+                changelog.ifPresent(this::reapplyUnpublished);
+                // until caught up the lag is checked on every poll, so the bootstrap time is measured precisely
+                if (!caughtUp || System.currentTimeMillis() - lagRefreshedAt >= LAG_REFRESH_MS) {
+                    try {
+                        lag = currentLag();
+                    } catch (KafkaException e) {
+                        lag = -1;
+                    }
+                    lagRefreshedAt = System.currentTimeMillis();
+                    if (!caughtUp && lag == 0) {
+                        caughtUp = true;
+                        LOGGER.info("Read model caught up in {} ms from {} with {} products",
+                                (System.nanoTime() - startedAt) / 1_000_000, bootstrapSource, store.size());
+                    }
+                }
+                if (appliedSinceSnapshot > 0 && System.currentTimeMillis() - snapshotAt >= snapshotIntervalMs) {
+                    writeSnapshot();
+                }
+            }
+        } finally {
+            consumer = null;
+        }
+    }
+
+    /**
+     * @return false if the read model was stopped meanwhile
+     */
+    private boolean pause(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        try {
+            while (running && System.currentTimeMillis() < deadline) {
+                Thread.sleep(Math.min(POLL_TIMEOUT.toMillis(), Math.max(1, deadline - System.currentTimeMillis())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return running;
+    }
+
+    private void bootstrap() {
+        if (store.size() > 0) {
+            bootstrapSource = "local files";
+            return;
+        }
+        if (snapshotFile.exists()) {
+            try {
+                long restored = snapshotFile.restore(store);
+                bootstrapSource = "snapshot";
+                LOGGER.info("Restored {} products from the read model snapshot", restored);
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Ignoring read model snapshot: {}", e.getMessage());
+            }
+        }
+        if (changelog.isPresent()) {
+            try {
+                long restored = changelog.get().restore(store);
+                bootstrapSource = "changelog";
+                LOGGER.info("Restored {} products from the read model changelog", restored);
+                return;
+            } catch (KafkaException | IllegalStateException e) {
+                LOGGER.warn("Ignoring read model changelog: {}", e.getMessage());
+            }
+        }
+        bootstrapSource = "topic replay";
+    }
+
+    private void writeSnapshot() {
+        try {
+            long started = System.nanoTime();
+            long written = snapshotFile.write(store);
+            LOGGER.info("Wrote read model snapshot with {} products in {} ms",
+                    written, (System.nanoTime() - started) / 1_000_000);
+            appliedSinceSnapshot = 0;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write read model snapshot: {}", e.getMessage());
+        }
+        snapshotAt = System.currentTimeMillis();
+    }
+
+    private void assignPartitions() {
+        List<TopicPartition> partitions = new ArrayList<>();
+        for (String topic : KafkaConfig.PRODUCT_CREATED_EVENTS_TOPICS) {
+            List<PartitionInfo> partitionInfos = List.of();
+            while (running && partitionInfos.isEmpty()) {
+                try {
+                    partitionInfos = consumer.partitionsFor(topic, Duration.ofSeconds(30));
+                } catch (org.apache.kafka.common.errors.TimeoutException e) {
+                    LOGGER.warn("Waiting for metadata of {}: {}", topic, e.getMessage());
+                }
+            }
+            for (PartitionInfo info : partitionInfos) {
+                if (info.partition() < SLOTS_PER_LANE) {
+                    partitions.add(new TopicPartition(info.topic(), info.partition()));
+                }
+            }
+        }
+        consumer.assign(partitions);
+        for (TopicPartition partition : partitions) {
+            long offset = store.committedOffset(offsetSlot(partition));
+            if (offset >= 0) {
+                consumer.seek(partition, offset);
+            } else {
+                consumer.seekToBeginning(List.of(partition));
+            }
+        }
+    }
+
+    private static int offsetSlot(TopicPartition partition) {
+        return KafkaConfig.PRODUCT_CREATED_EVENTS_TOPICS.indexOf(partition.topic()) * SLOTS_PER_LANE
+                + partition.partition();
+    }
+
+    private void apply(TopicPartition partition, List<ConsumerRecord<String, byte[]>> records) {
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                ProductCreatedEvent event = recordFormat.decode(record.value());
+                byte[] encoded = recordFormat.encode(event);
+                if (!upsert(event.getProductId(), encoded)) {
+                    LOGGER.error("Read model is full, pausing {} at offset {}", partition, record.offset());
+                    consumer.seek(partition, record.offset());
+                    consumer.pause(List.of(partition));
+                    commitOffset(offsetSlot(partition), record.offset());
+                    return;
+                }
+                appliedSinceSnapshot++;
+                changelog.ifPresent(c -> c.publish(event.getProductId(), encoded, offsetSlot(partition), record.offset()));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Skipping unreadable product event at {}@{}: {}", partition, record.offset(), e.getMessage());
+            }
+        }
+        int slot = offsetSlot(partition);
+        changelog.ifPresent(c -> c.publishWatermark(slot));
+        commitOffset(slot, records.get(records.size() - 1).offset() + 1);
+    }
+
+    private boolean upsert(String productId, byte[] encoded) {
+        if (store.upsert(productId, encoded)) {
+            return true;
+        }
+        long started = System.nanoTime();
+        long freed = store.compact();
+        LOGGER.info("Compacted read model data file, freed {} bytes in {} ms",
+                freed, (System.nanoTime() - started) / 1_000_000);
+        return freed > 0 && store.upsert(productId, encoded);
+    }
+
+    /**
+     * With the changelog enabled, the committed offset stays at the first product not yet in the changelog, so a
+     * restart applies and publishes it again.
+     */
+    private void commitOffset(int slot, long nextOffset) {
+        long acknowledged = changelog.map(c -> c.acknowledged(slot)).orElse(-1L);
+        store.commitOffset(slot, acknowledged >= 0 ? Math.min(nextOffset, acknowledged) : nextOffset);
+    }
+
+    private void reapplyUnpublished(ProductReadModelChangelog changelog) {
+        for (TopicPartition partition : consumer.assignment()) {
+            int slot = offsetSlot(partition);
+            long failed = changelog.takeFailed(slot);
+            if (failed >= 0) {
+                LOGGER.warn("Reapplying {} from offset {} after a failed changelog publish", partition, failed);
+                consumer.seek(partition, failed);
+                store.commitOffset(slot, failed);
+            }
+        }
+    }
+
+    private long currentLag() {
+        long total = 0;
+        List<TopicPartition> unknown = new ArrayList<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            OptionalLong partitionLag = consumer.currentLag(partition);
+            if (partitionLag.isPresent()) {
+                total += partitionLag.getAsLong();
+            } else {
+                unknown.add(partition);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            // no fetch response yet for these partitions, ask the broker for their end offsets
+            for (Map.Entry<TopicPartition, Long> end : consumer.endOffsets(unknown, POLL_TIMEOUT).entrySet()) {
+                total += Math.max(0, end.getValue() - consumer.position(end.getKey()));
+            }
+        }
+        return total;
+    }
+}
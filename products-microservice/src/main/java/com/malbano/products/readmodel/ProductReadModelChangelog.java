@@ -0,0 +1,250 @@
+package com.malbano.products.readmodel;
+
+import com.malbano.products.config.KafkaConfig;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Compacted copy of the read model: every product applied to the store is published keyed by id, with the
+ * partition and offset of the source record in headers. Compaction keeps one record per product, so restoring reads
+ * the current product set instead of the whole history of the product topic.
+ * <p>
+ * Sends are acknowledged out of order and may fail, so the highest source offset in the changelog does not mean every
+ * product before it is there. Each source slot has a watermark, the offset below which every publish was
+ * acknowledged. It is published now and then as a record of its own, and restoring resumes the source partitions
+ * from it. A failed publish holds the watermark until the read model applies that record again.
+ */
+@Component
+@ConditionalOnProperty(name = "app.products.read-model.enabled", havingValue = "true")
+@ConditionalOnProperty(name = "app.products.read-model.changelog.enabled", havingValue = "true")
+public class ProductReadModelChangelog {
+
+    public static final String SOURCE_PARTITION_HEADER = "source-partition";
+    public static final String SOURCE_OFFSET_HEADER = "source-offset";
+    public static final String WATERMARK_HEADER = "source-watermark";
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final long WATERMARK_INTERVAL_MS = 1000;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final KafkaProducer<String, byte[]> producer;
+    private final String bootstrapServers;
+    private final SlotProgress[] slots = new SlotProgress[MappedProductStore.MAX_PARTITIONS];
+
+    /**
+     * Publishes of one source slot, guarded by the instance itself.
+     */
+    private static final class SlotProgress {
+        private final TreeSet<Long> pending = new TreeSet<>();
+        private long next = -1;
+        private long failed = -1;
+        private long watermarkSent = -1;
+        private long watermarkSentAt;
+
+        long acknowledged() {
+            if (failed >= 0) {
+                return pending.isEmpty() ? failed : Math.min(failed, pending.first());
+            }
+            return pending.isEmpty() ? next : pending.first();
+        }
+    }
+
+    public ProductReadModelChangelog(@Value("${spring.kafka.producer.bootstrap-servers}") String bootstrapServers) {
+        this.bootstrapServers = bootstrapServers;
+
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        config.put(ProducerConfig.CLIENT_ID_CONFIG, "products-read-model-changelog");
+        this.producer = new KafkaProducer<>(config);
+        for (int slot = 0; slot < slots.length; slot++) {
+            slots[slot] = new SlotProgress();
+        }
+    }
+
+    /**
+     * @param sourceSlot the offset slot of the source partition in the {@link MappedProductStore}, which is the
+     *                   partition number for the normal lane
+     */
+    public void publish(String productId, byte[] record, int sourceSlot, long sourceOffset) {
+        ProducerRecord<String, byte[]> changelogRecord =
+                new ProducerRecord<>(KafkaConfig.PRODUCT_READ_MODEL_CHANGELOG_TOPIC, productId, record);
+        changelogRecord.headers()
+                .add(SOURCE_PARTITION_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(0, sourceSlot).array())
+                .add(SOURCE_OFFSET_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(0, sourceOffset).array());
+        SlotProgress progress = slots[sourceSlot];
+        synchronized (progress) {
+            progress.pending.add(sourceOffset);
+            progress.next = sourceOffset + 1;
+        }
+        producer.send(changelogRecord, (metadata, exception) -> {
+            synchronized (progress) {
+                progress.pending.remove(sourceOffset);
+                if (exception != null && (progress.failed < 0 || sourceOffset < progress.failed)) {
+                    progress.failed = sourceOffset;
+                }
+            }
+            if (exception != null) {
+                LOGGER.warn("Failed to publish product {} to the read model changelog: {}",
+                        productId, exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return the source offset below which every publish of the slot was acknowledged, -1 if nothing was published
+     */
+    public long acknowledged(int sourceSlot) {
+        SlotProgress progress = slots[sourceSlot];
+        synchronized (progress) {
+            return progress.acknowledged();
+        }
+    }
+
+    /**
+     * Clears the first failed publish of the slot, which the read model must apply and publish again.
+     *
+     * @return its source offset, -1 if no publish failed
+     */
+    public long takeFailed(int sourceSlot) {
+        SlotProgress progress = slots[sourceSlot];
+        synchronized (progress) {
+            long failed = progress.failed;
+            if (failed >= 0) {
+                progress.failed = -1;
+                progress.next = failed;
+            }
+            return failed;
+        }
+    }
+
+    /**
+     * Publishes the watermark of the slot if it moved, at most once per second.
+     */
+    public void publishWatermark(int sourceSlot) {
+        publishWatermark(sourceSlot, WATERMARK_INTERVAL_MS);
+    }
+
+    private void publishWatermark(int sourceSlot, long intervalMs) {
+        SlotProgress progress = slots[sourceSlot];
+        long watermark;
+        synchronized (progress) {
+            watermark = progress.acknowledged();
+            long now = System.currentTimeMillis();
+            if (watermark <= progress.watermarkSent || now - progress.watermarkSentAt < intervalMs) {
+                return;
+            }
+            progress.watermarkSent = watermark;
+            progress.watermarkSentAt = now;
+        }
+        // a value of its own: a null one would be a tombstone
+        ProducerRecord<String, byte[]> watermarkRecord = new ProducerRecord<>(
+                KafkaConfig.PRODUCT_READ_MODEL_CHANGELOG_TOPIC, "watermark-" + sourceSlot, new byte[0]);
+        watermarkRecord.headers()
+                .add(SOURCE_PARTITION_HEADER, ByteBuffer.allocate(Integer.BYTES).putInt(0, sourceSlot).array())
+                .add(SOURCE_OFFSET_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(0, watermark).array())
+                .add(WATERMARK_HEADER, new byte[0]);
+        producer.send(watermarkRecord, (metadata, exception) -> {
+            if (exception != null) {
+                LOGGER.warn("Failed to publish read model changelog watermark of slot {}: {}",
+                        sourceSlot, exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Reads the changelog up to its current end into an empty store. The next offset of each source partition is its
+     * last watermark; products after it are replayed from the topic, and partitions without one from the beginning.
+     *
+     * @return the number of changelog records applied
+     */
+    public long restore(MappedProductStore store) {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 5000);
+        config.put(ConsumerConfig.CLIENT_ID_CONFIG, "products-read-model-changelog-restore");
+
+        long applied = 0;
+        long[] nextOffsets = new long[MappedProductStore.MAX_PARTITIONS];
+        Arrays.fill(nextOffsets, -1);
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(config)) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            List<PartitionInfo> partitionInfos =
+                    consumer.partitionsFor(KafkaConfig.PRODUCT_READ_MODEL_CHANGELOG_TOPIC, Duration.ofSeconds(30));
+            for (PartitionInfo info : partitionInfos) {
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+            }
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (endOffsets.entrySet().stream().anyMatch(end -> consumer.position(end.getKey()) < end.getValue())) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(POLL_TIMEOUT)) {
+                    Header partitionHeader = record.headers().lastHeader(SOURCE_PARTITION_HEADER);
+                    Header offsetHeader = record.headers().lastHeader(SOURCE_OFFSET_HEADER);
+                    if (record.value() == null || partitionHeader == null || offsetHeader == null) {
+                        continue;
+                    }
+                    if (record.headers().lastHeader(WATERMARK_HEADER) != null) {
+                        int sourcePartition = ByteBuffer.wrap(partitionHeader.value()).getInt();
+                        long watermark = ByteBuffer.wrap(offsetHeader.value()).getLong();
+                        nextOffsets[sourcePartition] = Math.max(nextOffsets[sourcePartition], watermark);
+                        continue;
+                    }
+                    if (!store.upsert(record.key(), record.value())) {
+                        throw new IllegalStateException("Read model changelog does not fit in the read model");
+                    }
+                    applied++;
+                }
+            }
+        }
+
+        for (int partition = 0; partition < nextOffsets.length; partition++) {
+            if (nextOffsets[partition] >= 0) {
+                store.commitOffset(partition, nextOffsets[partition]);
+            }
+        }
+        return applied;
+    }
+
+    @PreDestroy
+    public void close() {
+        producer.flush();
+        for (int slot = 0; slot < slots.length; slot++) {
+            publishWatermark(slot, 0);
+        }
+        producer.close(Duration.ofSeconds(5));
+    }
+}
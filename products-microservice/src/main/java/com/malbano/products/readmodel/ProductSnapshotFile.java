@@ -0,0 +1,147 @@
+package com.malbano.products.readmodel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Point-in-time copy of a {@link MappedProductStore}, used to rebuild the store without replaying the topic.
+ * <p>
+ * Layout: {@code [int magic][int version][int partition count]} followed by {@code [int partition][long next offset]}
+ * per partition, {@code [long product count]}, {@code [long msb][long lsb][int length][record]} per product and a
+ * trailing {@code [long crc32c]} of everything before it. The file is streamed to a temporary file and moved into
+ * place, so a crash while writing leaves the previous snapshot intact.
+ */
+public class ProductSnapshotFile {
+
+    private static final int MAGIC = 0x50525331;
+    private static final int VERSION = 1;
+    private static final int VISIT_BATCH = 4096;
+
+    private final Path path;
+
+    public ProductSnapshotFile(Path path) {
+        this.path = path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Must not run concurrently with writes to the store, otherwise the offsets may not match the products.
+     *
+     * @return the number of products written
+     */
+    public long write(MappedProductStore store) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long count = store.size();
+        CRC32C checksum = new CRC32C();
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new CheckedOutputStream(file, checksum), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            int partitions = 0;
+            for (int partition = 0; partition < MappedProductStore.MAX_PARTITIONS; partition++) {
+                if (store.committedOffset(partition) >= 0) {
+                    partitions++;
+                }
+            }
+            out.writeInt(partitions);
+            for (int partition = 0; partition < MappedProductStore.MAX_PARTITIONS; partition++) {
+                long offset = store.committedOffset(partition);
+                if (offset >= 0) {
+                    out.writeInt(partition);
+                    out.writeLong(offset);
+                }
+            }
+
+            out.writeLong(count);
+            byte[] buffer = new byte[256];
+            for (long from = 0; from < count; from += VISIT_BATCH) {
+                store.visit(from, (int) Math.min(VISIT_BATCH, count - from), (msb, lsb, record) -> {
+                    out.writeLong(msb);
+                    out.writeLong(lsb);
+                    int length = record.remaining();
+                    out.writeInt(length);
+                    byte[] bytes = length <= buffer.length ? buffer : new byte[length];
+                    record.get(bytes, 0, length);
+                    out.write(bytes, 0, length);
+                });
+            }
+            out.flush();
+            // the checksum itself is not part of the checked bytes
+            ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES).putLong(0, checksum.getValue());
+            file.write(trailer.array());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Maps the snapshot, verifies its checksum and loads it into an empty store, offsets included.
+     *
+     * @return the number of products restored
+     * @throws IOException if the file is corrupt or does not fit in the store
+     */
+    public long restore(MappedProductStore store) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 5L * Integer.BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected snapshot size " + size);
+            }
+            MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodySize = (int) size - Long.BYTES;
+
+            CRC32C checksum = new CRC32C();
+            checksum.update(snapshot.slice(0, bodySize));
+            if (checksum.getValue() != snapshot.getLong(bodySize)) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+            if (snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION) {
+                throw new IOException("Unknown snapshot format");
+            }
+
+            int partitions = snapshot.getInt();
+            long[] offsets = new long[MappedProductStore.MAX_PARTITIONS];
+            Arrays.fill(offsets, -1);
+            for (int i = 0; i < partitions; i++) {
+                offsets[snapshot.getInt()] = snapshot.getLong();
+            }
+
+            long count = snapshot.getLong();
+            for (long i = 0; i < count; i++) {
+                long msb = snapshot.getLong();
+                long lsb = snapshot.getLong();
+                int length = snapshot.getInt();
+                if (!store.upsert(msb, lsb, snapshot.slice(snapshot.position(), length))) {
+                    throw new IOException("Snapshot does not fit in the read model");
+                }
+                snapshot.position(snapshot.position() + length);
+            }
+
+            // offsets last, so a failed restore leaves nothing that would skip records on the next start
+            for (int partition = 0; partition < offsets.length; partition++) {
+                if (offsets[partition] >= 0) {
+                    store.commitOffset(partition, offsets[partition]);
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.malbano.products.serialization;
+
+import com.malbano.products.dto.ProductCreatedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary layout for {@link ProductCreatedEvent}, version 1:
+ * <pre>
+ * magic(1) version(1) flags(1)
+ * [productId: varint length + UTF-8] [title: varint length + UTF-8]
+ * [price: unscaled int64 + scale int16] [quantity: int32]
+ * </pre>
+ * Absent fields are signalled by the flags byte. The {@link #CODEC_HEADER} carries the schema version so
+ * consumers can tell binary records from older JSON ones.
+ */
+public final class ProductCreatedEventBinaryCodec {
+
+    public static final String CODEC_HEADER = "product-event-codec-version";
+    public static final byte MAGIC = (byte) 0xB7;
+    public static final byte VERSION = 1;
+
+    private static final int HAS_PRODUCT_ID = 1;
+    private static final int HAS_TITLE = 1 << 1;
+    private static final int HAS_PRICE = 1 << 2;
+    private static final int HAS_QUANTITY = 1 << 3;
+    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private ProductCreatedEventBinaryCodec() {
+    }
+
+    public static boolean canEncode(ProductCreatedEvent event) {
+        BigDecimal price = event.getPrice();
+        if (price == null) {
+            return true;
+        }
+        BigInteger unscaled = price.unscaledValue();
+        return price.scale() >= Short.MIN_VALUE && price.scale() <= Short.MAX_VALUE
+                && unscaled.compareTo(MIN_LONG) >= 0 && unscaled.compareTo(MAX_LONG) <= 0;
+    }
+
+    public static boolean isBinary(Headers headers, byte[] data) {
+        if (data == null || data.length < 2 || data[0] != MAGIC) {
+            return false;
+        }
+        Header header = headers == null ? null : headers.lastHeader(CODEC_HEADER);
+        if (header == null) {
+            return true;
+        }
+        byte[] version = header.value();
+        return version != null && version.length == 1 && version[0] == data[1];
+    }
+
+    public static byte[] encode(ProductCreatedEvent event) {
+        byte[] productId = utf8(event.getProductId());
+        byte[] title = utf8(event.getTitle());
+
+        int flags = 0;
+        int size = 3;
+        if (productId != null) {
+            flags |= HAS_PRODUCT_ID;
+            size += varIntSize(productId.length) + productId.length;
+        }
+        if (title != null) {
+            flags |= HAS_TITLE;
+            size += varIntSize(title.length) + title.length;
+        }
+        if (event.getPrice() != null) {
+            flags |= HAS_PRICE;
+            size += Long.BYTES + Short.BYTES;
+        }
+        if (event.getQuantity() != null) {
+            flags |= HAS_QUANTITY;
+            size += Integer.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC).put(VERSION).put((byte) flags);
+        if (productId != null) {
+            putBytes(buffer, productId);
+        }
+        if (title != null) {
+            putBytes(buffer, title);
+        }
+        if (event.getPrice() != null) {
+            buffer.putLong(event.getPrice().unscaledValue().longValue());
+            buffer.putShort((short) event.getPrice().scale());
+        }
+        if (event.getQuantity() != null) {
+            buffer.putInt(event.getQuantity());
+        }
+        return buffer.array();
+    }
+
+    public static ProductCreatedEvent decode(byte[] data) {
+        try {
+            return decode(ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException e) {
+            throw new SerializationException("Truncated binary ProductCreatedEvent", e);
+        }
+    }
+
+    private static ProductCreatedEvent decode(ByteBuffer buffer) {
+        if (buffer.get() != MAGIC) {
+            throw new SerializationException("Not a binary ProductCreatedEvent");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new SerializationException("Unsupported ProductCreatedEvent codec version " + version);
+        }
+        int flags = buffer.get();
+
+        ProductCreatedEvent event = new ProductCreatedEvent();
+        if ((flags & HAS_PRODUCT_ID) != 0) {
+            event.setProductId(getString(buffer));
+        }
+        if ((flags & HAS_TITLE) != 0) {
+            event.setTitle(getString(buffer));
+        }
+        if ((flags & HAS_PRICE) != 0) {
+            long unscaled = buffer.getLong();
+            event.setPrice(BigDecimal.valueOf(unscaled, buffer.getShort()));
+        }
+        if ((flags & HAS_QUANTITY) != 0) {
+            event.setQuantity(buffer.getInt());
+        }
+        return event;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        int length = bytes.length;
+        while ((length & ~0x7F) != 0) {
+            buffer.put((byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        buffer.put((byte) length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new SerializationException("Malformed length in binary ProductCreatedEvent");
+            }
+            b = buffer.get();
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new SerializationException("Truncated binary ProductCreatedEvent: string of " + length
+                    + " bytes with " + buffer.remaining() + " left");
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+}
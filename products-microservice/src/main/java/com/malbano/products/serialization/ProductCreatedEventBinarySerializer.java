@@ -0,0 +1,43 @@
+package com.malbano.products.serialization;
+
+import com.malbano.products.dto.ProductCreatedEvent;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+
+public class ProductCreatedEventBinarySerializer implements Serializer<ProductCreatedEvent> {
+
+    private static final byte[] CODEC_VERSION = {ProductCreatedEventBinaryCodec.VERSION};
+
+    private final JsonSerializer<ProductCreatedEvent> jsonFallback = new JsonSerializer<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        jsonFallback.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, ProductCreatedEvent data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, ProductCreatedEvent data) {
+        if (data == null) {
+            return null;
+        }
+        if (headers == null || !ProductCreatedEventBinaryCodec.canEncode(data)) {
+            return jsonFallback.serialize(topic, headers, data);
+        }
+        headers.remove(ProductCreatedEventBinaryCodec.CODEC_HEADER);
+        headers.add(ProductCreatedEventBinaryCodec.CODEC_HEADER, CODEC_VERSION);
+        return ProductCreatedEventBinaryCodec.encode(data);
+    }
+
+    @Override
+    public void close() {
+        jsonFallback.close();
+    }
+}
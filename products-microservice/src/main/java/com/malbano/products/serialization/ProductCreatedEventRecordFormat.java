@@ -0,0 +1,33 @@
+package com.malbano.products.serialization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.malbano.products.dto.ProductCreatedEvent;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Byte form of a {@link ProductCreatedEvent} kept in local files: the binary codec when the price fits it, JSON
+ * otherwise. JSON never starts with the codec's magic byte, so reading needs no extra marker.
+ */
+@Component
+public class ProductCreatedEventRecordFormat {
+
+    private final ObjectMapper objectMapper;
+
+    public ProductCreatedEventRecordFormat(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public byte[] encode(ProductCreatedEvent event) throws IOException {
+        return ProductCreatedEventBinaryCodec.canEncode(event)
+                ? ProductCreatedEventBinaryCodec.encode(event)
+                : objectMapper.writeValueAsBytes(event);
+    }
+
+    public ProductCreatedEvent decode(byte[] data) throws IOException {
+        return data.length > 0 && data[0] == ProductCreatedEventBinaryCodec.MAGIC
+                ? ProductCreatedEventBinaryCodec.decode(data)
+                : objectMapper.readValue(data, ProductCreatedEvent.class);
+    }
+}
@@ -0,0 +1,9 @@
+package com.malbano.products.service;
+
+import com.malbano.products.dto.CreateProductRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface NonBlockingProductService {
+    CompletableFuture<String> createProduct(CreateProductRequest request);
+}
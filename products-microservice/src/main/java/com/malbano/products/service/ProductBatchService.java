@@ -0,0 +1,11 @@
+package com.malbano.products.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.malbano.products.dto.BatchProductResult;
+import com.malbano.products.dto.CreateProductRequest;
+
+import java.util.List;
+
+public interface ProductBatchService {
+    List<BatchProductResult> createProducts(MappingIterator<CreateProductRequest> requests) throws Exception;
+}
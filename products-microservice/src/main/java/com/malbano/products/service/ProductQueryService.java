@@ -0,0 +1,12 @@
+package com.malbano.products.service;
+
+import com.malbano.products.dto.ProductPageResponse;
+import com.malbano.products.dto.ProductResponse;
+
+public interface ProductQueryService {
+    ProductResponse findProduct(String productId) throws Exception;
+
+    ProductPageResponse findProducts(int page, int size) throws Exception;
+
+    long lag();
+}
@@ -0,0 +1,61 @@
+package com.malbano.products.service.impl;
+
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.dto.ProductPageResponse;
+import com.malbano.products.dto.ProductResponse;
+import com.malbano.products.exceptions.ProductNotFoundException;
+import com.malbano.products.exceptions.ProductQueryUnavailableException;
+import com.malbano.products.readmodel.ProductReadModel;
+import com.malbano.products.service.ProductQueryService;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class ProductQueryServiceImpl implements ProductQueryService {
+
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final Optional<ProductReadModel> readModel;
+
+    public ProductQueryServiceImpl(Optional<ProductReadModel> readModel) {
+        this.readModel = readModel;
+    }
+
+    @Override
+    public ProductResponse findProduct(String productId) throws Exception {
+        ProductCreatedEvent event = readModel().find(productId);
+        if (event == null) {
+            throw new ProductNotFoundException("Product not found: " + productId);
+        }
+        return toResponse(event);
+    }
+
+    @Override
+    public ProductPageResponse findProducts(int page, int size) throws Exception {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        List<ProductResponse> content = new ArrayList<>(pageSize);
+        ProductReadModel model = readModel();
+        for (ProductCreatedEvent event : model.page(pageNumber, pageSize)) {
+            content.add(toResponse(event));
+        }
+        return new ProductPageResponse(content, pageNumber, pageSize, model.size(), model.lag());
+    }
+
+    @Override
+    public long lag() {
+        return readModel().lag();
+    }
+
+    private ProductReadModel readModel() {
+        return readModel.orElseThrow(() -> new ProductQueryUnavailableException(
+                "Product queries are disabled (app.products.read-model.enabled=false)"));
+    }
+
+    private ProductResponse toResponse(ProductCreatedEvent event) {
+        return new ProductResponse(event.getProductId(), event.getTitle(), event.getPrice(), event.getQuantity());
+    }
+}
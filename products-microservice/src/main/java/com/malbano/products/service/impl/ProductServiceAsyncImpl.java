@@ -1,50 +1,84 @@
 package com.malbano.products.service.impl;
 
-import com.malbano.products.config.KafkaConfig;
+import com.malbano.products.admission.AdaptiveSendLimiter;
+import com.malbano.products.config.ProducerProfiles;
 import com.malbano.products.dto.CreateProductRequest;
 import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.exceptions.ProductAdmissionRejectedException;
+import com.malbano.products.id.ProductIdGenerator;
+import com.malbano.products.metrics.ProductSendMetrics;
 import com.malbano.products.service.ProductService;
 import com.malbano.products.util.CreateProductEventUtil;
 import com.malbano.products.util.LogSuccessfulSendUtil;
+import com.malbano.products.util.ProductEventRecordUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
-import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 @Service("asyncProductService")
+@ConditionalOnProperty(name = "app.products.async.durable-log.enabled", havingValue = "false", matchIfMissing = true)
 public class ProductServiceAsyncImpl implements ProductService {
 
     private final KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate;
+    private final ProductIdGenerator productIdGenerator;
     private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
     private final LogSuccessfulSendUtil logUtil;
+    private final ProductSendMetrics sendMetrics;
+    private final AdaptiveSendLimiter sendLimiter;
+    private final long retryAfterSeconds;
 
-    public ProductServiceAsyncImpl(KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate, LogSuccessfulSendUtil logUtil) {
-        this.kafkaTemplate = kafkaTemplate;
+    public ProductServiceAsyncImpl(ProductIdGenerator productIdGenerator,
+                                   ProducerProfiles producerProfiles,
+                                   @Value("${app.products.async.producer-profile:high-throughput}") String producerProfile,
+                                   LogSuccessfulSendUtil logUtil,
+                                   ProductSendMetrics sendMetrics, AdaptiveSendLimiter sendLimiter,
+                                   @Value("${app.products.async.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.kafkaTemplate = producerProfiles.template(producerProfile);
+        this.productIdGenerator = productIdGenerator;
         this.logUtil = logUtil;
+        this.sendMetrics = sendMetrics;
+        this.sendLimiter = sendLimiter;
+        this.retryAfterSeconds = retryAfterSeconds;
     }
 
     @Override
     public String createProduct(CreateProductRequest request) {
-        String productId = UUID.randomUUID().toString();
+        String productId = productIdGenerator.nextId();
         ProductCreatedEvent event = CreateProductEventUtil.createProductEvent(productId, request);
 
-        CompletableFuture<SendResult<String, ProductCreatedEvent>> future =
-                kafkaTemplate.send(KafkaConfig.PRODUCT_CREATED_EVENTS_TOPIC, productId, event);
+        if (!sendLimiter.tryAcquire()) {
+            throw new ProductAdmissionRejectedException(
+                    "Too many products waiting for broker acknowledgement, retry later", retryAfterSeconds);
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, ProductCreatedEvent>> future;
+        try {
+            future = kafkaTemplate.send(ProductEventRecordUtil.createProductRecord(event, request.getPriority()));
+        } catch (RuntimeException e) {
+            sendLimiter.release(start, false);
+            throw e;
+        }
 
         future.whenComplete((result, exception) -> {
+            sendLimiter.release(start, exception == null);
             if (exception != null) {
+                sendMetrics.recordFailure(ProductSendMetrics.SendMode.ASYNC, exception);
                 LOGGER.error("Failed to send message asynchronously for product {}: {}",
                         productId, exception.getMessage(), exception);
             } else {
+                sendMetrics.recordAck(ProductSendMetrics.SendMode.ASYNC, result.getRecordMetadata().partition(), start);
                 logUtil.logSuccessfulSend(result, false);
             }
         });
 
-        LOGGER.info("Returning product id asynchronously: {}", productId);
+        LOGGER.debug("Returning product id asynchronously: {}", productId);
         return productId;
     }
 }
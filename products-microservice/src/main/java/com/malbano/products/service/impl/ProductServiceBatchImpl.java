@@ -0,0 +1,105 @@
+package com.malbano.products.service.impl;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.malbano.products.config.ProducerProfiles;
+import com.malbano.products.dto.BatchProductResult;
+import com.malbano.products.dto.CreateProductRequest;
+import com.malbano.products.dto.DeliveryStatus;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.id.ProductIdGenerator;
+import com.malbano.products.metrics.ProductSendMetrics;
+import com.malbano.products.service.ProductBatchService;
+import com.malbano.products.util.CreateProductEventUtil;
+import com.malbano.products.util.ProductEventRecordUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class ProductServiceBatchImpl implements ProductBatchService {
+
+    private static final int TIMEOUT_SECONDS = 60;
+    private final KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate;
+    private final ProductIdGenerator productIdGenerator;
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final ProductSendMetrics sendMetrics;
+
+    public ProductServiceBatchImpl(ProductIdGenerator productIdGenerator,
+                                   ProducerProfiles producerProfiles,
+                                   @Value("${app.products.batch.producer-profile:high-throughput}") String producerProfile,
+                                   ProductSendMetrics sendMetrics) {
+        this.kafkaTemplate = producerProfiles.template(producerProfile);
+        this.productIdGenerator = productIdGenerator;
+        this.sendMetrics = sendMetrics;
+    }
+
+    @Override
+    public List<BatchProductResult> createProducts(MappingIterator<CreateProductRequest> requests) throws Exception {
+        List<String> productIds = new ArrayList<>();
+        List<CompletableFuture<BatchProductResult>> futures = new ArrayList<>();
+
+        try {
+            while (requests.hasNextValue()) {
+                CreateProductRequest request = requests.nextValue();
+                String productId = productIdGenerator.nextId();
+                productIds.add(productId);
+                futures.add(send(productId, request));
+            }
+        } catch (IOException e) {
+            LOGGER.error("Invalid product at batch index {}: {}", futures.size(), e.getMessage());
+            productIds.add(null);
+            futures.add(CompletableFuture.completedFuture(new BatchProductResult(null, DeliveryStatus.FAILED,
+                    "Invalid product at index " + futures.size() + ": " + e.getMessage())));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                    .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Batch of {} products not fully acknowledged after {} seconds", futures.size(), TIMEOUT_SECONDS);
+        }
+
+        List<BatchProductResult> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            results.add(futures.get(i).getNow(
+                    new BatchProductResult(productIds.get(i), DeliveryStatus.TIMEOUT, "Acknowledgement timed out")));
+        }
+
+        LOGGER.info("Batch of {} products published", results.size());
+        return results;
+    }
+
+    /**
+     * Never throws: a failure to build or hand over the record (serialization, buffer full after
+     * {@code max.block.ms}, producer closed) becomes a FAILED result for this index, like a failed acknowledgement.
+     */
+    private CompletableFuture<BatchProductResult> send(String productId, CreateProductRequest request) {
+        long start = System.nanoTime();
+        CompletableFuture<SendResult<String, ProductCreatedEvent>> sent;
+        try {
+            ProductCreatedEvent event = CreateProductEventUtil.createProductEvent(productId, request);
+            sent = kafkaTemplate.send(ProductEventRecordUtil.createProductRecord(event, request.getPriority()));
+        } catch (RuntimeException e) {
+            LOGGER.error("Product {} not handed to the producer: {}", productId, e.getMessage());
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.handle((result, exception) -> {
+            if (exception != null) {
+                sendMetrics.recordFailure(ProductSendMetrics.SendMode.BATCH, exception);
+                return new BatchProductResult(productId, DeliveryStatus.FAILED, exception.getMessage());
+            }
+            sendMetrics.recordAck(ProductSendMetrics.SendMode.BATCH, result.getRecordMetadata().partition(), start);
+            return new BatchProductResult(productId, DeliveryStatus.SENT, null);
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package com.malbano.products.service.impl;
+
+import com.malbano.products.dto.CreateProductRequest;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.exceptions.ProductDurabilityPendingException;
+import com.malbano.products.id.ProductIdGenerator;
+import com.malbano.products.service.ProductService;
+import com.malbano.products.util.CreateProductEventUtil;
+import com.malbano.products.wal.ProductEventJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@Service("asyncProductService")
+@ConditionalOnProperty(name = "app.products.async.durable-log.enabled", havingValue = "true")
+public class ProductServiceDurableAsyncImpl implements ProductService {
+
+    private final ProductEventJournal journal;
+    private final ProductIdGenerator productIdGenerator;
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final long fsyncTimeoutMs;
+
+    public ProductServiceDurableAsyncImpl(ProductIdGenerator productIdGenerator,
+                                          ProductEventJournal journal,
+                                          @Value("${app.products.async.durable-log.fsync-timeout-ms:5000}") long fsyncTimeoutMs) {
+        this.journal = journal;
+        this.productIdGenerator = productIdGenerator;
+        this.fsyncTimeoutMs = fsyncTimeoutMs;
+    }
+
+    @Override
+    public String createProduct(CreateProductRequest request) throws Exception {
+        String productId = productIdGenerator.nextId();
+        ProductCreatedEvent event = CreateProductEventUtil.createProductEvent(productId, request);
+
+        long position = journal.append(event, request.getPriority());
+        if (!journal.awaitDurable(position, fsyncTimeoutMs)) {
+            // the entry is already in the log and the relay publishes it once the fsync completes
+            LOGGER.warn("Write-ahead log fsync timed out for product {}, durability pending", productId);
+            throw new ProductDurabilityPendingException(
+                    "Product " + productId + " accepted, write-ahead log fsync still pending", productId);
+        }
+
+        LOGGER.debug("Returning product id after durable append: {}", productId);
+        return productId;
+    }
+}
@@ -0,0 +1,81 @@
+package com.malbano.products.service.impl;
+
+import com.malbano.products.config.ProducerProfiles;
+import com.malbano.products.dto.CreateProductRequest;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.exceptions.ProductPublishTimeoutException;
+import com.malbano.products.exceptions.ProductPublishUnavailableException;
+import com.malbano.products.id.ProductIdGenerator;
+import com.malbano.products.metrics.ProductSendMetrics;
+import com.malbano.products.service.NonBlockingProductService;
+import com.malbano.products.util.CreateProductEventUtil;
+import com.malbano.products.util.LogSuccessfulSendUtil;
+import com.malbano.products.util.ProductEventRecordUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class ProductServiceNonBlockingImpl implements NonBlockingProductService {
+
+    private final KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate;
+    private final ProductIdGenerator productIdGenerator;
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final LogSuccessfulSendUtil logUtil;
+    private final ProductSendMetrics sendMetrics;
+    private final long ackTimeoutMs;
+    private final Executor sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ProductServiceNonBlockingImpl(ProductIdGenerator productIdGenerator,
+                                         ProducerProfiles producerProfiles,
+                                         @Value("${app.products.sync.producer-profile:low-latency}") String producerProfile,
+                                         LogSuccessfulSendUtil logUtil,
+                                         ProductSendMetrics sendMetrics,
+                                         @Value("${app.products.sync.ack-timeout-ms:10000}") long ackTimeoutMs) {
+        this.kafkaTemplate = producerProfiles.template(producerProfile);
+        this.productIdGenerator = productIdGenerator;
+        this.logUtil = logUtil;
+        this.sendMetrics = sendMetrics;
+        this.ackTimeoutMs = ackTimeoutMs;
+    }
+
+    @Override
+    public CompletableFuture<String> createProduct(CreateProductRequest request) {
+        String productId = productIdGenerator.nextId();
+        ProductCreatedEvent event = CreateProductEventUtil.createProductEvent(productId, request);
+
+        long start = System.nanoTime();
+        // send() itself may block on metadata or a full buffer for max.block.ms, so it runs off the servlet thread
+        return CompletableFuture
+                .supplyAsync(() -> kafkaTemplate.send(ProductEventRecordUtil.createProductRecord(event, request.getPriority())), sendExecutor)
+                .thenCompose(future -> future)
+                .orTimeout(ackTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((result, exception) -> {
+                    if (exception == null) {
+                        sendMetrics.recordAck(ProductSendMetrics.SendMode.SYNC, result.getRecordMetadata().partition(), start);
+                        logUtil.logSuccessfulSend(result, true);
+                        LOGGER.debug("Returning product id after acknowledgement: {}", productId);
+                        return productId;
+                    }
+                    Throwable cause = exception instanceof CompletionException && exception.getCause() != null
+                            ? exception.getCause()
+                            : exception;
+                    sendMetrics.recordFailure(ProductSendMetrics.SendMode.SYNC, cause);
+                    LOGGER.error("Failed to send message for product {}: {}", productId, cause.getMessage());
+                    if (cause instanceof TimeoutException) {
+                        throw new ProductPublishTimeoutException(
+                                "Broker did not acknowledge product " + productId + " within " + ackTimeoutMs + " ms", cause);
+                    }
+                    throw new ProductPublishUnavailableException("Failed to publish product creation event", cause);
+                });
+    }
+}
@@ -1,50 +1,64 @@
 package com.malbano.products.service.impl;
 
-import com.malbano.products.config.KafkaConfig;
+import com.malbano.products.config.ProducerProfiles;
 import com.malbano.products.dto.CreateProductRequest;
 import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.id.ProductIdGenerator;
+import com.malbano.products.metrics.ProductSendMetrics;
 import com.malbano.products.service.ProductService;
 import com.malbano.products.util.CreateProductEventUtil;
 import com.malbano.products.util.LogSuccessfulSendUtil;
-import org.apache.kafka.common.errors.TimeoutException;
+import com.malbano.products.util.ProductEventRecordUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
-import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service("syncProductService")
 public class ProductServiceSyncImpl implements ProductService {
 
     private static final int TIMEOUT_SECONDS = 30;
     private final KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate;
+    private final ProductIdGenerator productIdGenerator;
     private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
     private final LogSuccessfulSendUtil logUtil;
+    private final ProductSendMetrics sendMetrics;
 
-    public ProductServiceSyncImpl(KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate, LogSuccessfulSendUtil logUtil) {
-        this.kafkaTemplate = kafkaTemplate;
+    public ProductServiceSyncImpl(ProductIdGenerator productIdGenerator,
+                                  ProducerProfiles producerProfiles,
+                                  @Value("${app.products.sync.producer-profile:low-latency}") String producerProfile,
+                                  LogSuccessfulSendUtil logUtil,
+                                  ProductSendMetrics sendMetrics) {
+        this.kafkaTemplate = producerProfiles.template(producerProfile);
+        this.productIdGenerator = productIdGenerator;
         this.logUtil = logUtil;
+        this.sendMetrics = sendMetrics;
     }
 
     @Override
     public String createProduct(CreateProductRequest request) throws Exception {
-        String productId = UUID.randomUUID().toString();
+        String productId = productIdGenerator.nextId();
         ProductCreatedEvent event = CreateProductEventUtil.createProductEvent(productId, request);
 
+        long start = System.nanoTime();
         try {
             SendResult<String, ProductCreatedEvent> result = kafkaTemplate
-                    .send(KafkaConfig.PRODUCT_CREATED_EVENTS_TOPIC, productId, event)
+                    .send(ProductEventRecordUtil.createProductRecord(event, request.getPriority()))
                     .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
+            sendMetrics.recordAck(ProductSendMetrics.SendMode.SYNC, result.getRecordMetadata().partition(), start);
             logUtil.logSuccessfulSend(result, true);
-            LOGGER.info("Returning product id synchronously: {}", productId);
+            LOGGER.debug("Returning product id synchronously: {}", productId);
             return productId;
 
         } catch (ExecutionException | InterruptedException | TimeoutException e) {
+            sendMetrics.recordFailure(ProductSendMetrics.SendMode.SYNC, e);
             LOGGER.error("Failed to send message synchronously for product {}: {}", productId, e.getMessage());
             throw new Exception("Failed to publish product creation event", e);
         }
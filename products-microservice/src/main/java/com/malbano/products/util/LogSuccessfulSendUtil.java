@@ -1,20 +1,47 @@
 package com.malbano.products.util;
 
 import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.logging.HotPathLog;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.support.ProducerListener;
 import org.springframework.kafka.support.SendResult;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
+/**
+ * Sampled lines for successful sends. Registered as a {@link ProducerListener} of the product templates to count
+ * failed sends under the partition the producer assigned, which the exception seen by the caller does not carry.
+ */
 @Component
-public class LogSuccessfulSendUtil {
+public class LogSuccessfulSendUtil implements ProducerListener<String, ProductCreatedEvent> {
     private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final HotPathLog hotPathLog;
+
+    public LogSuccessfulSendUtil(HotPathLog hotPathLog) {
+        this.hotPathLog = hotPathLog;
+    }
+
     public void logSuccessfulSend(SendResult<String, ProductCreatedEvent> result, boolean isSync) {
-        String mode = isSync ? "synchronously" : "asynchronously";
-        LOGGER.info("Message sent {} successfully: Topic={}, Partition={}, Offset={}",
-                mode,
-                result.getRecordMetadata().topic(),
-                result.getRecordMetadata().partition(),
-                result.getRecordMetadata().offset());
+        RecordMetadata metadata = result.getRecordMetadata();
+        hotPathLog.record(metadata.topic(), metadata.partition(), metadata.offset());
+        if (hotPathLog.shouldLogEvent(LOGGER)) {
+            String mode = isSync ? "synchronously" : "asynchronously";
+            LOGGER.info("Message sent {} successfully: Topic={}, Partition={}, Offset={}",
+                    mode,
+                    metadata.topic(),
+                    metadata.partition(),
+                    metadata.offset());
+        }
+    }
+
+    @Override
+    public void onError(ProducerRecord<String, ProductCreatedEvent> record, @Nullable RecordMetadata metadata,
+                        Exception exception) {
+        int partition = metadata != null && metadata.partition() >= 0 ? metadata.partition()
+                : record.partition() != null ? record.partition() : HotPathLog.UNKNOWN_PARTITION;
+        hotPathLog.recordError(record.topic(), partition);
     }
 }
@@ -0,0 +1,62 @@
+package com.malbano.products.util;
+
+import com.malbano.products.config.KafkaConfig;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.dto.ProductPriority;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds product topic records with routing headers, so consumers can filter, deduplicate and route records
+ * without parsing the payload. Header values are UTF-8 strings.
+ */
+public class ProductEventRecordUtil {
+
+    public static final String EVENT_TYPE_HEADER = "event-type";
+    public static final String SCHEMA_VERSION_HEADER = "schema-version";
+    public static final String PRODUCT_ID_HEADER = "product-id";
+    public static final String CREATED_AT_HEADER = "created-at";
+    public static final String PRODUCT_CREATED_EVENT_TYPE = "ProductCreated";
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final byte[] PRODUCT_CREATED_EVENT_TYPE_BYTES =
+            PRODUCT_CREATED_EVENT_TYPE.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SCHEMA_VERSION_BYTES = String.valueOf(SCHEMA_VERSION).getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * @return a product topic record keyed by the product id, with {@code created-at} set to the current epoch
+     * milliseconds
+     */
+    public static ProducerRecord<String, ProductCreatedEvent> createProductRecord(ProductCreatedEvent event) {
+        return createProductRecord(event, ProductPriority.NORMAL);
+    }
+
+    /**
+     * @return a record like {@link #createProductRecord(ProductCreatedEvent)} on the topic of the priority lane;
+     * {@code null} is the normal lane
+     */
+    public static ProducerRecord<String, ProductCreatedEvent> createProductRecord(ProductCreatedEvent event,
+                                                                                  ProductPriority priority) {
+        ProducerRecord<String, ProductCreatedEvent> record =
+                new ProducerRecord<>(topic(priority), event.getProductId(), event);
+        Headers headers = record.headers();
+        headers.add(EVENT_TYPE_HEADER, PRODUCT_CREATED_EVENT_TYPE_BYTES);
+        headers.add(SCHEMA_VERSION_HEADER, SCHEMA_VERSION_BYTES);
+        headers.add(PRODUCT_ID_HEADER, event.getProductId().getBytes(StandardCharsets.UTF_8));
+        headers.add(CREATED_AT_HEADER, Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+        return record;
+    }
+
+    public static String topic(ProductPriority priority) {
+        if (priority == null) {
+            return KafkaConfig.PRODUCT_CREATED_EVENTS_TOPIC;
+        }
+        return switch (priority) {
+            case HIGH -> KafkaConfig.HIGH_PRIORITY_PRODUCT_CREATED_EVENTS_TOPIC;
+            case NORMAL -> KafkaConfig.PRODUCT_CREATED_EVENTS_TOPIC;
+            case LOW -> KafkaConfig.LOW_PRIORITY_PRODUCT_CREATED_EVENTS_TOPIC;
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package com.malbano.products.wal;
+
+/**
+ * A record at {@link #position()} that fails its checksum, has an impossible length or cannot be decoded. Reading
+ * it again gives the same result; {@link SegmentedWriteAheadLog#skipCorrupt} moves past it.
+ */
+public class CorruptWalRecordException extends IllegalStateException {
+
+    private final long position;
+
+    public CorruptWalRecordException(long position, String message) {
+        super(message);
+        this.position = position;
+    }
+
+    public CorruptWalRecordException(long position, String message, Throwable cause) {
+        super(message, cause);
+        this.position = position;
+    }
+
+    public long position() {
+        return position;
+    }
+}
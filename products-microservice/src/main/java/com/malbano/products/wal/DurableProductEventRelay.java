@@ -0,0 +1,206 @@
+package com.malbano.products.wal;
+
+import com.malbano.products.config.ProducerProfiles;
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.metrics.ProductSendMetrics;
+import com.malbano.products.util.ProductEventRecordUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the {@link ProductEventJournal} to Kafka in batches. The journal checkpoint only moves past entries whose
+ * send was acknowledged, so a backlog left by a crash or a broker outage is replayed on the next start. When part of
+ * a batch fails, the checkpoint moves up to the first failed entry and the relay resumes from there.
+ * <p>
+ * A damaged or undecodable entry cannot be sent and would stop the relay for good; it is skipped instead, its bytes
+ * kept in a {@code .corrupt} file next to the segments, logged and counted in {@code product.wal.corrupt.records}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.products.async.durable-log.enabled", havingValue = "true")
+public class DurableProductEventRelay implements SmartLifecycle {
+
+    private static final long IDLE_WAIT_MS = 100;
+    private static final long MAX_BACKOFF_MS = 30000;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(this.getClass());
+    private final ProductEventJournal journal;
+    private final KafkaTemplate<String, ProductCreatedEvent> kafkaTemplate;
+    private final ProductSendMetrics sendMetrics;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final Counter corruptRecords;
+
+    private volatile boolean running;
+    private Thread relayThread;
+
+    public DurableProductEventRelay(ProductEventJournal journal,
+                                    ProducerProfiles producerProfiles,
+                                    @Value("${app.products.async.producer-profile:high-throughput}") String producerProfile,
+                                    ProductSendMetrics sendMetrics,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.products.async.durable-log.relay.batch-size:500}") int batchSize,
+                                    @Value("${app.products.async.durable-log.relay.send-timeout-ms:30000}") long sendTimeoutMs) {
+        this.journal = journal;
+        this.kafkaTemplate = producerProfiles.template(producerProfile);
+        this.sendMetrics = sendMetrics;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.corruptRecords = Counter.builder("product.wal.corrupt.records")
+                .description("Write-ahead log entries skipped because they were damaged or could not be decoded")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        relayThread = new Thread(this::relay, "wal-relay");
+        relayThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        relayThread.interrupt();
+        try {
+            relayThread.join(sendTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void relay() {
+        long cursor = journal.checkpoint();
+        if (journal.durablePosition() > cursor) {
+            LOGGER.info("Replaying write-ahead log backlog of {} bytes", journal.durablePosition() - cursor);
+        }
+
+        List<ProductEventJournal.Entry> batch = new ArrayList<>(batchSize);
+        long backoffMs = 1000;
+        while (running) {
+            try {
+                batch.clear();
+                long next = journal.read(cursor, batchSize, batch);
+                if (batch.isEmpty()) {
+                    journal.awaitDurable(cursor + 1, IDLE_WAIT_MS);
+                    continue;
+                }
+
+                List<CompletableFuture<?>> futures = new ArrayList<>(batch.size());
+                for (ProductEventJournal.Entry entry : batch) {
+                    long start = System.nanoTime();
+                    try {
+                        futures.add(kafkaTemplate.send(ProductEventRecordUtil.createProductRecord(entry.event(), entry.priority()))
+                                .whenComplete((result, exception) -> {
+                                    if (exception != null) {
+                                        sendMetrics.recordFailure(ProductSendMetrics.SendMode.ASYNC, exception);
+                                    } else {
+                                        sendMetrics.recordAck(ProductSendMetrics.SendMode.ASYNC,
+                                                result.getRecordMetadata().partition(), start);
+                                    }
+                                }));
+                    } catch (RuntimeException e) {
+                        // the entries after it are not sent, the retry starts here
+                        sendMetrics.recordFailure(ProductSendMetrics.SendMode.ASYNC, e);
+                        futures.add(CompletableFuture.failedFuture(e));
+                        break;
+                    }
+                }
+                try {
+                    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                            .get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | TimeoutException e) {
+                    cursor = acknowledgeSent(cursor, batch, futures);
+                    throw e;
+                }
+
+                journal.acknowledge(next);
+                cursor = next;
+                backoffMs = 1000;
+            } catch (CorruptWalRecordException e) {
+                try {
+                    cursor = skipCorrupt(e);
+                } catch (IOException skipFailure) {
+                    LOGGER.error("Failed to skip corrupt write-ahead log entry at {}, retrying in {} ms: {}",
+                            e.position(), backoffMs, skipFailure.getMessage());
+                    if (!sleep(backoffMs)) {
+                        return;
+                    }
+                    backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.error("Failed to relay write-ahead log batch, retrying in {} ms: {}", backoffMs, e.getMessage());
+                if (!sleep(backoffMs)) {
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    private long skipCorrupt(CorruptWalRecordException corruption) throws IOException {
+        long next = journal.skipCorrupt(corruption.position());
+        journal.acknowledge(next);
+        corruptRecords.increment();
+        LOGGER.error("Skipped {} bytes of the write-ahead log at position {}, kept in a .corrupt file: {}",
+                next - corruption.position(), corruption.position(), corruption.getMessage());
+        return next;
+    }
+
+    /**
+     * @return false if the relay was interrupted
+     */
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Moves the checkpoint past the entries acknowledged before the first failed or pending send, so the retry
+     * starts at that entry instead of sending the whole batch again.
+     *
+     * @return the position to resume from
+     */
+    private long acknowledgeSent(long cursor, List<ProductEventJournal.Entry> batch,
+                                 List<CompletableFuture<?>> futures) throws IOException {
+        long acknowledged = cursor;
+        for (int i = 0; i < futures.size(); i++) {
+            CompletableFuture<?> future = futures.get(i);
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                break;
+            }
+            acknowledged = batch.get(i).next();
+        }
+        if (acknowledged != cursor) {
+            journal.acknowledge(acknowledged);
+        }
+        return acknowledged;
+    }
+}
@@ -0,0 +1,130 @@
+package com.malbano.products.wal;
+
+import com.malbano.products.dto.ProductCreatedEvent;
+import com.malbano.products.dto.ProductPriority;
+import com.malbano.products.serialization.ProductCreatedEventRecordFormat;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProductCreatedEvent}s on top of the {@link SegmentedWriteAheadLog}, stored in the
+ * {@link ProductCreatedEventRecordFormat} after a two byte prefix with the {@link ProductPriority} of the request.
+ * Entries written before the prefix existed (starting with the codec's magic byte or JSON) are read as
+ * {@code NORMAL}, the lane they were always relayed to.
+ */
+@Component
+@ConditionalOnProperty(name = "app.products.async.durable-log.enabled", havingValue = "true")
+public class ProductEventJournal {
+
+    // neither the binary codec's magic byte nor the start of a JSON document
+    private static final byte PRIORITY_MARKER = (byte) 0xB8;
+    private static final ProductPriority[] PRIORITIES = ProductPriority.values();
+
+    private final SegmentedWriteAheadLog log;
+    private final ProductCreatedEventRecordFormat recordFormat;
+
+    public ProductEventJournal(@Value("${app.products.async.durable-log.directory}") Path directory,
+                               @Value("${app.products.async.durable-log.segment-size-mb:64}") int segmentSizeMb,
+                               ProductCreatedEventRecordFormat recordFormat) throws IOException {
+        long segmentSize = segmentSizeMb * 1024L * 1024L;
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("app.products.async.durable-log.segment-size-mb must be between 1 and 2047");
+        }
+        this.log = new SegmentedWriteAheadLog(directory, (int) segmentSize);
+        this.recordFormat = recordFormat;
+    }
+
+    /**
+     * @param next the log position right after this entry
+     */
+    public record Entry(ProductCreatedEvent event, ProductPriority priority, long next) {
+    }
+
+    /**
+     * @param priority {@code null} is the normal lane
+     */
+    public long append(ProductCreatedEvent event, ProductPriority priority) throws IOException {
+        byte[] encoded = recordFormat.encode(event);
+        byte[] payload = new byte[encoded.length + 2];
+        payload[0] = PRIORITY_MARKER;
+        payload[1] = (byte) (priority != null ? priority : ProductPriority.NORMAL).ordinal();
+        System.arraycopy(encoded, 0, payload, 2, encoded.length);
+        return log.append(payload);
+    }
+
+    public boolean awaitDurable(long position, long timeoutMs) throws InterruptedException {
+        return log.awaitDurable(position, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads up to {@code maxEvents} entries and returns the position after the last one. Stops before a damaged or
+     * undecodable entry, or throws {@link CorruptWalRecordException} when it is the first one.
+     */
+    public long read(long position, int maxEvents, List<Entry> entries) {
+        List<byte[]> payloads = new ArrayList<>(1);
+        while (entries.size() < maxEvents) {
+            payloads.clear();
+            long next;
+            try {
+                next = log.read(position, 1, payloads);
+                if (payloads.isEmpty()) {
+                    return next;
+                }
+                entries.add(decode(payloads.get(0), next));
+            } catch (IOException | RuntimeException e) {
+                if (!entries.isEmpty()) {
+                    return position;
+                }
+                throw e instanceof CorruptWalRecordException corrupt ? corrupt
+                        : new CorruptWalRecordException(position, "Undecodable WAL entry at position " + position + ": "
+                        + e.getMessage(), e);
+            }
+            position = next;
+        }
+        return position;
+    }
+
+    /**
+     * Moves past the damaged entry at {@code position}, see {@link SegmentedWriteAheadLog#skipCorrupt}.
+     */
+    public long skipCorrupt(long position) throws IOException {
+        return log.skipCorrupt(position);
+    }
+
+    private Entry decode(byte[] payload, long next) throws IOException {
+        if (payload.length < 2 || payload[0] != PRIORITY_MARKER) {
+            return new Entry(recordFormat.decode(payload), ProductPriority.NORMAL, next);
+        }
+        if (payload[1] < 0 || payload[1] >= PRIORITIES.length) {
+            throw new IOException("Unknown priority " + payload[1] + " in write-ahead log entry");
+        }
+        return new Entry(recordFormat.decode(Arrays.copyOfRange(payload, 2, payload.length)), PRIORITIES[payload[1]],
+                next);
+    }
+
+    public void acknowledge(long position) throws IOException {
+        log.acknowledge(position);
+    }
+
+    public long checkpoint() {
+        return log.checkpoint();
+    }
+
+    public long durablePosition() {
+        return log.durablePosition();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        log.close();
+    }
+}
@@ -0,0 +1,374 @@
+package com.malbano.products.wal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of memory-mapped, fixed-size segment files. Records are {@code [length][crc32][payload]} and are
+ * addressed by a global position ({@code segment base + offset}); segment files are named after their base.
+ * <p>
+ * A single flusher thread forces dirty segments to disk and advances the durable position, so every append waiting
+ * in {@link #awaitDurable} while a force is running is covered by the next one (group commit). Readers only see
+ * records below the durable position. The reader position is persisted with {@link #acknowledge}, which also
+ * deletes fully acknowledged segments. A damaged record stops {@link #read} at its position until
+ * {@link #skipCorrupt} moves past it.
+ */
+public class SegmentedWriteAheadLog implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "relay.checkpoint";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private record Segment(long base, Path path, MappedByteBuffer buffer) {
+        int size() {
+            return buffer.capacity();
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition durableAdvanced = lock.newCondition();
+    private final List<Segment> rolledUnflushed = new ArrayList<>();
+    private final FileChannel checkpointChannel;
+    private final Thread flusher;
+
+    private Segment active;
+    private long writePosition;
+    private volatile long durablePosition;
+    private volatile long checkpoint;
+    private volatile boolean running = true;
+
+    public SegmentedWriteAheadLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = path.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(base, map(path, Files.size(path)));
+            }
+        }
+
+        checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer stored = ByteBuffer.allocate(Long.BYTES);
+        checkpoint = checkpointChannel.read(stored, 0) == Long.BYTES
+                ? stored.flip().getLong()
+                : segments.isEmpty() ? 0 : segments.firstKey();
+
+        if (segments.isEmpty()) {
+            active = openSegment(checkpoint);
+            writePosition = checkpoint;
+        } else {
+            active = segments.lastEntry().getValue();
+            writePosition = active.base() + recover(active);
+        }
+        durablePosition = writePosition;
+
+        flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends a record and returns the log position right after it, to be passed to {@link #awaitDurable}.
+     */
+    public long append(byte[] payload) {
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize + HEADER_SIZE > segmentSize) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit a WAL segment");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int checksum = (int) crc.getValue();
+
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            int offset = (int) (writePosition - active.base());
+            if (offset + recordSize + HEADER_SIZE > active.size()) {
+                roll();
+                offset = 0;
+            }
+            MappedByteBuffer buffer = active.buffer();
+            buffer.put(offset + HEADER_SIZE, payload);
+            buffer.putInt(offset + Integer.BYTES, checksum);
+            buffer.putInt(offset, payload.length);
+            writePosition = active.base() + offset + recordSize;
+            flushRequested.signal();
+            return writePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean awaitDurable(long position, long timeout, TimeUnit unit) throws InterruptedException {
+        if (durablePosition >= position) {
+            return true;
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (durablePosition < position) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = durableAdvanced.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads up to {@code maxRecords} durable records starting at {@code position} and returns the position after
+     * the last record read. Stops before a damaged record, or throws {@link CorruptWalRecordException} when it is the
+     * first one.
+     */
+    public long read(long position, int maxRecords, List<byte[]> records) {
+        long limit = durablePosition;
+        while (records.size() < maxRecords && position < limit) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+            if (entry == null) {
+                Long first = segments.ceilingKey(position);
+                if (first == null) {
+                    break;
+                }
+                position = first;
+                continue;
+            }
+            Segment segment = entry.getValue();
+            int offset = (int) (position - segment.base());
+            int length = offset + HEADER_SIZE <= segment.size() ? segment.buffer().getInt(offset) : 0;
+            if (length == 0) {
+                Long next = segments.higherKey(segment.base());
+                if (next == null) {
+                    break;
+                }
+                position = next;
+                continue;
+            }
+            byte[] payload = length > 0 && (long) offset + HEADER_SIZE + length <= segment.size()
+                    ? new byte[length]
+                    : null;
+            if (payload != null) {
+                segment.buffer().get(offset + HEADER_SIZE, payload);
+            }
+            if (payload == null || !checksumMatches(payload, segment.buffer().getInt(offset + Integer.BYTES))) {
+                if (!records.isEmpty()) {
+                    break;
+                }
+                throw new CorruptWalRecordException(position, "Corrupt WAL record at position " + position);
+            }
+            records.add(payload);
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Finds the first intact record after the damaged one at {@code position}: the next offset of its segment that
+     * holds a plausible length and a matching checksum, else the start of the next segment. The bytes skipped are
+     * copied to {@code <position>.corrupt} in the log directory for inspection.
+     *
+     * @return the position to read from next
+     */
+    public long skipCorrupt(long position) throws IOException {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+        if (entry == null) {
+            return position;
+        }
+        Segment segment = entry.getValue();
+        int from = (int) (position - segment.base());
+        int end = (int) (Math.min(durablePosition, segment.base() + segment.size()) - segment.base());
+        int offset = from + 1;
+        while (offset + HEADER_SIZE <= end && !intactRecordAt(segment, offset, end)) {
+            offset++;
+        }
+
+        long next;
+        if (offset + HEADER_SIZE <= end) {
+            next = segment.base() + offset;
+        } else {
+            offset = end;
+            Long nextSegment = segments.higherKey(segment.base());
+            next = nextSegment != null ? nextSegment : segment.base() + end;
+        }
+        byte[] skipped = new byte[Math.max(0, offset - from)];
+        segment.buffer().get(from, skipped);
+        Files.write(directory.resolve(String.format("%020d%s", position, CORRUPT_SUFFIX)), skipped);
+        return next;
+    }
+
+    /**
+     * Persists {@code position} as the reader checkpoint and deletes the segments that lie entirely before it.
+     */
+    public void acknowledge(long position) throws IOException {
+        checkpointChannel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, position), 0);
+        checkpointChannel.force(false);
+        checkpoint = position;
+
+        for (Segment segment : segments.headMap(position, false).values()) {
+            Long next = segments.higherKey(segment.base());
+            if (next != null && next <= position && segment != active) {
+                segments.remove(segment.base());
+                Files.deleteIfExists(segment.path());
+            }
+        }
+    }
+
+    public long checkpoint() {
+        return checkpoint;
+    }
+
+    public long durablePosition() {
+        return durablePosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            running = false;
+            flushRequested.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        active.buffer().force();
+        checkpointChannel.close();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            List<Segment> toForce;
+            lock.lock();
+            try {
+                while (running && writePosition == durablePosition) {
+                    flushRequested.awaitUninterruptibly();
+                }
+                if (!running && writePosition == durablePosition) {
+                    return;
+                }
+                target = writePosition;
+                toForce = new ArrayList<>(rolledUnflushed);
+                rolledUnflushed.clear();
+                toForce.add(active);
+            } finally {
+                lock.unlock();
+            }
+
+            for (Segment segment : toForce) {
+                segment.buffer().force();
+            }
+
+            lock.lock();
+            try {
+                durablePosition = target;
+                durableAdvanced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void roll() {
+        rolledUnflushed.add(active);
+        active = openSegment(active.base() + active.size());
+        writePosition = active.base();
+    }
+
+    private Segment openSegment(long base) {
+        Path path = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        try {
+            Segment segment = map(path, segmentSize);
+            segments.put(base, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create WAL segment " + path, e);
+        }
+    }
+
+    private static Segment map(Path path, long size) throws IOException {
+        String name = path.getFileName().toString();
+        long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(base, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private static int recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer();
+        int offset = 0;
+        while (offset + HEADER_SIZE <= segment.size()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || (long) offset + HEADER_SIZE + length > segment.size()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_SIZE, payload);
+            if (!checksumMatches(payload, buffer.getInt(offset + Integer.BYTES))) {
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        // drop a torn tail so it cannot be mistaken for records later; untouched pages are skipped, not rewritten
+        int i = offset;
+        for (; i < segment.size() && (i & (Long.BYTES - 1)) != 0; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        for (; i + Long.BYTES <= segment.size(); i += Long.BYTES) {
+            if (buffer.getLong(i) != 0) {
+                buffer.putLong(i, 0);
+            }
+        }
+        return offset;
+    }
+
+    private static boolean intactRecordAt(Segment segment, int offset, int end) {
+        int length = segment.buffer().getInt(offset);
+        if (length <= 0 || (long) offset + HEADER_SIZE + length > end) {
+            return false;
+        }
+        byte[] payload = new byte[length];
+        segment.buffer().get(offset + HEADER_SIZE, payload);
+        return checksumMatches(payload, segment.buffer().getInt(offset + Integer.BYTES));
+    }
+
+    private static boolean checksumMatches(byte[] payload, int expected) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == expected;
+    }
+}
@@ -0,0 +1,71 @@
+package com.malbano.products.readmodel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link MappedProductStore} compaction of the append-only data file and its size limits.
+ */
+class MappedProductStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void compactionFreesReplacedVersionsAndKeepsTheLatestRecords() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        // 10 products of 16 bytes + length prefix fill 200 bytes, so the 12th update does not fit
+        try (MappedProductStore store = new MappedProductStore(directory, 100, 220)) {
+            for (String id : ids) {
+                assertThat(store.upsert(id, record(id, 0))).isTrue();
+            }
+            assertThat(store.upsert(ids.get(3), record(ids.get(3), 1))).isTrue();
+            assertThat(store.upsert(ids.get(0), record(ids.get(0), 1))).isFalse();
+
+            assertThat(store.compact()).isEqualTo(20);
+
+            assertThat(store.upsert(ids.get(0), record(ids.get(0), 1))).isTrue();
+            assertThat(store.size()).isEqualTo(10);
+            for (int i = 0; i < ids.size(); i++) {
+                assertThat(store.get(ids.get(i))).isEqualTo(record(ids.get(i), i == 0 || i == 3 ? 1 : 0));
+            }
+            assertThat(store.page(0, 10)).hasSize(10).first().isEqualTo(record(ids.get(0), 1));
+        }
+    }
+
+    @Test
+    void compactionOfAStoreWithoutUpdatesFreesNothing() throws IOException {
+        try (MappedProductStore store = new MappedProductStore(directory, 100, 1024)) {
+            String id = UUID.randomUUID().toString();
+            store.upsert(id, record(id, 0));
+
+            assertThat(store.compact()).isZero();
+            assertThat(store.get(id)).isEqualTo(record(id, 0));
+        }
+    }
+
+    @Test
+    void rejectsMoreProductsThanTheIndexCanAddress() {
+        assertThatThrownBy(() -> new MappedProductStore(directory, MappedProductStore.MAX_PRODUCTS + 1, 1024))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MappedProductStore(directory, 0, 1024))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] record(String id, int version) {
+        return (id.substring(0, 14) + "v" + version).getBytes(StandardCharsets.US_ASCII);
+    }
+}
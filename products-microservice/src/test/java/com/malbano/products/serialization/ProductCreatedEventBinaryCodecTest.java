@@ -0,0 +1,124 @@
+package com.malbano.products.serialization;
+
+import com.malbano.products.dto.ProductCreatedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link ProductCreatedEventBinaryCodec} and {@link ProductCreatedEventBinarySerializer}: round trips, the JSON
+ * fallback for prices the layout cannot hold, and decoding of damaged payloads.
+ */
+class ProductCreatedEventBinaryCodecTest {
+
+    private static final String TOPIC = "product-created-events-topic";
+
+    private final ProductCreatedEventBinarySerializer serializer = new ProductCreatedEventBinarySerializer();
+    private final JsonSerializer<ProductCreatedEvent> jsonSerializer = new JsonSerializer<>();
+
+    @AfterEach
+    void close() {
+        serializer.close();
+        jsonSerializer.close();
+    }
+
+    @Test
+    void roundTripsEveryField() {
+        ProductCreatedEvent event = new ProductCreatedEvent("2f1c7d0e-5b7a-4c55-9f0d-7d5c2a3b9e11", "Café árabe",
+                new BigDecimal("1299.90"), 42);
+
+        ProductCreatedEvent decoded = ProductCreatedEventBinaryCodec.decode(ProductCreatedEventBinaryCodec.encode(event));
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(event);
+    }
+
+    @Test
+    void roundTripsAbsentFields() {
+        ProductCreatedEvent event = new ProductCreatedEvent("id-1", null, null, null);
+
+        ProductCreatedEvent decoded = ProductCreatedEventBinaryCodec.decode(ProductCreatedEventBinaryCodec.encode(event));
+
+        assertThat(decoded.getProductId()).isEqualTo("id-1");
+        assertThat(decoded.getTitle()).isNull();
+        assertThat(decoded.getPrice()).isNull();
+        assertThat(decoded.getQuantity()).isNull();
+    }
+
+    @Test
+    void writesSmallerRecordsThanJson() {
+        ProductCreatedEvent event = new ProductCreatedEvent("2f1c7d0e-5b7a-4c55-9f0d-7d5c2a3b9e11", "Notebook",
+                new BigDecimal("4599.00"), 10);
+
+        byte[] binary = serializer.serialize(TOPIC, new RecordHeaders(), event);
+        byte[] json = jsonSerializer.serialize(TOPIC, new RecordHeaders(), event);
+
+        // header(3) + productId(1 + 36) + title(1 + 8) + price(8 + 2) + quantity(4), no field names or quoting
+        assertThat(binary).hasSize(63);
+        assertThat(binary.length).isLessThan(json.length * 2 / 3);
+    }
+
+    @Test
+    void marksBinaryRecordsWithTheCodecHeader() {
+        Headers headers = new RecordHeaders();
+
+        byte[] data = serializer.serialize(TOPIC, headers, new ProductCreatedEvent("id-1", "Mouse", BigDecimal.TEN, 1));
+
+        assertThat(headers.lastHeader(ProductCreatedEventBinaryCodec.CODEC_HEADER).value())
+                .containsExactly(ProductCreatedEventBinaryCodec.VERSION);
+        assertThat(ProductCreatedEventBinaryCodec.isBinary(headers, data)).isTrue();
+    }
+
+    @Test
+    void fallsBackToJsonForPricesThatDoNotFit() {
+        ProductCreatedEvent event = new ProductCreatedEvent("id-1", "Mouse", new BigDecimal("1e40").add(BigDecimal.ONE), 1);
+        Headers headers = new RecordHeaders();
+
+        byte[] data = serializer.serialize(TOPIC, headers, event);
+
+        assertThat(ProductCreatedEventBinaryCodec.canEncode(event)).isFalse();
+        assertThat(headers.lastHeader(ProductCreatedEventBinaryCodec.CODEC_HEADER)).isNull();
+        assertThat(ProductCreatedEventBinaryCodec.isBinary(headers, data)).isFalse();
+        assertThat(data).isEqualTo(jsonSerializer.serialize(TOPIC, new RecordHeaders(), event));
+    }
+
+    @Test
+    void treatsACodecHeaderWithoutValueAsNotBinary() {
+        byte[] data = ProductCreatedEventBinaryCodec.encode(new ProductCreatedEvent("id-1", "Mouse", BigDecimal.TEN, 1));
+        Headers headers = new RecordHeaders().add(ProductCreatedEventBinaryCodec.CODEC_HEADER, null);
+
+        assertThat(ProductCreatedEventBinaryCodec.isBinary(headers, data)).isFalse();
+    }
+
+    @Test
+    void rejectsTruncatedRecords() {
+        byte[] data = ProductCreatedEventBinaryCodec.encode(new ProductCreatedEvent("id-1", "Mouse", BigDecimal.TEN, 1));
+
+        for (int length = 2; length < data.length; length++) {
+            byte[] truncated = Arrays.copyOf(data, length);
+            assertThatThrownBy(() -> ProductCreatedEventBinaryCodec.decode(truncated))
+                    .isInstanceOf(SerializationException.class);
+        }
+    }
+
+    @Test
+    void rejectsMalformedStringLengths() {
+        byte[] negativeLength = {ProductCreatedEventBinaryCodec.MAGIC, ProductCreatedEventBinaryCodec.VERSION, 1,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        byte[] tooLong = {ProductCreatedEventBinaryCodec.MAGIC, ProductCreatedEventBinaryCodec.VERSION, 1,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x80};
+
+        assertThatThrownBy(() -> ProductCreatedEventBinaryCodec.decode(negativeLength))
+                .isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> ProductCreatedEventBinaryCodec.decode(tooLong))
+                .isInstanceOf(SerializationException.class);
+    }
+}
@@ -0,0 +1,89 @@
+package com.malbano.products.wal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * {@link SegmentedWriteAheadLog} reading past damaged records.
+ */
+class SegmentedWriteAheadLogTest {
+
+    private static final Path SEGMENT = Path.of(String.format("%020d.wal", 0));
+
+    @TempDir
+    Path directory;
+
+    private SegmentedWriteAheadLog log;
+    private final long[] ends = new long[3];
+
+    @BeforeEach
+    void appendRecords() throws Exception {
+        log = new SegmentedWriteAheadLog(directory, 4096);
+        for (int i = 0; i < ends.length; i++) {
+            ends[i] = log.append(("product-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        assertThat(log.awaitDurable(ends[2], 5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        log.close();
+    }
+
+    @Test
+    void skipsARecordWithABadChecksum() throws IOException {
+        // last payload byte of the second record
+        overwrite(ends[1] - 1, new byte[]{'X'});
+
+        assertSecondRecordSkipped();
+    }
+
+    @Test
+    void skipsARecordWithAnImpossibleLength() throws IOException {
+        overwrite(ends[0], ByteBuffer.allocate(Integer.BYTES).putInt(0, Integer.MAX_VALUE).array());
+
+        assertSecondRecordSkipped();
+    }
+
+    private void assertSecondRecordSkipped() throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        // stops before the damaged record instead of failing the ones read so far
+        assertThat(log.read(0, 10, records)).isEqualTo(ends[0]);
+        assertThat(records).hasSize(1);
+
+        assertThatThrownBy(() -> log.read(ends[0], 10, new ArrayList<>()))
+                .isInstanceOfSatisfying(CorruptWalRecordException.class,
+                        e -> assertThat(e.position()).isEqualTo(ends[0]));
+
+        assertThat(log.skipCorrupt(ends[0])).isEqualTo(ends[1]);
+        assertThat(directory.resolve(String.format("%020d.corrupt", ends[0]))).hasSize(ends[1] - ends[0]);
+
+        records.clear();
+        assertThat(log.read(ends[1], 10, records)).isEqualTo(ends[2]);
+        assertThat(records).singleElement()
+                .satisfies(record -> assertThat(new String(record, StandardCharsets.UTF_8)).isEqualTo("product-2"));
+    }
+
+    private void overwrite(long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(SEGMENT), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+        assertThat(Files.size(directory.resolve(SEGMENT))).isEqualTo(4096);
+    }
+}